@@ -155,6 +155,37 @@ CREATE TABLE REVIEW (
 	CONSTRAINT UQ_Review_Transaction_Chemical UNIQUE (TransactionID, ChemicalID)
 );
 
+IF OBJECT_ID('PRODUCT_STATS') IS NULL
+	CREATE TABLE PRODUCT_STATS ( -- Aggregates of each chemical's reviews and purchasers, maintained by the procedures that change them so SearchProductsSorted need not compute them per row
+		ChemicalID INT PRIMARY KEY FOREIGN KEY
+			REFERENCES CHEMICAL(ChemicalID),
+		ReviewCount INT NOT NULL DEFAULT 0,
+		StarTotal INT NOT NULL DEFAULT 0,
+		PurchaserCount INT NOT NULL DEFAULT 0, -- Same as [dbo].PurchaserCount
+		AvgRating AS CAST(CAST(StarTotal AS DECIMAL(38, 3)) / NULLIF(ReviewCount, 0) AS DECIMAL(38, 3)) PERSISTED -- Same as [dbo].AverageRating (NULL without reviews)
+	);
+
+GO
+/* Backfill of PRODUCT_STATS for chemicals without a row, computed from REVIEW
+   and TRANSACTION_LINE_ITEM as the procedures below would have maintained it.
+   It inserts nothing when the script builds a new database, but it (with the
+   table above) can be run again on a database created before PRODUCT_STATS
+   existed. The application only runs this script when the database does not
+   exist, so such a database must otherwise be dropped and rebuilt. */
+INSERT INTO	PRODUCT_STATS (ChemicalID, ReviewCount, StarTotal, PurchaserCount)
+SELECT		C.ChemicalID, ISNULL(R.ReviewCount, 0), ISNULL(R.StarTotal, 0), ISNULL(P.PurchaserCount, 0)
+FROM		CHEMICAL C
+	LEFT OUTER JOIN (SELECT		ChemicalID, COUNT(*) AS ReviewCount, SUM(Stars) AS StarTotal
+					 FROM		REVIEW
+					 GROUP BY	ChemicalID) R
+		ON	C.ChemicalID = R.ChemicalID
+	LEFT OUTER JOIN (SELECT		TL.ChemicalID, COUNT(DISTINCT T.CustomerID) AS PurchaserCount
+					 FROM		TRANSACTION_LINE_ITEM TL, [TRANSACTION] T
+					 WHERE		T.TransactionID = TL.TransactionID
+					 GROUP BY	TL.ChemicalID) P
+		ON	C.ChemicalID = P.ChemicalID
+WHERE		NOT EXISTS (SELECT 1 FROM PRODUCT_STATS PS WHERE PS.ChemicalID = C.ChemicalID);
+
 GO
 CREATE VIEW RECEIVED_SHIPMENT AS -- View of SHIPMENT table for only currently/previously held products
 SELECT	*
@@ -167,6 +198,30 @@ SELECT	ShipmentID, DistributorID, PurchaseDate
 FROM	SHIPMENT
 WHERE	ReceiveDate = CAST('' AS DATE);
 
+GO
+/* Secondary indexes for the scenarios (S1-S14) and analytical queries
+   (4.2-4.9), each covering the columns its queries read so that no lookup
+   into the table is needed. Lookups by primary key or unique constraint are
+   already served by those (e.g., CHEMICAL by ShipmentID through
+   UQ_Chemical_Shipment_Type_Purity, and REVIEW by TransactionID through
+   UQ_Review_Transaction_Chemical). All are named IX_* so that the
+   IndexAdvisor benchmark can measure the workload with and without them.
+   Note: PRODUCT_STATS.AvgRating is not indexed, since indexes on computed
+   columns require QUOTED_IDENTIFIER ON, which sqlcmd does not set by
+   default. */
+CREATE INDEX IX_Review_Chemical_Date ON REVIEW (ChemicalID, ReviewDate DESC, ReviewID DESC)
+	INCLUDE (TransactionID, Stars); -- S3 and ViewReviewsAfter (seek to the keyset), S9 recount, 4.2, 4.7, 4.8
+CREATE INDEX IX_Transaction_Customer_Date ON [TRANSACTION] (CustomerID, PurchaseDate, TransactionID)
+	INCLUDE (DiscountID, TaxAmount); -- S5 discount reuse, S7 and ViewPurchasesAfter (scanned backward for newest first), S9
+CREATE INDEX IX_Transaction_Date ON [TRANSACTION] (PurchaseDate)
+	INCLUDE (CustomerID, DiscountID); -- 4.5, 4.6, 4.9 (past X months)
+CREATE INDEX IX_Line_Item_Chemical ON TRANSACTION_LINE_ITEM (ChemicalID)
+	INCLUDE (Quantity, CostPerUnitWhenPurchased); -- S5 purchaser recount, S9, 4.3, 4.6
+CREATE INDEX IX_Chemical_Type_Purity ON CHEMICAL (ChemicalTypeID, Purity)
+	INCLUDE (ShipmentID); -- 4.3, 4.8
+CREATE INDEX IX_Shipment_Distributor ON SHIPMENT (DistributorID)
+	INCLUDE (ReceiveDate); -- 4.7, 4.8
+
 ------------------------------
 -- Tables - End
 ------------------------------
@@ -198,7 +253,7 @@ AS
 
 -- S2 (View Products)
 GO
-CREATE OR ALTER FUNCTION AverageRating	(@ChemicalID INT) -- Helper
+CREATE OR ALTER FUNCTION AverageRating	(@ChemicalID INT) -- Helper (definition of PRODUCT_STATS.AvgRating)
 RETURNS DECIMAL(38, 3) AS
 BEGIN
 	RETURN (
@@ -209,7 +264,7 @@ BEGIN
 END
 
 GO
-CREATE OR ALTER FUNCTION PurchaserCount	(@ChemicalID INT) -- Helper
+CREATE OR ALTER FUNCTION PurchaserCount	(@ChemicalID INT) -- Helper (definition of PRODUCT_STATS.PurchaserCount)
 RETURNS INT AS
 BEGIN
 	RETURN (
@@ -221,66 +276,176 @@ BEGIN
 END
 
 GO
-CREATE OR ALTER FUNCTION SearchProducts	(@ResultsPosition INT, @ResultsCount INT,
-										 @ChemicalName STRING,
-										 @MinPurity DECIMAL(6, 3), @MaxPurity DECIMAL(6, 3),
-										 @StateOfMatter STRING, @Distributor STRING,
-										 @FirstSortBy CHAR, @SecondSortBy CHAR, @ThirdSortBy CHAR, @FourthSortBy CHAR,
-										 @FirstSortAsc BIT, @SecondSortAsc BIT, @ThirdSortAsc BIT, @FourthSortAsc BIT)
-RETURNS TABLE AS RETURN ( -- A product is defined as an entry in the CHEMICAL table
+DROP FUNCTION IF EXISTS SearchProducts; -- Formerly ordered by a CASE for every sort condition and direction
+
+GO
+CREATE OR ALTER PROCEDURE SearchProductsSorted	@ResultsPosition INT, @ResultsCount INT,
+												@ChemicalName STRING,
+												@MinPurity DECIMAL(6, 3), @MaxPurity DECIMAL(6, 3),
+												@StateOfMatter STRING, @Distributor STRING,
+												@FirstSortBy CHAR, @SecondSortBy CHAR, @ThirdSortBy CHAR, @FourthSortBy CHAR,
+												@FirstSortAsc BIT, @SecondSortAsc BIT, @ThirdSortAsc BIT, @FourthSortAsc BIT,
+												@Keyset BIT = 0, -- Keyset pagination (see SearchProductsAfter)
+												@AfterCostPerUnit DECIMAL(10, 2) = NULL, @AfterPurity DECIMAL(6, 3) = NULL,
+												@AfterAvgRating DECIMAL(38, 3) = NULL, @AfterPurchaserCnt INT = NULL,
+												@AfterChemicalID INT = NULL
+AS
+	/* Returns the products (entries in the CHEMICAL table) matching the
+	   search criteria given, ordered by only the sort conditions given, so
+	   that an index can serve the order and each sort shape gets its own
+	   cached plan. The ORDER BY is built from the fixed column names below
+	   (never from the params' text), and every value is still passed to
+	   sp_executesql as a param. Ties are ordered by ChemicalID so that pages
+	   never overlap.
+	   With @Keyset = 1, the rows start after the row whose sort column
+	   values and ChemicalID are given in the @After* params (unless
+	   @AfterChemicalID is NULL, for the first page), and each row ends with
+	   those values. The keyset predicate is built from the same sort columns
+	   as the ORDER BY, as the row-value comparison (sort columns..., ChemicalID)
+	   > (@After..., @AfterChemicalID) in each column's direction, so only
+	   the sort columns are compared. */
+	SET NOCOUNT ON; -- Return only the rows
+
+	DECLARE @Sorts TABLE (
+		Position INT PRIMARY KEY,
+		SortColumn NVARCHAR(40) NOT NULL, AfterParam NVARCHAR(40) NOT NULL,
+		SortAsc BIT NOT NULL, Nullable BIT NOT NULL
+	);
+
+	WITH Sorts AS (
+		SELECT		V.Position, V.SortAsc, K.SortColumn, K.AfterParam, K.Nullable,
+					ROW_NUMBER() OVER (PARTITION BY K.SortColumn ORDER BY V.Position) AS Occurrence
+		FROM		(VALUES	(1, @FirstSortBy, @FirstSortAsc), (2, @SecondSortBy, @SecondSortAsc),
+							(3, @ThirdSortBy, @ThirdSortAsc), (4, @FourthSortBy, @FourthSortAsc)
+					) AS V (Position, SortBy, SortAsc)
+		CROSS APPLY (SELECT * FROM (VALUES
+						('C', N'CQ.CostPerUnit', N'@AfterCostPerUnit', 0), -- Cost
+						('P', N'CQ.Purity', N'@AfterPurity', 0), -- Purity
+						('R', N'PS.AvgRating', N'@AfterAvgRating', 1), -- Rating (NULL without reviews)
+						('N', N'PS.PurchaserCount', N'@AfterPurchaserCnt', 0) -- Number of purchasers
+					) AS C (SortBy, SortColumn, AfterParam, Nullable)
+					WHERE C.SortBy = V.SortBy) AS K
+		WHERE		V.SortAsc IS NOT NULL -- Otherwise the condition is ignored
+	)
+	INSERT INTO @Sorts
+	SELECT		Position, SortColumn, AfterParam, SortAsc, Nullable
+	FROM		Sorts
+	WHERE		Occurrence = 1; -- A column repeated in a later condition would not change the order
+
+	INSERT INTO @Sorts VALUES (5, N'C.ChemicalID', N'@AfterChemicalID', 1, 0); -- Tiebreaker
+
+	DECLARE @OrderBy NVARCHAR(MAX) = (
+		SELECT		STRING_AGG(CAST(SortColumn AS NVARCHAR(MAX)) + CASE WHEN SortAsc = 1 THEN N' ASC' ELSE N' DESC' END, N', ')
+						WITHIN GROUP (ORDER BY Position)
+		FROM		@Sorts
+	);
+
+	/* (K1, ..., Kn) > (@After1, ..., @Aftern) in each column's direction is
+	   K1 after @After1, or K1 = @After1 and K2 after @After2, and so on. SQL
+	   Server sorts NULLs first ascending and last descending, so for the
+	   nullable rating "after" and "equal" include the NULL cases */
+	DECLARE @After NVARCHAR(MAX) = N'';
+	IF (@Keyset = 1)
+		SELECT		@After = N'
+		AND		(@AfterChemicalID IS NULL OR ' + STRING_AGG(T.Term, N'
+			OR	') WITHIN GROUP (ORDER BY S.Position) + N')'
+		FROM		@Sorts S
+		CROSS APPLY (SELECT N'(' + ISNULL((
+						SELECT		STRING_AGG(CASE WHEN P.Nullable = 1
+										THEN N'(' + P.SortColumn + N' = ' + P.AfterParam + N' OR (' + P.SortColumn + N' IS NULL AND ' + P.AfterParam + N' IS NULL))'
+										ELSE P.SortColumn + N' = ' + P.AfterParam
+									END, N' AND ') WITHIN GROUP (ORDER BY P.Position)
+						FROM		@Sorts P
+						WHERE		P.Position < S.Position
+					) + N' AND ', N'') + CASE
+						WHEN S.Nullable = 0 THEN S.SortColumn + CASE WHEN S.SortAsc = 1 THEN N' > ' ELSE N' < ' END + S.AfterParam
+						WHEN S.SortAsc = 1 THEN N'(' + S.SortColumn + N' > ' + S.AfterParam + N' OR (' + S.SortColumn + N' IS NOT NULL AND ' + S.AfterParam + N' IS NULL))'
+						ELSE N'(' + S.SortColumn + N' < ' + S.AfterParam + N' OR (' + S.SortColumn + N' IS NULL AND ' + S.AfterParam + N' IS NOT NULL))'
+					END + N')') AS T (Term);
+
+	DECLARE @Query NVARCHAR(MAX) = N'
 	SELECT		C.ChemicalID, -- To add the product to the cart
 				CT.ChemicalName, CQ.Purity, CT.StateOfMatterName,
 				C.RemainingQuantity, CQ.CostPerUnit,
 				M.MeasurementUnitName, M.MeasurementUnitAbbreviation,
 				D.DistributorName,
-				[dbo].AverageRating(C.ChemicalID) AS AvgRating, [dbo].PurchaserCount(C.ChemicalID) AS PurchaserCnt
+				PS.AvgRating, PS.PurchaserCount AS PurchaserCnt' + CASE WHEN @Keyset = 1 THEN N',
+				CQ.CostPerUnit AS KeyCostPerUnit, CQ.Purity AS KeyPurity, -- Keyset
+				PS.AvgRating AS KeyAvgRating, PS.PurchaserCount AS KeyPurchaserCnt,
+				C.ChemicalID AS KeyChemicalID' ELSE N'' END + N'
 	FROM		CHEMICAL C, CHEMICAL_TYPE CT, CHEMICAL_QUALITY CQ,
-				MEASUREMENT_UNIT M, RECEIVED_SHIPMENT S, DISTRIBUTOR D
-	WHERE		C.ChemicalTypeID = CT.ChemicalTypeID -- Match C and CT
-		AND		C.ChemicalTypeID = CQ.ChemicalTypeID AND C.Purity = CQ.Purity -- Match C and CQ
-		AND		CT.MeasurementUnitName = M.MeasurementUnitName -- Match CT and M
-		AND		C.ShipmentID = S.ShipmentID -- Match C and S
-		AND		S.DistributorID = D.DistributorID -- Match S and D
-		AND		(@ChemicalName IS NULL OR (CT.ChemicalName LIKE '%' + @ChemicalName + '%')) -- If name given, require it in chem names
-		AND		(@MinPurity IS NULL OR @MaxPurity IS NULL OR (C.Purity BETWEEN @MinPurity AND @MaxPurity)) -- If given, require purity range
-		AND		(@StateOfMatter IS NULL OR (CT.StateOfMatterName = @StateOfMatter)) -- If state given, require match
-		AND		(@Distributor IS NULL OR (D.DistributorName = @Distributor)) -- If distributor given, require match
-	ORDER BY -- Order by the user's chosen variables in the user's chosen direction
-		CASE WHEN @FirstSortBy = 'C' AND @FirstSortAsc = 1 THEN CQ.CostPerUnit END ASC, -- Cost
-		CASE WHEN @FirstSortBy = 'C' AND @FirstSortAsc = 0 THEN CQ.CostPerUnit END DESC,
-		CASE WHEN @FirstSortBy = 'P' AND @FirstSortAsc = 1 THEN CQ.Purity END ASC, -- Purity
-		CASE WHEN @FirstSortBy = 'P' AND @FirstSortAsc = 0 THEN CQ.Purity END DESC,
-		CASE WHEN @FirstSortBy = 'R' AND @FirstSortAsc = 1 THEN [dbo].AverageRating(C.ChemicalID) END ASC, -- Rating
-		CASE WHEN @FirstSortBy = 'R' AND @FirstSortAsc = 0 THEN [dbo].AverageRating(C.ChemicalID) END DESC,
-		CASE WHEN @FirstSortBy = 'N' AND @FirstSortAsc = 1 THEN [dbo].PurchaserCount(C.ChemicalID) END ASC, -- Number of purchasers
-		CASE WHEN @FirstSortBy = 'N' AND @FirstSortAsc = 0 THEN [dbo].PurchaserCount(C.ChemicalID) END DESC,
-		CASE WHEN @SecondSortBy = 'C' AND @SecondSortAsc = 1 THEN CQ.CostPerUnit END ASC, -- Cost
-		CASE WHEN @SecondSortBy = 'C' AND @SecondSortAsc = 0 THEN CQ.CostPerUnit END DESC,
-		CASE WHEN @SecondSortBy = 'P' AND @SecondSortAsc = 1 THEN CQ.Purity END ASC, -- Purity
-		CASE WHEN @SecondSortBy = 'P' AND @SecondSortAsc = 0 THEN CQ.Purity END DESC,
-		CASE WHEN @SecondSortBy = 'R' AND @SecondSortAsc = 1 THEN [dbo].AverageRating(C.ChemicalID) END ASC, -- Rating
-		CASE WHEN @SecondSortBy = 'R' AND @SecondSortAsc = 0 THEN [dbo].AverageRating(C.ChemicalID) END DESC,
-		CASE WHEN @SecondSortBy = 'N' AND @SecondSortAsc = 1 THEN [dbo].PurchaserCount(C.ChemicalID) END ASC, -- Number of purchasers
-		CASE WHEN @SecondSortBy = 'N' AND @SecondSortAsc = 0 THEN [dbo].PurchaserCount(C.ChemicalID) END DESC,
-		CASE WHEN @ThirdSortBy = 'C' AND @ThirdSortAsc = 1 THEN CQ.CostPerUnit END ASC, -- Cost
-		CASE WHEN @ThirdSortBy = 'C' AND @ThirdSortAsc = 0 THEN CQ.CostPerUnit END DESC,
-		CASE WHEN @ThirdSortBy = 'P' AND @ThirdSortAsc = 1 THEN CQ.Purity END ASC, -- Purity
-		CASE WHEN @ThirdSortBy = 'P' AND @ThirdSortAsc = 0 THEN CQ.Purity END DESC,
-		CASE WHEN @ThirdSortBy = 'R' AND @ThirdSortAsc = 1 THEN [dbo].AverageRating(C.ChemicalID) END ASC, -- Rating
-		CASE WHEN @ThirdSortBy = 'R' AND @ThirdSortAsc = 0 THEN [dbo].AverageRating(C.ChemicalID) END DESC,
-		CASE WHEN @ThirdSortBy = 'N' AND @ThirdSortAsc = 1 THEN [dbo].PurchaserCount(C.ChemicalID) END ASC, -- Number of purchasers
-		CASE WHEN @ThirdSortBy = 'N' AND @ThirdSortAsc = 0 THEN [dbo].PurchaserCount(C.ChemicalID) END DESC,
-		CASE WHEN @FourthSortBy = 'C' AND @FourthSortAsc = 1 THEN CQ.CostPerUnit END ASC, -- Cost
-		CASE WHEN @FourthSortBy = 'C' AND @FourthSortAsc = 0 THEN CQ.CostPerUnit END DESC,
-		CASE WHEN @FourthSortBy = 'P' AND @FourthSortAsc = 1 THEN CQ.Purity END ASC, -- Purity
-		CASE WHEN @FourthSortBy = 'P' AND @FourthSortAsc = 0 THEN CQ.Purity END DESC,
-		CASE WHEN @FourthSortBy = 'R' AND @FourthSortAsc = 1 THEN [dbo].AverageRating(C.ChemicalID) END ASC, -- Rating
-		CASE WHEN @FourthSortBy = 'R' AND @FourthSortAsc = 0 THEN [dbo].AverageRating(C.ChemicalID) END DESC,
-		CASE WHEN @FourthSortBy = 'N' AND @FourthSortAsc = 1 THEN [dbo].PurchaserCount(C.ChemicalID) END ASC, -- Number of purchasers
-		CASE WHEN @FourthSortBy = 'N' AND @FourthSortAsc = 0 THEN [dbo].PurchaserCount(C.ChemicalID) END DESC
+				MEASUREMENT_UNIT M, RECEIVED_SHIPMENT S, DISTRIBUTOR D,
+				PRODUCT_STATS PS
+	WHERE		C.ChemicalTypeID = CT.ChemicalTypeID
+		AND		C.ChemicalTypeID = CQ.ChemicalTypeID AND C.Purity = CQ.Purity
+		AND		CT.MeasurementUnitName = M.MeasurementUnitName
+		AND		C.ShipmentID = S.ShipmentID
+		AND		S.DistributorID = D.DistributorID
+		AND		C.ChemicalID = PS.ChemicalID
+		AND		(@ChemicalName IS NULL OR (CT.ChemicalName LIKE ''%'' + @ChemicalName + ''%''))
+		AND		(@MinPurity IS NULL OR @MaxPurity IS NULL OR (C.Purity BETWEEN @MinPurity AND @MaxPurity))
+		AND		(@StateOfMatter IS NULL OR (CT.StateOfMatterName = @StateOfMatter))
+		AND		(@Distributor IS NULL OR (D.DistributorName = @Distributor))' + @After + N'
+	ORDER BY	' + @OrderBy + N'
 	OFFSET @ResultsPosition ROWS
-	FETCH NEXT @ResultsCount ROWS ONLY
-);
+	FETCH NEXT @ResultsCount ROWS ONLY;';
+
+	EXEC sp_executesql	@Query,
+						N'@ResultsPosition INT, @ResultsCount INT,
+						  @ChemicalName NVARCHAR(128),
+						  @MinPurity DECIMAL(6, 3), @MaxPurity DECIMAL(6, 3),
+						  @StateOfMatter NVARCHAR(128), @Distributor NVARCHAR(128),
+						  @AfterCostPerUnit DECIMAL(10, 2), @AfterPurity DECIMAL(6, 3),
+						  @AfterAvgRating DECIMAL(38, 3), @AfterPurchaserCnt INT,
+						  @AfterChemicalID INT', -- NVARCHAR(128) is STRING
+						@ResultsPosition, @ResultsCount,
+						@ChemicalName,
+						@MinPurity, @MaxPurity,
+						@StateOfMatter, @Distributor,
+						@AfterCostPerUnit, @AfterPurity,
+						@AfterAvgRating, @AfterPurchaserCnt,
+						@AfterChemicalID;
+	RETURN;
+
+/* Keyset pagination: the *After functions return the same rows as the
+   function they follow, in the same order, but instead of skipping
+   @ResultsPosition rows they start after the row whose keyset (the values it
+   is ordered by, ending with a unique ID) is given in the @After* params, so
+   a deep page costs the same as the first page. All @After* params are NULL
+   for the first page. Each row ends with its own keyset, which the
+   application passes back (as an opaque token) to get the following page.
+   Unlike with OFFSET, ties are ordered by ID so that pages never overlap. */
+GO
+DROP FUNCTION IF EXISTS SearchProductsAfter; -- Formerly a function ordered by SearchSortKey
+DROP FUNCTION IF EXISTS SearchSortKey;
+
+GO
+CREATE OR ALTER PROCEDURE SearchProductsAfter	@ResultsCount INT,
+												@ChemicalName STRING,
+												@MinPurity DECIMAL(6, 3), @MaxPurity DECIMAL(6, 3),
+												@StateOfMatter STRING, @Distributor STRING,
+												@FirstSortBy CHAR, @SecondSortBy CHAR, @ThirdSortBy CHAR, @FourthSortBy CHAR,
+												@FirstSortAsc BIT, @SecondSortAsc BIT, @ThirdSortAsc BIT, @FourthSortAsc BIT,
+												@AfterCostPerUnit DECIMAL(10, 2), @AfterPurity DECIMAL(6, 3),
+												@AfterAvgRating DECIMAL(38, 3), @AfterPurchaserCnt INT,
+												@AfterChemicalID INT
+AS
+	/* The filter, order, and keyset predicate are those of
+	   SearchProductsSorted, so the keyset is compared on the sort columns
+	   themselves and each sort shape gets its own cached plan */
+	SET NOCOUNT ON; -- Return only the rows
+
+	EXEC SearchProductsSorted	0, @ResultsCount,
+								@ChemicalName,
+								@MinPurity, @MaxPurity,
+								@StateOfMatter, @Distributor,
+								@FirstSortBy, @SecondSortBy, @ThirdSortBy, @FourthSortBy,
+								@FirstSortAsc, @SecondSortAsc, @ThirdSortAsc, @FourthSortAsc,
+								1,
+								@AfterCostPerUnit, @AfterPurity,
+								@AfterAvgRating, @AfterPurchaserCnt,
+								@AfterChemicalID;
+	RETURN;
 
 
 -- S3 (View Reviews of Product)
@@ -298,6 +463,24 @@ RETURNS TABLE AS RETURN (
 	FETCH NEXT	@ResultsCount ROWS ONLY
 );
 
+GO
+CREATE OR ALTER FUNCTION ViewReviewsAfter	(@ResultsCount INT,
+											 @ChemicalID INT,
+											 @AfterReviewDate DATE, @AfterReviewID INT) -- Keyset pagination (see SearchProductsAfter)
+RETURNS TABLE AS RETURN (
+	SELECT		TOP (@ResultsCount)
+				C.FirstName, C.LastName, R.Stars, R.[Text], R.ReviewDate,
+				R.ReviewDate AS KeyReviewDate, R.ReviewID AS KeyReviewID -- Keyset
+	FROM		REVIEW R, [TRANSACTION] T, CUSTOMER C
+	WHERE		@ChemicalID = R.ChemicalID
+		AND		R.TransactionID = T.TransactionID
+		AND		T.CustomerID = C.CustomerID
+		AND		(@AfterReviewID IS NULL -- First page
+			OR	R.ReviewDate < @AfterReviewDate
+			OR	(R.ReviewDate = @AfterReviewDate AND R.ReviewID < @AfterReviewID))
+	ORDER BY	R.ReviewDate DESC, R.ReviewID DESC -- Latest first (seeks IX_Review_Chemical_Date)
+);
+
 
 -- S4 (Login)
 GO
@@ -382,6 +565,18 @@ AS
 	WHERE			CA.ChemicalID = CH.ChemicalID
 		AND			CH.ChemicalTypeID = CQ.ChemicalTypeID AND CH.Purity = CQ.Purity;
 
+	-- Recount purchasers of the bought chemicals (recounted rather than incremented so concurrent purchases cannot skew the count),
+	-- all in one grouped join. Each has a line item in this transaction, so each has a count
+	UPDATE	PS
+	SET		PS.PurchaserCount = P.PurchaserCount
+	FROM	PRODUCT_STATS AS PS,
+			(SELECT		TL.ChemicalID, COUNT(DISTINCT T.CustomerID) AS PurchaserCount
+			 FROM		TRANSACTION_LINE_ITEM TL, [TRANSACTION] T
+			 WHERE		T.TransactionID = TL.TransactionID
+				AND		TL.ChemicalID IN (SELECT ChemicalID FROM @Cart)
+			 GROUP BY	TL.ChemicalID) AS P
+	WHERE	PS.ChemicalID = P.ChemicalID;
+
 	-- Calculate totals
 	SELECT		@Subtotal = ((1.0 - @DiscountPercent) * SUM(CostPerUnitWhenPurchased * Quantity))
 	FROM		TRANSACTION_LINE_ITEM
@@ -474,6 +669,68 @@ RETURNS TABLE AS RETURN (
 			ON	P.TransactionID = O.TransactionID
 );
 
+GO
+CREATE OR ALTER FUNCTION ViewPurchasesWithoutOnlineStatusAfter	(@ResultsCount INT,
+																 @CustomerID INT, @SortNewestFirst BIT,
+																 @AfterPurchaseDate DATE, @AfterTransactionID INT) -- Helper
+RETURNS TABLE AS RETURN (
+	/* One branch for each direction, only one of which runs, so that each
+	   seeks IX_Transaction_Customer_Date from the keyset (scanning backward
+	   for newest first) with a plain ORDER BY and stops after @ResultsCount
+	   rows. The date range is the seek; the rest of the keyset comparison
+	   only drops the rows of the keyset's own date up to its transaction.
+	   PageOrder is the position of each row in the page */
+	SELECT		N.PurchaseDate, [dbo].PurchaseTotal(N.TransactionID) AS PurchaseTotal,
+				D.DiscountName, D.[Percentage],
+				N.TransactionID, N.PageOrder
+	FROM		(
+				SELECT		TOP (@ResultsCount)
+							T.PurchaseDate, T.TransactionID, T.DiscountID,
+							ROW_NUMBER() OVER (ORDER BY T.PurchaseDate DESC, T.TransactionID DESC) AS PageOrder
+				FROM		[TRANSACTION] T
+				WHERE		@SortNewestFirst = 1
+					AND		T.CustomerID = @CustomerID
+					AND		T.PurchaseDate <= ISNULL(@AfterPurchaseDate, '9999-12-31') -- All dates for the first page
+					AND		(@AfterTransactionID IS NULL
+						OR	T.PurchaseDate < @AfterPurchaseDate OR T.TransactionID < @AfterTransactionID)
+				ORDER BY	T.PurchaseDate DESC, T.TransactionID DESC
+				) N, DISCOUNT D
+	WHERE		N.DiscountID = D.DiscountID
+	UNION ALL
+	SELECT		O.PurchaseDate, [dbo].PurchaseTotal(O.TransactionID) AS PurchaseTotal,
+				D.DiscountName, D.[Percentage],
+				O.TransactionID, O.PageOrder
+	FROM		(
+				SELECT		TOP (@ResultsCount)
+							T.PurchaseDate, T.TransactionID, T.DiscountID,
+							ROW_NUMBER() OVER (ORDER BY T.PurchaseDate ASC, T.TransactionID ASC) AS PageOrder
+				FROM		[TRANSACTION] T
+				WHERE		@SortNewestFirst = 0
+					AND		T.CustomerID = @CustomerID
+					AND		T.PurchaseDate >= ISNULL(@AfterPurchaseDate, '0001-01-01') -- All dates for the first page
+					AND		(@AfterTransactionID IS NULL
+						OR	T.PurchaseDate > @AfterPurchaseDate OR T.TransactionID > @AfterTransactionID)
+				ORDER BY	T.PurchaseDate ASC, T.TransactionID ASC
+				) O, DISCOUNT D
+	WHERE		O.DiscountID = D.DiscountID
+);
+
+GO
+CREATE OR ALTER FUNCTION ViewPurchasesAfter	(@ResultsCount INT,
+											 @CustomerID INT, @SortNewestFirst BIT,
+											 @AfterPurchaseDate DATE, @AfterTransactionID INT) -- Keyset pagination (see SearchProductsAfter)
+RETURNS TABLE AS RETURN (
+	SELECT		TOP (@ResultsCount)
+				P.PurchaseDate, P.PurchaseTotal,
+				P.DiscountName, P.[Percentage],
+				P.TransactionID,
+				O.ReceiveDate,
+				P.PurchaseDate AS KeyPurchaseDate, P.TransactionID AS KeyTransactionID -- Keyset
+	FROM		ViewPurchasesWithoutOnlineStatusAfter(@ResultsCount, @CustomerID, @SortNewestFirst, @AfterPurchaseDate, @AfterTransactionID) P
+		LEFT OUTER JOIN ONLINE_TRANSACTION O
+			ON	P.TransactionID = O.TransactionID
+	ORDER BY	P.PageOrder -- Same order as the helper, since the keyset of the last row is used for the next page
+);
 
 -- S8 (View Subpurchases/Line Items)
 /* While viewing their purchases, the user can request a detailed description
@@ -500,6 +757,32 @@ RETURNS TABLE AS RETURN (
 	FETCH NEXT	@ResultsCount ROWS ONLY
 );
 
+GO
+CREATE OR ALTER FUNCTION ViewSubpurchasesAfter	(@ResultsCount INT,
+												 @TransactionID INT,
+												 @AfterChemicalName STRING, @AfterChemicalID INT) -- Keyset pagination (see SearchProductsAfter)
+RETURNS TABLE AS RETURN (
+	SELECT		TOP (@ResultsCount)
+				CT.ChemicalName, C.Purity, TL.Quantity, M.MeasurementUnitAbbreviation, CT.StateOfMatterName,
+				(TL.Quantity * TL.CostPerUnitWhenPurchased) AS Cost,
+				D.DistributorName,
+				CT.ChemicalName AS KeyChemicalName, C.ChemicalID AS KeyChemicalID -- Keyset
+	FROM		[TRANSACTION] T, TRANSACTION_LINE_ITEM TL,
+				CHEMICAL C, CHEMICAL_TYPE CT, MEASUREMENT_UNIT M,
+				SHIPMENT S, DISTRIBUTOR D
+	WHERE		@TransactionID = T.TransactionID
+		AND		T.TransactionID = TL.TransactionID
+		AND		TL.ChemicalID = C.ChemicalID
+		AND		C.ChemicalTypeID = CT.ChemicalTypeID
+		AND		CT.MeasurementUnitName = M.MeasurementUnitName
+		AND		C.ShipmentID = S.ShipmentID
+		AND		S.DistributorID = D.DistributorID
+		AND		(@AfterChemicalID IS NULL -- First page
+			OR	CT.ChemicalName > @AfterChemicalName
+			OR	(CT.ChemicalName = @AfterChemicalName AND C.ChemicalID > @AfterChemicalID))
+	ORDER BY	CT.ChemicalName, C.ChemicalID
+);
+
 
 -- S9 (Review Product)
 GO
@@ -547,6 +830,11 @@ AS
 							@ChemicalID, @Stars, @Text, GETDATE()
 						);
 
+	UPDATE	PRODUCT_STATS -- Recount, since the review may have replaced an existing one
+	SET		ReviewCount = (SELECT COUNT(*) FROM REVIEW WHERE @ChemicalID = ChemicalID),
+			StarTotal = (SELECT ISNULL(SUM(Stars), 0) FROM REVIEW WHERE @ChemicalID = ChemicalID)
+	WHERE	@ChemicalID = ChemicalID;
+
 	COMMIT TRAN;
 
 	RETURN;
@@ -580,6 +868,11 @@ AS
 							 @Shipment, I.PurchasePrice
 	FROM	@Items I;
 
+	INSERT INTO	PRODUCT_STATS (ChemicalID) -- No reviews or purchasers yet
+	SELECT		ChemicalID
+	FROM		CHEMICAL
+	WHERE		@Shipment = ShipmentID;
+
 	COMMIT TRAN;
 
 	RETURN;
@@ -1007,7 +1300,7 @@ EXEC RecordShipmentPurchase '1', @SCart;
 GO -- Update
 EXEC MarkShipmentReceived '2';
 
-GO -- Insert (no update, shipment not received - should not appear in results of S2 SearchProducts)
+GO -- Insert (no update, shipment not received - should not appear in results of S2 SearchProductsSorted)
 DECLARE @SCart AS SHIPMENTCART;
 INSERT INTO	@SCart	(ChemicalTypeID, Purity, Quantity, PurchasePrice)
 VALUES				('1', 98.8, 50000, 800.00); -- Sodium Chloride 98.8%
@@ -1072,12 +1365,12 @@ EXEC ReviewProduct '0', '0', 3, 'Average product, needs improvement.';
 
 -- Scenarios (only function/query scenarios, not data-changing procedures)
 -- S2
-SELECT * FROM SearchProducts(0, 100, 'Sodium Chloride', NULL, NULL, NULL, NULL, 'N', NULL, NULL, NULL, 0, NULL, NULL, NULL); -- Number of purchasers DESC
-SELECT * FROM SearchProducts(0, 100, 'Acetone', NULL, NULL, NULL, NULL, 'N', NULL, NULL, NULL, 0, NULL, NULL, NULL);
-SELECT * FROM SearchProducts(0, 100, 'Acetone', NULL, NULL, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL); -- Purity ASC then rating DESC
-SELECT * FROM SearchProducts(1, 100, 'Acetone', NULL, NULL, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL); -- " " but skip first row
-SELECT * FROM SearchProducts(0, 100, NULL, 95, 100, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL); -- 95-100% purity
-SELECT * FROM SearchProducts(0, 100, NULL, 95, 100, 'Liquid', NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL); -- 95-100% purity liquids
+EXEC SearchProductsSorted 0, 100, 'Sodium Chloride', NULL, NULL, NULL, NULL, 'N', NULL, NULL, NULL, 0, NULL, NULL, NULL; -- Number of purchasers DESC
+EXEC SearchProductsSorted 0, 100, 'Acetone', NULL, NULL, NULL, NULL, 'N', NULL, NULL, NULL, 0, NULL, NULL, NULL;
+EXEC SearchProductsSorted 0, 100, 'Acetone', NULL, NULL, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL; -- Purity ASC then rating DESC
+EXEC SearchProductsSorted 1, 100, 'Acetone', NULL, NULL, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL; -- " " but skip first row
+EXEC SearchProductsSorted 0, 100, NULL, 95, 100, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL; -- 95-100% purity
+EXEC SearchProductsSorted 0, 100, NULL, 95, 100, 'Liquid', NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL; -- 95-100% purity liquids
 
 -- S3
 SELECT * FROM ViewReviews(0, 100, '0'); -- First 100 reviews of chemical with ID 0
@@ -1114,6 +1407,12 @@ SELECT * FROM ViewSubpurchases(0, 10, 0); -- First 10 items
 SELECT * FROM ViewSubpurchases(0, 10, 1);
 SELECT * FROM ViewSubpurchases(0, 10, 2);
 
+-- S2, S3, S7, and S8 with keyset pagination (first pages; later pages pass the keyset columns of the previous page's last row)
+EXEC SearchProductsAfter 100, 'Acetone', NULL, NULL, NULL, NULL, 'P', 'R', NULL, NULL, 1, 0, NULL, NULL, NULL, NULL, NULL, NULL, NULL;
+SELECT * FROM ViewReviewsAfter(100, '3', NULL, NULL);
+SELECT * FROM ViewPurchasesAfter(100, '0', 1, NULL, NULL);
+SELECT * FROM ViewSubpurchasesAfter(10, 0, NULL, NULL);
+
 
 -- Analytical Queries
 -- 4.2
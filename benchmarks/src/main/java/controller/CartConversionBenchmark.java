@@ -0,0 +1,51 @@
+package controller;
+
+import com.microsoft.sqlserver.jdbc.SQLServerDataTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Converting carts to the table-valued parameters passed to CompleteTransaction
+// and RecordShipmentPurchase
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartConversionBenchmark {
+
+    // Typical kiosk cart, large cart, and large shipment
+    @Param({"5", "100", "5000"})
+    public int cartSize;
+
+    private TransactionCart transactionCart;
+    private ShipmentCart shipmentCart;
+
+    @Setup
+    public void setup() {
+        transactionCart = Samples.transactionCart(cartSize);
+        shipmentCart = Samples.shipmentCart(cartSize);
+    }
+
+    @Benchmark
+    public SQLServerDataTable transactionCart() throws SQLException {
+        return transactionCart.convertToTable();
+    }
+
+    @Benchmark
+    public SQLServerDataTable shipmentCart() throws SQLException {
+        return shipmentCart.convertToTable();
+    }
+}
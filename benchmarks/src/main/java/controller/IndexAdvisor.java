@@ -0,0 +1,451 @@
+package controller;
+
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Measures what the database spends on each call of the application's workload
+// (every Signature built by FunctionsAndProcedures, run with representative
+// params) using SET STATISTICS IO and TIME, and reports the logical reads of
+// each call, by table, with and without the script's secondary indexes (those
+// named IX_*). The indexes SQL Server's missing-index statistics suggest for
+// the database are listed afterward.
+//
+// Params are chosen from the database so that each call reads real rows: e.g.,
+// the customer with the most purchases and the product with the most reviews.
+// Each call runs in a transaction that is rolled back, so the procedures that
+// add or change rows leave the database as it was. Measuring without the
+// indexes disables them (ALTER INDEX ... DISABLE) and rebuilds them afterward,
+// which blocks other clients of those tables meanwhile, so like LoadGenerator,
+// the advisor should not be pointed at a database other clients depend on.
+//
+// To run (after building as described in pom.xml, with the script's sample
+// data or a larger data set loaded):
+//     java -cp target/benchmarks.jar controller.IndexAdvisor [options]
+// Options (defaults in parentheses):
+//     --runs=N          Times each call is run per measurement; only the last
+//                       run is reported, so earlier runs warm the buffer pool
+//                       and plan cache (3)
+//     --calls=REGEX     Only Signatures whose field names match (all)
+//     --compare=BOOL    Also measure without the IX_* indexes (true)
+//
+// Note: STATISTICS IO does not count the reads of scalar functions called
+// within a query (e.g., PurchaseTotal in ViewPurchases), so calls that use them
+// read more than reported. Missing-index suggestions accumulate from the
+// server's start, so they include those recorded while the IX_* indexes were
+// disabled.
+public final class IndexAdvisor {
+
+    private static final String REPORT_FORMAT = "%-54s %12s %12s %8s %10s %10s %10s %10s%n";
+    private static final String TABLE_FORMAT = "    %-50s %12s %12s%n";
+    private static final int PAGE_SIZE = 25;
+    private static final int MONTHS = 12;
+    private static final int TOP_COUNT = 10;
+    private static final int SUGGESTIONS = 20;
+
+    private static final Pattern IO_MESSAGE = Pattern.compile(
+            "Table '([^']+)'\\. Scan count \\d+, logical reads (\\d+)"
+    );
+    private static final Pattern TIME_MESSAGE = Pattern.compile(
+            "Execution Times:\\s*CPU time = (\\d+) ms,\\s*elapsed time = (\\d+) ms"
+    );
+
+    // What one call cost the database. The times are the largest reported,
+    // which is the whole call's when SQL Server reports one for it (e.g., for
+    // a procedure, after those of its statements)
+    private record Measurement(Map<String, Long> readsByTable, long cpuMillis,
+                               long elapsedMillis, String error) {
+
+        long logicalReads() {
+            return readsByTable.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    private IndexAdvisor() {
+    }
+
+    public static void main(final String[] args) throws SQLException {
+        final int runs;
+        final Pattern calls;
+        final boolean compare;
+        try {
+            final var options = LoadGenerator.parseOptions(args);
+            runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+            if (runs <= 0)
+                throw new IllegalArgumentException("--runs is out of range");
+            calls = Pattern.compile(options.getOrDefault("calls", ".*"));
+            compare = Boolean.parseBoolean(options.getOrDefault("compare", "true"));
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException and PatternSyntaxException
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        final var signatures = new LinkedHashMap<String, Signature>();
+        Samples.signatures().forEach((name, sig) -> {
+            if (calls.matcher(name).matches())
+                signatures.put(name, sig);
+        });
+
+        try (Connection con = SqlServerBackend.openUnpooledConnection()) {
+            final var workload = workload(con, signatures);
+            try (var stmt = con.createStatement()) {
+                stmt.execute("SET STATISTICS IO ON; SET STATISTICS TIME ON;");
+            }
+
+            Map<String, Measurement> before = null;
+            if (compare) {
+                final var indexes = enabledIndexes(con);
+                System.out.printf("Measuring without %d IX_* indexes%n", indexes.size());
+                alterIndexes(con, indexes, "DISABLE");
+                try {
+                    before = measure(con, signatures, workload, runs);
+                } finally {
+                    System.out.printf("Rebuilding %d IX_* indexes%n", indexes.size());
+                    alterIndexes(con, indexes, "REBUILD");
+                }
+            }
+
+            System.out.println("Measuring with the current indexes");
+            final var after = measure(con, signatures, workload, runs);
+
+            report(signatures.keySet(), workload, before, after);
+            suggest(con);
+        }
+    }
+
+    // The params each call is measured with, by Signature field name, or null
+    // for calls that need rows the database does not have (e.g., a pending
+    // shipment)
+    private static Map<String, Object[]> workload(final Connection con,
+                                                  final Map<String, Signature> signatures)
+            throws SQLException {
+        // Unique per run, so names added by the (rolled back) calls never
+        // collide with existing rows
+        final var runID = Long.toString(System.currentTimeMillis(), 36);
+
+        final var customer = first(con, "SELECT TOP 1 CustomerID FROM [TRANSACTION] GROUP BY CustomerID ORDER BY COUNT(*) DESC");
+        final var email = first(con, "SELECT EmailAddress FROM CUSTOMER WHERE CustomerID = ?", customer);
+        final var zip = first(con, "SELECT TOP 1 ZIPCode FROM ZIPCODE");
+        final var reviewedChemical = first(con, "SELECT TOP 1 ChemicalID FROM REVIEW GROUP BY ChemicalID ORDER BY COUNT(*) DESC");
+        final var reviewer = firstRow(con, "SELECT TOP 1 T.CustomerID, R.ChemicalID FROM REVIEW R, [TRANSACTION] T WHERE R.TransactionID = T.TransactionID");
+        final var transaction = first(con, "SELECT TOP 1 TransactionID FROM TRANSACTION_LINE_ITEM GROUP BY TransactionID ORDER BY COUNT(*) DESC");
+        final var pendingDelivery = first(con, "SELECT TOP 1 TransactionID FROM ONLINE_TRANSACTION WHERE ReceiveDate = CAST('' AS DATE)");
+        final var stockedChemical = first(con, "SELECT TOP 1 C.ChemicalID FROM CHEMICAL C, RECEIVED_SHIPMENT S WHERE C.ShipmentID = S.ShipmentID AND C.RemainingQuantity >= 1 ORDER BY C.RemainingQuantity DESC");
+        final var quality = firstRow(con, "SELECT TOP 1 ChemicalTypeID, Purity FROM CHEMICAL GROUP BY ChemicalTypeID, Purity ORDER BY COUNT(*) DESC");
+        final var distributor = first(con, "SELECT TOP 1 DistributorID FROM DISTRIBUTOR");
+        final var pendingShipment = first(con, "SELECT TOP 1 ShipmentID FROM PENDING_SHIPMENT");
+        final var unit = firstRow(con, "SELECT TOP 1 MeasurementUnitName, StateOfMatterName FROM MEASUREMENT_UNIT_APPLICABILITY");
+
+        final var cart = new TransactionCart();
+        if (stockedChemical != null)
+            cart.addRow((Integer) stockedChemical, BigDecimal.ONE);
+        final var shipmentCart = new ShipmentCart();
+        if (quality != null)
+            shipmentCart.addRow((Integer) quality[0], (BigDecimal) quality[1], BigDecimal.TEN, new BigDecimal("125.50"));
+        final var purity = quality == null ? null : ((BigDecimal) quality[1]).toPlainString();
+
+        final var workload = new LinkedHashMap<String, Object[]>();
+        // S1-S14
+        workload.put("REGISTER_CUSTOMER_SIG", present(zip) ? new Object[]{
+                "advisor-" + runID + "@example.com", new byte[64], new byte[64],
+                "Index", "Advisor", "1 Main St", "", zip
+        } : null);
+        workload.put("SEARCH_PRODUCTS_SIG", new Object[]{
+                0, PAGE_SIZE, null, null, null, null, null,
+                'R', 'C', null, null, false, true, null, null
+        });
+        workload.put("VIEW_REVIEWS_SIG", present(reviewedChemical) ?
+                new Object[]{0, PAGE_SIZE, reviewedChemical} : null);
+        workload.put("GET_CUSTOMER_AND_SALT_SIG", present(email) ? new Object[]{email} : null);
+        workload.put("VALIDATE_CUSTOMER_SIG", present(customer) ? new Object[]{customer, new byte[64]} : null);
+        workload.put("COMPLETE_TRANSACTION_SIG", present(customer, stockedChemical) ?
+                new Object[]{customer, "8.00", null, cart, true, null, null} : null);
+        workload.put("MARK_TRANSACTION_DELIVERED_SIG", present(pendingDelivery) ? new Object[]{pendingDelivery} : null);
+        workload.put("VIEW_PURCHASES_SIG", present(customer) ? new Object[]{0, PAGE_SIZE, customer, true} : null);
+        workload.put("VIEW_SUBPURCHASES_SIG", present(transaction) ? new Object[]{0, PAGE_SIZE, transaction} : null);
+        workload.put("REVIEW_PRODUCT_SIG", reviewer != null ?
+                new Object[]{reviewer[0], reviewer[1], 4, "Index advisor review"} : null);
+        workload.put("ADD_DISTRIBUTOR_SIG", new Object[]{"Index Advisor " + runID});
+        workload.put("RECORD_SHIPMENT_PURCHASE_SIG", present(distributor, quality) ?
+                new Object[]{distributor, shipmentCart} : null);
+        workload.put("MARK_SHIPMENT_RECEIVED_SIG", present(pendingShipment) ? new Object[]{pendingShipment} : null);
+        workload.put("ADD_CHEMICAL_TYPE_SIG", unit != null ?
+                new Object[]{"Index Advisor " + runID, unit[0], unit[1]} : null);
+        workload.put("ADD_CHEMICAL_QUALITY_SIG", quality != null ? new Object[]{quality[0], "0.001", "1.00"} : null);
+        // Keyset pagination (first pages)
+        workload.put("SEARCH_PRODUCTS_AFTER_SIG", new Object[]{
+                PAGE_SIZE, null, null, null, null, null,
+                'R', 'C', null, null, false, true, null, null,
+                null, null, null, null, null
+        });
+        workload.put("VIEW_REVIEWS_AFTER_SIG", present(reviewedChemical) ?
+                new Object[]{PAGE_SIZE, reviewedChemical, null, null} : null);
+        workload.put("VIEW_PURCHASES_AFTER_SIG", present(customer) ?
+                new Object[]{PAGE_SIZE, customer, true, null, null} : null);
+        workload.put("VIEW_SUBPURCHASES_AFTER_SIG", present(transaction) ?
+                new Object[]{PAGE_SIZE, transaction, null, null} : null);
+        // 4.2-4.9
+        workload.put("HIGHLY_RATED_FIRST_TIME_AND_MIN_REVIEWS_CHEMICALS_SIG", new Object[]{MONTHS, 1, TOP_COUNT});
+        workload.put("LARGEST_PURITY_AMOUNTS_SIG", quality != null ? new Object[]{quality[0], TOP_COUNT} : null);
+        workload.put("HIGHEST_RATIO_PRODUCTS_TO_REVIEW_SIG", new Object[]{TOP_COUNT});
+        workload.put("HIGHEST_RECENT_SPENDERS_SIG", new Object[]{MONTHS, TOP_COUNT});
+        workload.put("HIGHEST_PROFIT_PRODUCTS_SIG", new Object[]{MONTHS, TOP_COUNT});
+        workload.put("HIGHEST_RATED_DISTRIBUTOR_WITH_MIN_REVIEWS_SIG", new Object[]{1, TOP_COUNT});
+        workload.put("DISTRIBUTOR_HIGHEST_AVG_RATING_SIG", quality != null ?
+                new Object[]{purity, quality[0], TOP_COUNT} : null);
+        workload.put("PERCENTAGE_PURCHASE_W_DISCOUNTS_SIG", new Object[]{MONTHS});
+
+        // Calls without params (e.g., queries of whole tables) need no values,
+        // and calls added to FunctionsAndProcedures without values here are
+        // reported as skipped
+        for (var entry : signatures.entrySet())
+            if (!workload.containsKey(entry.getKey()) && entry.getValue().paramTypes().length == 0)
+                workload.put(entry.getKey(), new Object[0]);
+
+        return workload;
+    }
+
+    private static Map<String, Measurement> measure(final Connection con,
+                                                    final Map<String, Signature> signatures,
+                                                    final Map<String, Object[]> workload,
+                                                    final int runs)
+            throws SQLException {
+        final var measurements = new LinkedHashMap<String, Measurement>();
+        con.setAutoCommit(false);
+        try {
+            for (var entry : signatures.entrySet()) {
+                final var params = workload.get(entry.getKey());
+                if (params == null)
+                    continue;
+
+                Measurement last = null;
+                for (int i = 0; i < runs; i++)
+                    last = run(con, entry.getValue(), params);
+                measurements.put(entry.getKey(), last);
+            }
+        } finally {
+            con.setAutoCommit(true);
+        }
+
+        return measurements;
+    }
+
+    // Runs the call once, reading every result, then rolls back its changes
+    private static Measurement run(final Connection con, final Signature sig,
+                                   final Object[] params)
+            throws SQLException {
+        // Prepared as SqlServerBackend prepares them, but not cached, so that
+        // the statement's messages are only this call's
+        try (PreparedStatement stmt = sig.procedure() ?
+                con.prepareCall(sig.call()) : con.prepareStatement(sig.call())) {
+            final var binders = sig.paramBinders();
+            for (int i = 0; i < binders.length; i++)
+                binders[i].bind(stmt, params[i]);
+
+            for (boolean isResultSet = stmt.execute();
+                 isResultSet || stmt.getUpdateCount() != -1;
+                 isResultSet = stmt.getMoreResults())
+                if (isResultSet)
+                    try (var results = stmt.getResultSet()) {
+                        while (results.next())
+                            ; // Read (and discard) every row, as the application would
+                    }
+            if (sig.procedure() && sig.outParamIndices().length > 0)
+                ((CallableStatement) stmt).getObject(sig.outParamIndices()[0]); // Out-mode params follow the results
+
+            return parse(stmt.getWarnings(), null);
+        } catch (SQLException | IllegalArgumentException | ClassCastException e) {
+            return parse(null, e.getMessage());
+        } finally {
+            con.rollback();
+        }
+    }
+
+    private static Measurement parse(SQLWarning warning, final String error) {
+        final var readsByTable = new TreeMap<String, Long>();
+        long cpuMillis = 0;
+        long elapsedMillis = 0;
+
+        for (; warning != null; warning = warning.getNextWarning()) {
+            final var message = warning.getMessage();
+            final Matcher io = IO_MESSAGE.matcher(message);
+            if (io.find())
+                readsByTable.merge(io.group(1), Long.parseLong(io.group(2)), Long::sum);
+
+            final Matcher time = TIME_MESSAGE.matcher(message);
+            if (time.find()) {
+                cpuMillis = Math.max(cpuMillis, Long.parseLong(time.group(1)));
+                elapsedMillis = Math.max(elapsedMillis, Long.parseLong(time.group(2)));
+            }
+        }
+
+        return new Measurement(readsByTable, cpuMillis, elapsedMillis, error);
+    }
+
+    // Each enabled IX_* index as {quoted table, quoted index}
+    private static List<String[]> enabledIndexes(final Connection con) throws SQLException {
+        final var indexes = new ArrayList<String[]>();
+        try (var stmt = con.createStatement();
+             var results = stmt.executeQuery(
+                     "SELECT QUOTENAME(S.name) + '.' + QUOTENAME(O.name), QUOTENAME(I.name) " +
+                     "FROM sys.indexes I, sys.objects O, sys.schemas S " +
+                     "WHERE I.object_id = O.object_id AND O.schema_id = S.schema_id " +
+                     "AND O.is_ms_shipped = 0 AND I.is_disabled = 0 AND I.name LIKE 'IX[_]%'"
+             )) {
+            while (results.next())
+                indexes.add(new String[]{results.getString(1), results.getString(2)});
+        }
+
+        return indexes;
+    }
+
+    private static void alterIndexes(final Connection con, final List<String[]> indexes,
+                                     final String action)
+            throws SQLException {
+        try (var stmt = con.createStatement()) {
+            for (var index : indexes)
+                stmt.execute("ALTER INDEX " + index[1] + " ON " + index[0] + " " + action);
+        }
+    }
+
+    private static void report(final Iterable<String> names,
+                               final Map<String, Object[]> workload,
+                               final Map<String, Measurement> before,
+                               final Map<String, Measurement> after) {
+        System.out.println();
+        System.out.printf(REPORT_FORMAT,
+                "Call", "Reads before", "Reads after", "Change",
+                "CPU ms bef", "CPU ms aft", "Elapsed bef", "Elapsed aft"
+        );
+
+        for (var name : names) {
+            if (workload.get(name) == null) {
+                System.out.printf("%-54s skipped (no values for its params)%n", name);
+                continue;
+            }
+
+            final var old = before == null ? null : before.get(name);
+            final var current = after.get(name);
+            if (current.error != null || old != null && old.error != null) {
+                System.out.printf("%-54s failed: %s%n", name,
+                        current.error != null ? current.error : old.error);
+                continue;
+            }
+
+            System.out.printf(Locale.ROOT, REPORT_FORMAT,
+                    name,
+                    old == null ? "-" : old.logicalReads(), current.logicalReads(),
+                    old == null ? "-" : change(old.logicalReads(), current.logicalReads()),
+                    old == null ? "-" : old.cpuMillis, current.cpuMillis,
+                    old == null ? "-" : old.elapsedMillis, current.elapsedMillis
+            );
+
+            // Tables by reads, most first
+            final var tables = new TreeMap<String, Long>(current.readsByTable);
+            if (old != null)
+                old.readsByTable.keySet().forEach(table -> tables.putIfAbsent(table, 0L));
+            tables.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                    .forEach(table -> System.out.printf(TABLE_FORMAT,
+                            table.getKey(),
+                            old == null ? "-" : old.readsByTable.getOrDefault(table.getKey(), 0L),
+                            table.getValue()
+                    ));
+        }
+    }
+
+    private static String change(final long before, final long after) {
+        return before == 0 ?
+                (after == 0 ? "0%" : "new") :
+                String.format(Locale.ROOT, "%+.0f%%", (after - before) * 100.0 / before);
+    }
+
+    // Prints the indexes SQL Server has recorded as missing for this
+    // database, most valuable first (by estimated cost, improvement, and uses)
+    private static void suggest(final Connection con) throws SQLException {
+        System.out.println();
+        System.out.println("Missing-index suggestions:");
+
+        int count = 0;
+        try (var stmt = con.createStatement();
+             var results = stmt.executeQuery(
+                     "SELECT TOP (" + SUGGESTIONS + ") D.statement, " +
+                     "D.equality_columns, D.inequality_columns, D.included_columns, " +
+                     "S.user_seeks + S.user_scans, S.avg_user_impact " +
+                     "FROM sys.dm_db_missing_index_details D, " +
+                     "sys.dm_db_missing_index_groups G, sys.dm_db_missing_index_group_stats S " +
+                     "WHERE D.index_handle = G.index_handle AND G.index_group_handle = S.group_handle " +
+                     "AND D.database_id = DB_ID() " +
+                     "ORDER BY S.avg_total_user_cost * S.avg_user_impact * (S.user_seeks + S.user_scans) DESC"
+             )) {
+            for (; results.next(); count++) {
+                final var keys = new ArrayList<String>();
+                if (results.getString(2) != null)
+                    keys.add(results.getString(2));
+                if (results.getString(3) != null)
+                    keys.add(results.getString(3));
+
+                System.out.printf(Locale.ROOT, "    CREATE INDEX ON %s (%s)%s; -- %d uses, %.0f%% estimated improvement%n",
+                        results.getString(1), String.join(", ", keys),
+                        results.getString(4) == null ? "" : " INCLUDE (" + results.getString(4) + ")",
+                        results.getLong(5), results.getDouble(6)
+                );
+            }
+        }
+
+        if (count == 0)
+            System.out.println("    None");
+    }
+
+    // The first column of the query's first row, or null if there is no row
+    // or an arg is missing
+    private static Object first(final Connection con, final String query,
+                                final Object... args)
+            throws SQLException {
+        final var row = firstRow(con, query, args);
+        return row == null ? null : row[0];
+    }
+
+    private static Object[] firstRow(final Connection con, final String query,
+                                     final Object... args)
+            throws SQLException {
+        if (!present(args))
+            return null;
+
+        try (var stmt = con.prepareStatement(query)) {
+            for (int i = 0; i < args.length; i++)
+                stmt.setObject(i + 1, args[i]);
+
+            try (var results = stmt.executeQuery()) {
+                if (!results.next())
+                    return null;
+
+                final var row = new Object[results.getMetaData().getColumnCount()];
+                for (int j = 0; j < row.length; j++)
+                    row[j] = results.getObject(j + 1);
+                return row;
+            }
+        }
+    }
+
+    private static boolean present(final Object... values) {
+        for (var value : values)
+            if (value == null)
+                return false;
+
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package controller;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+// Stand-ins for the driver's statements and result sets, so that the
+// benchmarks measure only this application's binding and conversion code.
+// The stubs are dynamic proxies, so every call also includes the cost of a
+// reflective dispatch; this cost is the same across releases and does not
+// affect comparisons between them.
+final class JdbcStubs {
+
+    private JdbcStubs() {
+    }
+
+    // Accepts and discards every param. Getters return default values
+    static CallableStatement statement() {
+        return (CallableStatement) Proxy.newProxyInstance(
+                JdbcStubs.class.getClassLoader(),
+                new Class<?>[]{CallableStatement.class},
+                (proxy, method, args) -> defaultValue(method.getReturnType())
+        );
+    }
+
+    // A forward-only ResultSet over rows, which must hold the objects the
+    // driver would return for each column's type (Integer, BigDecimal,
+    // String, Boolean, byte[], or Date; CHAR columns as a String). Call
+    // rewind() before reading the rows again
+    static final class Rows implements InvocationHandler {
+
+        private final Object[][] rows;
+        private final ResultSet resultSet;
+        private final ResultSetMetaData metaData;
+        private int row = -1;
+
+        Rows(final Object[][] rows, final int columnCount) {
+            this.rows = rows;
+            resultSet = (ResultSet) Proxy.newProxyInstance(
+                    JdbcStubs.class.getClassLoader(), new Class<?>[]{ResultSet.class}, this
+            );
+            metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                    JdbcStubs.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                    (proxy, method, args) -> method.getName().equals("getColumnCount") ?
+                            columnCount : defaultValue(method.getReturnType())
+            );
+        }
+
+        ResultSet resultSet() {
+            return resultSet;
+        }
+
+        void rewind() {
+            row = -1;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return switch (method.getName()) {
+                case "next" -> ++row < rows.length;
+                case "getMetaData" -> metaData;
+                case "getInt" -> rows[row][(int) args[0] - 1];
+                case "getBoolean" -> rows[row][(int) args[0] - 1];
+                case "getString", "getNString", "getBigDecimal", "getBytes", "getDate" ->
+                        rows[row][(int) args[0] - 1];
+                default -> defaultValue(method.getReturnType()); // Incl. wasNull and close
+            };
+        }
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (!type.isPrimitive() || type == void.class)
+            return null;
+        if (type == boolean.class)
+            return false;
+        if (type == char.class)
+            return '\0';
+
+        // Numeric primitives must be boxed as their exact type
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        if (type == double.class)
+            return 0.0;
+        if (type == float.class)
+            return 0.0f;
+        if (type == short.class)
+            return (short) 0;
+        return (byte) 0;
+    }
+}
@@ -0,0 +1,110 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// This class records the latency and outcome of each call made by a
+// LoadSession, by call name (e.g., "searchProducts").
+//
+// Every latency is kept (not bucketed), so percentiles are exact. At 8 bytes
+// per call, even a long run at a high rate only needs a few MB per session.
+//
+// Note: A recorder is only used by its session's thread until the run ends,
+// after which the recorders are merged on the main thread, so no
+// synchronization is needed.
+final class LatencyRecorder {
+
+    // Latencies and counts for one call name
+    static final class Calls {
+        private long[] nanos = new long[1024];
+        private int count = 0;
+        private long failed = 0; // Returned an error message
+        private long errors = 0; // Threw an exception
+
+        private void add(final long latencyNanos) {
+            if (count == nanos.length)
+                nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = latencyNanos;
+        }
+
+        int count() {
+            return count;
+        }
+
+        long failed() {
+            return failed;
+        }
+
+        long errors() {
+            return errors;
+        }
+
+        // Must only be called after sort
+        long percentileNanos(final double percentile) {
+            if (count == 0)
+                return 0;
+
+            // Nearest-rank percentile
+            final int rank = (int) Math.ceil(percentile / 100 * count);
+            return nanos[Math.max(rank, 1) - 1];
+        }
+
+        long maxNanos() {
+            return count == 0 ? 0 : nanos[count - 1];
+        }
+
+        double meanNanos() {
+            long total = 0;
+            for (int i = 0; i < count; i++)
+                total += nanos[i];
+
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        void sort() {
+            Arrays.sort(nanos, 0, count);
+        }
+
+        private void addAll(final Calls other) {
+            if (count + other.count > nanos.length)
+                nanos = Arrays.copyOf(nanos, Math.max(nanos.length * 2, count + other.count));
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            failed += other.failed;
+            errors += other.errors;
+        }
+    }
+
+    private final Map<String, Calls> calls = new TreeMap<>();
+
+    // Failed and erroneous calls are still timed, since a failure can take as
+    // long as a success (e.g., a checkout rolled back by the database)
+    void record(final String call, final long latencyNanos,
+                final boolean failed, final boolean error) {
+        final var entry = calls.computeIfAbsent(call, c -> new Calls());
+        entry.add(latencyNanos);
+        if (failed)
+            entry.failed++;
+        if (error)
+            entry.errors++;
+    }
+
+    void addAll(final LatencyRecorder other) {
+        other.calls.forEach((call, entry) ->
+                calls.computeIfAbsent(call, c -> new Calls()).addAll(entry)
+        );
+    }
+
+    // Every call, regardless of name
+    Calls combined() {
+        final var all = new Calls();
+        calls.values().forEach(all::addAll);
+        return all;
+    }
+
+    // By call name, in alphabetical order
+    Map<String, Calls> calls() {
+        return calls;
+    }
+}
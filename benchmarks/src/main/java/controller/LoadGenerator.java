@@ -0,0 +1,266 @@
+package controller;
+
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import util.Password;
+
+// Headless load generator that replays the kiosk and employee scenarios
+// (S1-S14 and the analytical queries) through FunctionsAndProcedures with many
+// concurrent LoadSessions, then reports the throughput and latency
+// percentiles of each call.
+//
+// By default, the database is set up exactly as by Controller, so the run
+// needs the same SQL Server instance (e.g., a local container on
+// localhost:1433) with the script's sample data loaded. Each run registers new
+// customers and adds transactions, shipments, and catalog entries, so it
+// should not be pointed at a database whose contents matter. With
+// --backend=memory, the calls instead run against an InMemoryBackend holding
+// the script's sample data, which measures the application's own overhead
+// (param conversion, hashing, result handling, etc.) without a server. Its
+// clock is fixed to the date the sample data was written, so that the sample
+// reusable discount can be used by checkouts (purchases only list
+// transactions that used a discount).
+//
+// To run (after building as described in pom.xml):
+//     java -cp target/benchmarks.jar controller.LoadGenerator [options]
+// Options (defaults in parentheses):
+//     --sessions=N      Concurrent sessions, each on its own thread (32)
+//     --duration=S      Seconds measured after the warmup (60)
+//     --warmup=S        Seconds run before measuring (10)
+//     --think=MS        Mean think time between scenarios; 0 runs each
+//                       session as fast as possible (0)
+//     --pool=N          Most database connections (the session count)
+//     --backend=NAME    sql (SQL Server) or memory (in-memory) (sql)
+//     --seed=N          Random seed, to repeat a run's choices (random)
+//     --mix=NAME:W,...  Scenario weights, e.g. search:80,checkout:20;
+//                       unlisted scenarios keep their default weights, and a
+//                       weight of 0 disables a scenario. Names are those of
+//                       LoadSession.Scenario, in any case
+//
+// Note: With --think=0, the sessions form a closed loop, so throughput is
+// limited by the latency of the calls (and by the connection pool and
+// password hashing executor) rather than set by the generator. Nonzero think
+// times approximate many independent users instead.
+public final class LoadGenerator {
+
+    private static final String REPORT_FORMAT =
+            "%-44s %8s %7s %7s %9s %8s %8s %8s %8s %8s %8s%n";
+
+    private LoadGenerator() {
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int[] weights;
+        final int sessions, durationSeconds, warmupSeconds, thinkMillis, poolSize;
+        final long seed;
+        final boolean inMemory;
+        try {
+            final var options = parseOptions(args);
+            weights = parseMix(options.getOrDefault("mix", ""));
+            sessions = intOption(options, "sessions", 32);
+            durationSeconds = intOption(options, "duration", 60);
+            warmupSeconds = intOption(options, "warmup", 10);
+            thinkMillis = intOption(options, "think", 0);
+            poolSize = intOption(options, "pool", sessions);
+            seed = options.containsKey("seed") ?
+                    Long.parseLong(options.get("seed")) : System.nanoTime();
+            inMemory = switch (options.getOrDefault("backend", "sql")) {
+                case "sql" -> false;
+                case "memory" -> true;
+                default -> throw new IllegalArgumentException("--backend must be sql or memory");
+            };
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        initialize(poolSize, inMemory);
+        final var data = ReferenceData.load(inMemory);
+        if (data.discountIDs().isEmpty())
+            System.out.println(
+                    "No reusable discount is valid today, so checkouts use none, purchases (S7) " +
+                    "list no transactions, and their subpurchases (S8) are not viewed"
+            );
+
+        // Unique per run, so repeated runs against one database do not collide
+        // on emails and catalog names
+        final var runID = Long.toString(System.currentTimeMillis(), 36);
+        final long startNanos = System.nanoTime();
+        final long measureFromNanos = startNanos + warmupSeconds * 1_000_000_000L;
+        final long deadlineNanos = measureFromNanos + durationSeconds * 1_000_000_000L;
+
+        final var loadSessions = new ArrayList<LoadSession>();
+        final var threads = new ArrayList<Thread>();
+        for (int i = 0; i < sessions; i++) {
+            final var session = new LoadSession(
+                    runID, i, data, weights, seed + i,
+                    measureFromNanos, deadlineNanos, thinkMillis
+            );
+            loadSessions.add(session);
+            threads.add(new Thread(session, "Load session " + i));
+        }
+
+        System.out.printf(
+                "Running %d sessions for %d s after a %d s warmup (seed %d)%n",
+                sessions, durationSeconds, warmupSeconds, seed
+        );
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+
+        final var total = new LatencyRecorder();
+        Throwable firstError = null;
+        int signedIn = 0;
+        for (var session : loadSessions) {
+            total.addAll(session.recorder());
+            if (firstError == null)
+                firstError = session.firstError();
+            if (session.signedIn())
+                signedIn++;
+        }
+
+        // Sessions that could not sign in made no calls, so fewer users were
+        // simulated than requested
+        System.out.printf("%d of %d sessions signed in%n", signedIn, sessions);
+
+        // Calls still running at the deadline finish after it, so measure to
+        // the end of the last one
+        report(total, (System.nanoTime() - measureFromNanos) / 1e9);
+        if (firstError != null) {
+            System.out.println();
+            System.out.println("First error:");
+            firstError.printStackTrace(System.out);
+        }
+
+        DBManager.close();
+    }
+
+    // The same steps as Controller.initialize, except Resources (UI only)
+    private static void initialize(final int poolSize, final boolean inMemory) {
+        try {
+            ProgramDirectoryManager.initialize();
+            Password.initialize();
+            FunctionsAndProcedures.initialize();
+
+            if (inMemory) {
+                // The sample data's discounts have expired, so the database
+                // runs on the date it was written, when some are valid
+                final var database = InMemoryDatabase.withSampleData();
+                database.setClock(Clock.fixed(
+                        InMemoryDatabase.SAMPLE_DATA_DATE.atStartOfDay().toInstant(ZoneOffset.UTC),
+                        ZoneOffset.UTC
+                ));
+                DBManager.initialize(new InMemoryBackend(database));
+                return;
+            }
+
+            final var defaults = ConnectionPool.Config.DEFAULT;
+            DBManager.initialize(new ConnectionPool.Config(
+                    Math.min(defaults.minSize(), poolSize), poolSize,
+                    defaults.idleTimeoutMillis(), defaults.borrowTimeoutMillis(),
+                    defaults.validationTimeoutSeconds(), defaults.validationBypassMillis(),
+                    defaults.statementCacheSize()
+            ));
+        } catch (Exception e) {
+            throw new IllegalStateException("Initialization failure", e);
+        }
+    }
+
+    private static void report(final LatencyRecorder total, final double measuredSeconds) {
+        System.out.println();
+        System.out.printf(REPORT_FORMAT,
+                "Call", "Count", "Failed", "Errors", "Calls/s",
+                "Mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "Max ms"
+        );
+
+        total.calls().forEach((call, calls) -> printRow(call, calls, measuredSeconds));
+        printRow("All calls", total.combined(), measuredSeconds);
+
+        System.out.println();
+        System.out.println("Connection pool: " + DBManager.poolStatistics());
+        System.out.println("Password hashing: " + Password.hashingStatistics());
+        System.out.println("Reference data cache: " + FunctionsAndProcedures.referenceDataStatistics());
+        System.out.println("Search result cache: " + FunctionsAndProcedures.searchResultStatistics());
+    }
+
+    private static void printRow(final String call, final LatencyRecorder.Calls calls,
+                                 final double measuredSeconds) {
+        calls.sort();
+        System.out.printf(Locale.ROOT, REPORT_FORMAT,
+                call, calls.count(), calls.failed(), calls.errors(),
+                String.format(Locale.ROOT, "%.1f", calls.count() / measuredSeconds),
+                millis(calls.meanNanos()),
+                millis(calls.percentileNanos(50)), millis(calls.percentileNanos(90)),
+                millis(calls.percentileNanos(99)), millis(calls.percentileNanos(99.9)),
+                millis(calls.maxNanos())
+        );
+    }
+
+    private static String millis(final double nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    static Map<String, String> parseOptions(final String[] args) {
+        final var options = new HashMap<String, String>();
+        for (var arg : args) {
+            final int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0)
+                throw new IllegalArgumentException("Options must have the form --name=value: " + arg);
+
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static int intOption(final Map<String, String> options, final String name,
+                                 final int defaultValue) {
+        if (!options.containsKey(name))
+            return defaultValue;
+
+        final int value = Integer.parseInt(options.get(name));
+        if (value < 0 || value == 0 && (name.equals("sessions") || name.equals("pool")))
+            throw new IllegalArgumentException("--" + name + " is out of range");
+        return value;
+    }
+
+    // Weights by Scenario ordinal
+    private static int[] parseMix(final String mix) {
+        final var scenarios = LoadSession.Scenario.values();
+        final var weights = new int[scenarios.length];
+        for (var scenario : scenarios)
+            weights[scenario.ordinal()] = scenario.defaultWeight;
+
+        for (var entry : mix.split(",")) {
+            if (entry.isBlank())
+                continue;
+
+            final var parts = entry.split(":");
+            try {
+                if (parts.length != 2)
+                    throw new IllegalArgumentException();
+                final int weight = Integer.parseInt(parts[1].trim());
+                if (weight < 0)
+                    throw new IllegalArgumentException();
+
+                weights[LoadSession.Scenario.valueOf(
+                        parts[0].trim().toUpperCase(Locale.ROOT)
+                ).ordinal()] = weight;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        "Invalid --mix entry " + entry + "; scenarios are " + Arrays.toString(scenarios)
+                );
+            }
+        }
+
+        if (Arrays.stream(weights).sum() == 0)
+            throw new IllegalArgumentException("--mix must leave at least one scenario enabled");
+        return weights;
+    }
+}
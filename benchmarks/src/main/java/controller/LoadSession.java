@@ -0,0 +1,440 @@
+package controller;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static controller.FunctionsAndProcedures.HASHING_BUSY;
+import static controller.FunctionsAndProcedures.SUCCESS;
+
+// One simulated user of the application for LoadGenerator. Each session
+// registers and logs in its own customer, then repeatedly picks a scenario by
+// the configured weights, runs it through FunctionsAndProcedures (or its
+// CustomerSession, as the UI would), and waits for a random think time.
+//
+// Every call is timed separately in the session's LatencyRecorder under the
+// name of the FunctionsAndProcedures method, so a scenario that makes several
+// calls (e.g., viewing purchases and then a transaction's subpurchases) is
+// reported per call. Calls that start before the end of the warmup are not
+// recorded.
+final class LoadSession implements Runnable {
+
+    // The scenarios a session can run, with their default weights. The
+    // defaults approximate a kiosk's traffic: mostly browsing, some checkouts,
+    // and occasional employee work
+    enum Scenario {
+        REGISTER(2), // S1
+        SEARCH(40), // S2
+        REVIEWS(15), // S3
+        LOGIN(5), // S4
+        CHECKOUT(8), // S5
+        DELIVER(2), // S6
+        PURCHASES(8), // S7, S8
+        REVIEW(4), // S9
+        SHIPMENT(3), // S10-S12
+        CATALOG(1), // S13, S14, and S10
+        ANALYTICS(5); // 4.2-4.9
+
+        final int defaultWeight;
+
+        Scenario(final int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+    }
+
+    // Meets Password's requirements
+    static final String PASSWORD = "LoadTest-Pass1";
+
+    private static final String SORTERS = "CPRN"; // Cost, purity, rating, and number of purchasers
+    private static final int PAGE_SIZE = 25;
+    private static final int REVIEW_PAGE_SIZE = 10;
+    private static final int MAX_REMEMBERED_TRANSACTIONS = 20;
+    // Backoff while password hashing is busy signing in every session at once
+    private static final long MIN_BUSY_BACKOFF_MILLIS = 20;
+    private static final long MAX_BUSY_BACKOFF_MILLIS = 1000;
+
+    private final String runID;
+    private final int index;
+    private final ReferenceData data;
+    private final int[] cumulativeWeights; // By Scenario ordinal
+    private final long measureFromNanos;
+    private final long deadlineNanos;
+    private final long meanThinkMillis;
+    private final SplittableRandom random;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    private final String email;
+    private CustomerSession session;
+    private int customerID;
+    private int uniqueCounter = 0;
+    private final List<Integer> purchased = new ArrayList<>(); // ChemicalIDs bought by this session
+    private final List<Integer> transactionIDs = new ArrayList<>(); // Seen in this session's purchases
+
+    private boolean signedIn = false;
+    private Throwable firstError; // First exception thrown by a call, for the report
+
+    LoadSession(final String runID, final int index, final ReferenceData data,
+                final int[] weights, final long seed,
+                final long measureFromNanos, final long deadlineNanos,
+                final long meanThinkMillis) {
+        this.runID = runID;
+        this.index = index;
+        this.data = data;
+        this.measureFromNanos = measureFromNanos;
+        this.deadlineNanos = deadlineNanos;
+        this.meanThinkMillis = meanThinkMillis;
+        random = new SplittableRandom(seed);
+
+        cumulativeWeights = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++)
+            cumulativeWeights[i] = total += weights[i];
+
+        email = uniqueName("session") + "@loadtest.example";
+    }
+
+    boolean signedIn() {
+        return signedIn;
+    }
+
+    LatencyRecorder recorder() {
+        return recorder;
+    }
+
+    Throwable firstError() {
+        return firstError;
+    }
+
+    @Override
+    public void run() {
+        if (!signIn())
+            return;
+
+        while (System.nanoTime() < deadlineNanos) {
+            runScenario(nextScenario());
+
+            if (meanThinkMillis > 0 && !think())
+                return;
+        }
+    }
+
+    // Registers and logs in this session's customer. Not recorded, since every
+    // session does this at once when the run starts, and retried while
+    // password hashing is busy, which it is while many sessions sign in
+    private boolean signIn() {
+        final var registered = retryWhileBusy(() -> FunctionsAndProcedures.registerCustomer(
+                email, PASSWORD,
+                "Load", "Session " + index,
+                "1 Test Street", "",
+                98402
+        ), HASHING_BUSY::equals);
+        final var login = retryWhileBusy(() -> FunctionsAndProcedures.login(email, PASSWORD),
+                output -> output[0] == HASHING_BUSY);
+        if (login[0] != SUCCESS) {
+            firstError = new IllegalStateException(
+                    "Session " + index + " could not sign in: " + registered + " / " + login[0]
+            );
+            return false;
+        }
+
+        customerID = (int) login[1];
+        session = new CustomerSession(customerID, index % 2 == 0); // Half online, for S6
+        signedIn = true;
+        return true;
+    }
+
+    // Calls call until busy is false for its result, waiting an exponentially
+    // growing, randomized time between attempts so that sessions retrying at
+    // once spread out. Gives up with the last result at the deadline or if
+    // interrupted
+    private <T> T retryWhileBusy(final Supplier<T> call, final Predicate<T> busy) {
+        long backoffMillis = MIN_BUSY_BACKOFF_MILLIS;
+        while (true) {
+            final var result = call.get();
+            if (!busy.test(result) || System.nanoTime() >= deadlineNanos)
+                return result;
+
+            try {
+                Thread.sleep(backoffMillis / 2 + random.nextLong(backoffMillis / 2 + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BUSY_BACKOFF_MILLIS);
+        }
+    }
+
+    private Scenario nextScenario() {
+        final int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; ; i++)
+            if (pick < cumulativeWeights[i])
+                return Scenario.values()[i];
+    }
+
+    private void runScenario(final Scenario scenario) {
+        switch (scenario) {
+            case REGISTER -> call("registerCustomer", () -> FunctionsAndProcedures.registerCustomer(
+                    uniqueName("customer") + "@loadtest.example", PASSWORD,
+                    "Load", "Customer",
+                    "2 Test Street", "",
+                    98402
+            ), LoadSession::failed);
+            case SEARCH -> search();
+            case REVIEWS -> reviews();
+            case LOGIN -> call("login", () -> FunctionsAndProcedures.login(email, PASSWORD),
+                    LoadSession::failed);
+            case CHECKOUT -> checkout();
+            case DELIVER -> {
+                if (!transactionIDs.isEmpty())
+                    call("markTransactionDelivered", () -> FunctionsAndProcedures.markTransactionDelivered(
+                            pick(transactionIDs)
+                    ), LoadSession::failed);
+            }
+            case PURCHASES -> purchases();
+            case REVIEW -> call("reviewProduct", () -> session.reviewProduct(
+                    purchased.isEmpty() ? pick(data.productIDs()) : pick(purchased),
+                    1 + random.nextInt(Controller.MAX_RATING),
+                    "Review from load session " + index
+            ), LoadSession::failed);
+            case SHIPMENT -> shipment();
+            case CATALOG -> catalog();
+            case ANALYTICS -> analytics();
+        }
+    }
+
+    // S2, with random filters and sorts. Each filter is only used in some
+    // searches, as most users only set one or two
+    private void search() {
+        final var name = random.nextInt(2) == 0 ? null : pick(data.chemicalNames());
+        final var nameFilter = name == null ? null :
+                name.substring(0, Math.min(name.length(), 3 + random.nextInt(4))); // Partial name
+
+        final var minPurity = random.nextInt(10) < 3 ? random.nextInt(91) : -1;
+
+        final var sorters = new StringBuilder(SORTERS);
+        for (int i = sorters.length() - 1; i > 0; i--) { // Shuffle
+            final int j = random.nextInt(i + 1);
+            final char c = sorters.charAt(i);
+            sorters.setCharAt(i, sorters.charAt(j));
+            sorters.setCharAt(j, c);
+        }
+        final int sortCount = 1 + random.nextInt(SORTERS.length());
+
+        call("searchProducts", () -> FunctionsAndProcedures.searchProducts(
+                random.nextInt(5) * PAGE_SIZE, PAGE_SIZE, // One of the first pages
+                nameFilter,
+                minPurity < 0 ? null : Integer.toString(minPurity),
+                minPurity < 0 ? null : Integer.toString(minPurity + 10),
+                random.nextInt(5) == 0 ? pick(data.states()) : null,
+                random.nextInt(7) == 0 ? pick(data.distributorNames()) : null,
+                sorters.charAt(0),
+                sortCount > 1 ? sorters.charAt(1) : null,
+                sortCount > 2 ? sorters.charAt(2) : null,
+                sortCount > 3 ? sorters.charAt(3) : null,
+                random.nextBoolean(),
+                sortCount > 1 ? random.nextBoolean() : null,
+                sortCount > 2 ? random.nextBoolean() : null,
+                sortCount > 3 ? random.nextBoolean() : null
+        ), DBManager::hasFailed);
+    }
+
+    // S3, sometimes continuing to the second page
+    private void reviews() {
+        final int chemicalID = pick(data.productIDs());
+
+        final var firstPage = call("viewReviews", () -> FunctionsAndProcedures.viewReviews(
+                0, REVIEW_PAGE_SIZE, chemicalID
+        ), DBManager::hasFailed);
+
+        if (firstPage != null && firstPage.length == REVIEW_PAGE_SIZE && random.nextInt(3) == 0)
+            call("viewReviews", () -> FunctionsAndProcedures.viewReviews(
+                    REVIEW_PAGE_SIZE, REVIEW_PAGE_SIZE, chemicalID
+            ), DBManager::hasFailed);
+    }
+
+    // S5, with 1-3 random products. Checkouts can fail when a product has
+    // sold out, in which case the cart is emptied for the next attempt.
+    // Half use a reusable discount when one is valid, since S7 only lists
+    // purchases that used a discount
+    private void checkout() {
+        final int items = 1 + random.nextInt(3);
+        for (int i = 0; i < items; i++)
+            session.addItemToCart(pick(data.productIDs()), BigDecimal.ONE);
+        final var cart = session.viewCart();
+        final Integer discountID = data.discountIDs().isEmpty() || random.nextBoolean() ? null :
+                pick(data.discountIDs());
+
+        final var output = call("completeTransaction",
+                () -> session.completeTransaction(Controller.TAX_PERCENT, discountID),
+                LoadSession::failed
+        );
+
+        for (var row : cart)
+            if (output != null && output[0] == SUCCESS)
+                purchased.add((Integer) row[0]);
+            else
+                session.removeItemFromCart((Integer) row[0]);
+    }
+
+    // S7 and S8
+    private void purchases() {
+        final var purchases = call("viewPurchases", () -> session.viewPurchases(
+                0, PAGE_SIZE, true
+        ), DBManager::hasFailed);
+        if (purchases == null || DBManager.hasFailed(purchases) || DBManager.isEmpty(purchases))
+            return;
+
+        final int transactionID = (Integer) purchases[random.nextInt(purchases.length)][4];
+        if (!transactionIDs.contains(transactionID)) {
+            if (transactionIDs.size() == MAX_REMEMBERED_TRANSACTIONS)
+                transactionIDs.remove(0);
+            transactionIDs.add(transactionID);
+        }
+
+        call("viewSubpurchases", () -> FunctionsAndProcedures.viewSubpurchases(
+                0, PAGE_SIZE, transactionID
+        ), DBManager::hasFailed);
+    }
+
+    // S11 and S12: buys 1-3 random chemical qualities from a random
+    // distributor, then receives one of the pending shipments. Several
+    // sessions may try to receive the same shipment, so some receipts fail
+    private void shipment() {
+        final var cart = new ShipmentCart();
+        final int items = 1 + random.nextInt(3);
+        final var added = new ArrayList<Object[]>();
+        for (int i = 0; i < items; i++) {
+            final var quality = pick(data.qualities());
+            if (added.contains(quality)) // Duplicates are rejected
+                continue;
+
+            added.add(quality);
+            cart.addRow((Integer) quality[0], (BigDecimal) quality[1],
+                    BigDecimal.valueOf(100), (BigDecimal) quality[2]);
+        }
+
+        call("recordShipmentPurchase", () -> FunctionsAndProcedures.recordShipmentPurchase(
+                pick(data.distributorIDs()), cart
+        ), LoadSession::failed);
+
+        final var pending = call("getPendingShipments",
+                FunctionsAndProcedures::getPendingShipments, DBManager::hasFailed
+        );
+        if (pending != null && !DBManager.hasFailed(pending) && !DBManager.isEmpty(pending))
+            call("markShipmentReceived", () -> FunctionsAndProcedures.markShipmentReceived(
+                    (Integer) pending[random.nextInt(pending.length)][0]
+            ), LoadSession::failed);
+    }
+
+    // S10, S13, and S14
+    private void catalog() {
+        switch (random.nextInt(3)) {
+            case 0 -> call("addDistributor", () -> FunctionsAndProcedures.addDistributor(
+                    uniqueName("Distributor")
+            ), LoadSession::failed);
+            case 1 -> {
+                final int unit = random.nextInt(data.measurementUnits().size());
+                call("addChemicalType", () -> FunctionsAndProcedures.addChemicalType(
+                        uniqueName("Chemical"),
+                        data.measurementUnits().get(unit), data.states().get(unit)
+                ), LoadSession::failed);
+            }
+            default -> call("addChemicalQuality", () -> FunctionsAndProcedures.addChemicalQuality(
+                    pick(data.chemicalTypeIDs()),
+                    BigDecimal.valueOf(50_000 + random.nextInt(50_001), 3).toPlainString(), // 50-100%
+                    "12.50"
+            ), LoadSession::failed);
+        }
+    }
+
+    // 4.2-4.9, with the arguments an employee would typically use
+    private void analytics() {
+        switch (random.nextInt(8)) {
+            case 0 -> call("HighlyRatedFirstTimeAndMinReviewsChemicals",
+                    () -> FunctionsAndProcedures.HighlyRatedFirstTimeAndMinReviewsChemicals(12, 1, 10),
+                    DBManager::hasFailed);
+            case 1 -> call("LargestPurityAmounts",
+                    () -> FunctionsAndProcedures.LargestPurityAmounts(pick(data.chemicalTypeIDs()), 10),
+                    DBManager::hasFailed);
+            case 2 -> call("HighestRatioProductsToReview",
+                    () -> FunctionsAndProcedures.HighestRatioProductsToReview(10),
+                    DBManager::hasFailed);
+            case 3 -> call("HighestRecentSpenders",
+                    () -> FunctionsAndProcedures.HighestRecentSpenders(12, 10),
+                    DBManager::hasFailed);
+            case 4 -> call("HighestProfitProducts",
+                    () -> FunctionsAndProcedures.HighestProfitProducts(12, 10),
+                    DBManager::hasFailed);
+            case 5 -> call("HighestRatedDistributorWithMinReviews",
+                    () -> FunctionsAndProcedures.HighestRatedDistributorWithMinReviews(1, 10),
+                    DBManager::hasFailed);
+            case 6 -> {
+                final var quality = pick(data.qualities());
+                call("DistributorHighestAvgRating",
+                        () -> FunctionsAndProcedures.DistributorHighestAvgRating(
+                                ((BigDecimal) quality[1]).toPlainString(), (Integer) quality[0], 10
+                        ), DBManager::hasFailed);
+            }
+            default -> call("PercentagePurchaseWDiscounts",
+                    () -> FunctionsAndProcedures.PercentagePurchaseWDiscounts(12),
+                    DBManager::hasFailed);
+        }
+    }
+
+    // Times call and records it under name if it started after the warmup.
+    // Returns null if call throws
+    private <T> T call(final String name, final Supplier<T> call, final Predicate<T> failed) {
+        final long start = System.nanoTime();
+        final boolean measured = start >= measureFromNanos;
+
+        final T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            if (measured)
+                recorder.record(name, System.nanoTime() - start, false, true);
+            if (firstError == null)
+                firstError = e;
+            return null;
+        }
+
+        if (measured)
+            recorder.record(name, System.nanoTime() - start, failed.test(result), false);
+        return result;
+    }
+
+    private static boolean failed(final String message) {
+        return !SUCCESS.equals(message);
+    }
+
+    private static boolean failed(final Object[] output) {
+        return output[0] != SUCCESS;
+    }
+
+    // Exponentially distributed, as for independent users. Returns false if
+    // interrupted
+    private boolean think() {
+        final long millis = (long) (-meanThinkMillis * Math.log(1 - random.nextDouble()));
+        final long remainingMillis = (deadlineNanos - System.nanoTime()) / 1_000_000;
+
+        try {
+            Thread.sleep(Math.max(0, Math.min(millis, remainingMillis)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private <T> T pick(final List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    // Unique across runs and sessions, for emails and catalog names
+    private String uniqueName(final String prefix) {
+        return prefix + '-' + runID + '-' + index + '-' + uniqueCounter++;
+    }
+}
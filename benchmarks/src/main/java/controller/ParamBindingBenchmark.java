@@ -0,0 +1,59 @@
+package controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.CallableStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Binding the params of each Signature in FunctionsAndProcedures to a
+// statement, as done by DBManager for every call
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParamBindingBenchmark {
+
+    @Param({
+            "REGISTER_CUSTOMER_SIG", "SEARCH_PRODUCTS_SIG", "VIEW_REVIEWS_SIG",
+            "GET_CUSTOMER_AND_SALT_SIG", "VALIDATE_CUSTOMER_SIG", "COMPLETE_TRANSACTION_SIG",
+            "MARK_TRANSACTION_DELIVERED_SIG", "VIEW_PURCHASES_SIG", "VIEW_SUBPURCHASES_SIG",
+            "REVIEW_PRODUCT_SIG", "ADD_DISTRIBUTOR_SIG", "RECORD_SHIPMENT_PURCHASE_SIG",
+            "MARK_SHIPMENT_RECEIVED_SIG", "ADD_CHEMICAL_TYPE_SIG", "ADD_CHEMICAL_QUALITY_SIG",
+            "HIGHLY_RATED_FIRST_TIME_AND_MIN_REVIEWS_CHEMICALS_SIG", "LARGEST_PURITY_AMOUNTS_SIG",
+            "HIGHEST_RATIO_PRODUCTS_TO_REVIEW_SIG", "HIGHEST_RECENT_SPENDERS_SIG",
+            "HIGHEST_PROFIT_PRODUCTS_SIG", "HIGHEST_RATED_DISTRIBUTOR_WITH_MIN_REVIEWS_SIG",
+            "DISTRIBUTOR_HIGHEST_AVG_RATING_SIG", "PERCENTAGE_PURCHASE_W_DISCOUNTS_SIG"
+    })
+    public String signature;
+
+    private ParamBinder[] binders;
+    private Object[] params;
+    private CallableStatement stmt;
+
+    @Setup
+    public void setup() {
+        final var sig = Samples.signature(signature);
+        binders = sig.paramBinders();
+        params = Samples.params(sig, 5); // Typical cart size
+        stmt = JdbcStubs.statement();
+    }
+
+    @Benchmark
+    public void bind() throws SQLException {
+        for (int i = 0; i < binders.length; i++)
+            binders[i].bind(stmt, params[i]);
+    }
+}
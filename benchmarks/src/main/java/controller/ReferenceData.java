@@ -0,0 +1,114 @@
+package controller;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static controller.DBManager.getError;
+import static controller.DBManager.hasFailed;
+import static java.sql.Types.INTEGER;
+
+// IDs and names read from the database before a load run, so that the
+// simulated sessions choose search filters, products, and shipment items that
+// exist (and so mostly succeed) instead of purely random values.
+//
+// Note: Rows added during the run (e.g., products from received shipments)
+// are not included, which only makes the load slightly less varied.
+record ReferenceData(List<Integer> chemicalTypeIDs,
+                     List<String> chemicalNames,
+                     List<String> measurementUnits, // Applicable to states at the same index
+                     List<String> states,
+                     List<Integer> distributorIDs,
+                     List<String> distributorNames,
+                     List<Object[]> qualities, // ChemicalTypeID, Purity, CostPerUnit
+                     List<Integer> productIDs, // ChemicalIDs, to add to carts and review
+                     List<Integer> discountIDs) { // Reusable discounts valid today, for checkouts
+
+    // Enough products that searches and checkouts are spread across the table
+    private static final int PRODUCTS_READ = 1000;
+
+    // The script's "2023-24 Reusable" discount, the only reusable sample
+    // discount valid on InMemoryDatabase.SAMPLE_DATA_DATE (see LoadGenerator)
+    private static final List<Integer> SAMPLE_DISCOUNT_IDS = List.of(3);
+
+    // inMemory is whether the calls run against an InMemoryBackend holding
+    // the script's sample data, which runs no queries of its own
+    static ReferenceData load(final boolean inMemory) {
+        final var types = check(FunctionsAndProcedures.getChemicalTypes(), "chemical types");
+        final var units = check(FunctionsAndProcedures.getMeasurementUnitApplicabilities(), "measurement units");
+        final var distributors = check(FunctionsAndProcedures.getDistributors(), "distributors");
+        final var qualities = check(FunctionsAndProcedures.getChemicalQualities(), "chemical qualities");
+        final var products = check(FunctionsAndProcedures.searchProducts(
+                0, PRODUCTS_READ,
+                null,
+                null, null,
+                null, null,
+                'C', null, null, null,
+                true, null, null, null
+        ), "products");
+        // No FunctionsAndProcedures method lists discounts, since customers
+        // enter them by ID
+        final var discounts = inMemory ?
+                SAMPLE_DISCOUNT_IDS.stream().map(id -> new Object[]{id}).toArray(Object[][]::new) :
+                check(DBManager.query(
+                        "SELECT DiscountID FROM DISCOUNT WHERE Reusability = 1 AND " +
+                        "CAST(GETDATE() AS DATE) BETWEEN InitialValidDate AND ExpirationDate",
+                        new int[]{INTEGER}
+                ), "discounts");
+
+        final var chemicalTypeIDs = new ArrayList<Integer>();
+        final var chemicalNames = new LinkedHashSet<String>();
+        for (var row : types) {
+            chemicalTypeIDs.add((Integer) row[0]);
+            chemicalNames.add((String) row[1]);
+        }
+
+        final var measurementUnits = new ArrayList<String>();
+        final var states = new ArrayList<String>();
+        for (var row : units) {
+            measurementUnits.add((String) row[0]);
+            states.add((String) row[1]);
+        }
+
+        final var distributorIDs = new ArrayList<Integer>();
+        final var distributorNames = new ArrayList<String>();
+        for (var row : distributors) {
+            distributorIDs.add((Integer) row[0]);
+            distributorNames.add((String) row[1]);
+        }
+
+        final var qualityRows = new ArrayList<Object[]>();
+        for (var row : qualities)
+            qualityRows.add(new Object[]{row[0], (BigDecimal) row[1], (BigDecimal) row[2]});
+
+        final var productIDs = new ArrayList<Integer>();
+        for (var row : products)
+            productIDs.add((Integer) row[0]);
+
+        final var discountIDs = new ArrayList<Integer>();
+        for (var row : discounts)
+            discountIDs.add((Integer) row[0]);
+
+        if (chemicalTypeIDs.isEmpty() || distributorIDs.isEmpty() ||
+            qualityRows.isEmpty() || productIDs.isEmpty())
+            throw new IllegalStateException(
+                    "The database has no products to load test with; run the script's sample data first"
+            );
+
+        return new ReferenceData(
+                List.copyOf(chemicalTypeIDs), List.copyOf(chemicalNames),
+                List.copyOf(measurementUnits), List.copyOf(states),
+                List.copyOf(distributorIDs), List.copyOf(distributorNames),
+                List.copyOf(qualityRows), List.copyOf(productIDs),
+                List.copyOf(discountIDs)
+        );
+    }
+
+    private static Object[][] check(final Object[][] output, final String table) {
+        if (hasFailed(output))
+            throw new IllegalStateException("Could not read " + table + ": " + getError(output));
+
+        return output;
+    }
+}
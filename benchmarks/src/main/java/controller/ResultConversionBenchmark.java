@@ -0,0 +1,85 @@
+package controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Converting the rows returned by each function Signature in
+// FunctionsAndProcedures into the row arrays returned by
+// runFunctionOrProcedure (with SqlServerBackend.readRows, as used for every
+// function call)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultConversionBenchmark {
+
+    @Param({
+            "SEARCH_PRODUCTS_SIG", "VIEW_REVIEWS_SIG", "GET_CUSTOMER_AND_SALT_SIG",
+            "VALIDATE_CUSTOMER_SIG", "VIEW_PURCHASES_SIG", "VIEW_SUBPURCHASES_SIG",
+            "HIGHLY_RATED_FIRST_TIME_AND_MIN_REVIEWS_CHEMICALS_SIG", "LARGEST_PURITY_AMOUNTS_SIG",
+            "HIGHEST_RATIO_PRODUCTS_TO_REVIEW_SIG", "HIGHEST_RECENT_SPENDERS_SIG",
+            "HIGHEST_PROFIT_PRODUCTS_SIG", "HIGHEST_RATED_DISTRIBUTOR_WITH_MIN_REVIEWS_SIG",
+            "DISTRIBUTOR_HIGHEST_AVG_RATING_SIG", "PERCENTAGE_PURCHASE_W_DISCOUNTS_SIG",
+            "GET_CUSTOMERS_SIG"
+    })
+    public String signature;
+
+    @Param({"10", "1000"})
+    public int rowCount;
+
+    // SqlServerBackend.readRows is private, so it is called through a method
+    // handle to benchmark the code actually used
+    private static final MethodHandle READ_ROWS;
+    static {
+        try {
+            READ_ROWS = MethodHandles.privateLookupIn(SqlServerBackend.class, MethodHandles.lookup())
+                    .findStatic(SqlServerBackend.class, "readRows", MethodType.methodType(
+                            int.class,
+                            int[].class, ResultSet.class, ColumnReader[].class, Consumer.class
+                    ));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Signature sig;
+    private JdbcStubs.Rows rows;
+    private final int[] returnColInd = {-1};
+
+    @Setup
+    public void setup() {
+        sig = Samples.signature(signature);
+        if (sig.procedure())
+            throw new IllegalArgumentException(signature + " is not a function");
+
+        rows = new JdbcStubs.Rows(Samples.rows(sig, rowCount), sig.returnColumnTypes().length);
+    }
+
+    @Benchmark
+    public int rowArrays(final Blackhole blackhole) throws Throwable {
+        rows.rewind();
+        return (int) READ_ROWS.invokeExact(
+                returnColInd, rows.resultSet(), sig.columnReaders(),
+                (Consumer<Object[]>) blackhole::consume
+        );
+    }
+}
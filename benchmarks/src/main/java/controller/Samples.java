@@ -0,0 +1,113 @@
+package controller;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static java.sql.Types.*;
+
+import static controller.DBManager.TABLE;
+
+// Signatures and representative values for the benchmarks
+final class Samples {
+
+    private static Map<String, Signature> signatures;
+
+    private Samples() {
+    }
+
+    // Every Signature built by FunctionsAndProcedures.initialize(), by field
+    // name (e.g., SEARCH_PRODUCTS_SIG). The fields are private, so they are
+    // read reflectively instead of adding accessors used only here
+    static synchronized Map<String, Signature> signatures() {
+        if (signatures != null)
+            return signatures;
+
+        FunctionsAndProcedures.initialize();
+
+        signatures = new LinkedHashMap<>();
+        try {
+            for (Field field : FunctionsAndProcedures.class.getDeclaredFields()) {
+                if (field.getType() != Signature.class || !Modifier.isStatic(field.getModifiers()))
+                    continue;
+
+                field.setAccessible(true);
+                signatures.put(field.getName(), (Signature) field.get(null));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return signatures;
+    }
+
+    static Signature signature(final String name) {
+        final var sig = signatures().get(name);
+        if (sig == null)
+            throw new IllegalArgumentException("No Signature named " + name);
+
+        return sig;
+    }
+
+    // Params as FunctionsAndProcedures passes them, with every nullable param
+    // set (so that no binder takes its null shortcut)
+    static Object[] params(final Signature sig, final int cartSize) {
+        final var params = new Object[sig.paramTypes().length];
+
+        for (int i = 0; i < params.length; i++)
+            params[i] = switch (sig.paramTypes()[i]) {
+                case INTEGER -> i + 1;
+                case DECIMAL -> "12.3456"; // Decimals are passed as Strings
+                case NVARCHAR -> "Sample text " + i;
+                case CHAR -> 'C';
+                case BOOLEAN -> true;
+                case BINARY -> new byte[64];
+                case DATE -> new Date(0);
+                case TABLE -> sig.call().contains("Shipment") ?
+                        shipmentCart(cartSize) :
+                        transactionCart(cartSize);
+                default -> throw new IllegalArgumentException("Unknown type");
+            };
+
+        return params;
+    }
+
+    // Rows as the driver would return them for the Signature's return columns
+    static Object[][] rows(final Signature sig, final int rowCount) {
+        final int[] types = sig.returnColumnTypes();
+        final var rows = new Object[rowCount][types.length];
+
+        for (int i = 0; i < rowCount; i++)
+            for (int j = 0; j < types.length; j++)
+                rows[i][j] = switch (types[j]) {
+                    case INTEGER -> i;
+                    case DECIMAL -> BigDecimal.valueOf(i * 125L, 4);
+                    case NVARCHAR -> "Name " + (i % 50); // Repeated, like distributor names
+                    case CHAR -> "S";
+                    case BOOLEAN -> i % 2 == 0;
+                    case BINARY -> new byte[64];
+                    case DATE -> new Date(i * 86_400_000L);
+                    default -> throw new IllegalArgumentException("Unknown type");
+                };
+
+        return rows;
+    }
+
+    static TransactionCart transactionCart(final int size) {
+        final var cart = new TransactionCart();
+        for (int i = 0; i < size; i++)
+            cart.addRow(i + 1, BigDecimal.valueOf(i % 10 + 1));
+
+        return cart;
+    }
+
+    static ShipmentCart shipmentCart(final int size) {
+        final var cart = new ShipmentCart();
+        for (int i = 0; i < size; i++)
+            cart.addRow(i + 1, new BigDecimal("0.9950"), BigDecimal.TEN, new BigDecimal("125.50"));
+
+        return cart;
+    }
+}
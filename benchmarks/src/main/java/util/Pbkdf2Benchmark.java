@@ -0,0 +1,72 @@
+package util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The CPU cost of hashing one password, which is the main cost of a login or
+// registration. fastPath and secretKeyFactory compare Pbkdf2HmacSha512 with
+// the SecretKeyFactory it replaces, and passwordHash measures Password.hash as
+// called by FunctionsAndProcedures (including the handoff to the hashing
+// executor).
+//
+// The default iteration count matches Password; lower counts can be given
+// with -p iterations=... for quicker runs.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Pbkdf2Benchmark {
+
+    @Param({"210000"})
+    public int iterations;
+
+    private final char[] password = "Abcdefgh1!".toCharArray();
+    private final byte[] salt = new byte[Pbkdf2HmacSha512.HASH_SIZE];
+    private final byte[][] hashAndSalt = new byte[2][];
+    private SecretKeyFactory keyFactory;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        new Random(445).nextBytes(salt); // Fixed for repeatable runs
+        hashAndSalt[1] = salt;
+
+        keyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+        Password.initialize(1, 1);
+    }
+
+    @Benchmark
+    public byte[] fastPath() {
+        return Pbkdf2HmacSha512.derive(password, salt, iterations, Pbkdf2HmacSha512.HASH_SIZE);
+    }
+
+    @Benchmark
+    public byte[] secretKeyFactory() throws InvalidKeySpecException {
+        return keyFactory.generateSecret(
+                new PBEKeySpec(password, salt, iterations, Pbkdf2HmacSha512.HASH_SIZE * 8)
+        ).getEncoded();
+    }
+
+    // Always uses Password's iteration count
+    @Benchmark
+    public Password.Result passwordHash() {
+        return Password.hash("Abcdefgh1!", hashAndSalt);
+    }
+}
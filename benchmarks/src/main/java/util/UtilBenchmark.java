@@ -0,0 +1,40 @@
+package util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Util.trueOnlyOnIndices with the sizes used for building Signatures: the 15
+// params of SearchProductsSorted with its 11 nullable params, and a
+// procedure's out-mode params
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    private final int[] searchProductsNullable =
+            IntStream.range(3, 16).filter(i -> i != 8 && i != 12).toArray();
+    private final int[] completeTransactionOut = {6, 7};
+
+    @Benchmark
+    public boolean[] searchProductsNullable() {
+        return Util.trueOnlyOnIndices(15, searchProductsNullable);
+    }
+
+    @Benchmark
+    public boolean[] completeTransactionOut() {
+        return Util.trueOnlyOnIndices(7, completeTransactionOut);
+    }
+}
@@ -0,0 +1,343 @@
+package controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// This class provides the same calls as FunctionsAndProcedures, but each call
+// is run on a background thread and returns a CompletableFuture for its
+// result, so the UI can stay responsive while waiting on the database and can
+// start several independent calls at once. Results (including failures
+// described with the usual Object[][]{null, {message}} structure) are exactly
+// those of the corresponding FunctionsAndProcedures methods; the futures only
+// complete exceptionally for unexpected exceptions (e.g., from a row consumer
+// given to forEachCustomer, or a RejectedExecutionException when the call
+// could not be queued).
+//
+// Use FunctionsAndProcedures.async() to get the shared instance.
+//
+// Note: At most maxConcurrentCalls calls run at once; further calls wait in a
+// bounded queue, and once it is full, calls are rejected immediately (as by
+// HashingExecutor) instead of piling up behind a slow database, so the time a
+// call can wait stays bounded and the caller can report that the system is
+// busy. The limit is set to the connection pool's maximum size, since any
+// additional calls would only wait for a connection while holding a thread.
+// The worker threads are daemon threads that exit after idling, so an idle
+// facade holds no threads.
+//
+// Note: Completion stages added with the non-async CompletableFuture methods
+// (thenApply, thenAccept, etc.) run on the worker thread, so Swing code must
+// still be run with SwingUtilities.invokeLater (or passed to the *Async
+// variants with an EDT executor).
+public final class AsyncFunctionsAndProcedures {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // A few waiting calls per thread, as for HashingExecutor
+    static final int QUEUED_CALLS_PER_THREAD = 4;
+
+    // A queued call and the future for its result, so that the futures of
+    // calls still queued at shutdown can be completed
+    private static final class Call<T> implements Runnable {
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Call(final Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) // Cancelled while queued, so skipped
+                return;
+
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    AsyncFunctionsAndProcedures(final int maxConcurrentCalls) {
+        this(maxConcurrentCalls, maxConcurrentCalls * QUEUED_CALLS_PER_THREAD);
+    }
+
+    AsyncFunctionsAndProcedures(final int maxConcurrentCalls, final int queueCapacity) {
+        if (maxConcurrentCalls < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("maxConcurrentCalls and queueCapacity must be positive");
+
+        final var threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                maxConcurrentCalls, maxConcurrentCalls,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    var thread = new Thread(r, "DB call " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true); // Must not keep the application open
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy() // Reject when full
+        );
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Runs call on the threads used for the calls, for client code that must
+    // run its own blocking database work with the same concurrency limit.
+    // Cancelling the returned future before call starts skips it, and the
+    // future completes exceptionally with RejectedExecutionException if the
+    // queue is full
+    public <T> CompletableFuture<T> submit(final Supplier<T> call) {
+        return run(call);
+    }
+
+    // Calls already started are interrupted, and the futures of queued calls
+    // and of calls made after this complete exceptionally with
+    // RejectedExecutionException
+    void shutdown() {
+        for (var queued : executor.shutdownNow())
+            ((Call<?>) queued).future.completeExceptionally(
+                    new RejectedExecutionException("Shut down before the call started")
+            );
+    }
+
+    private <T> CompletableFuture<T> run(final Supplier<T> call) {
+        final var queued = new Call<>(call);
+        try {
+            executor.execute(queued);
+        } catch (RejectedExecutionException e) { // Queue full or shut down
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return queued.future;
+    }
+
+    // SCENARIOS - START
+    // See the corresponding methods in FunctionsAndProcedures for params and
+    // return values
+
+    // S1
+    public CompletableFuture<String> registerCustomer(final String emailAddress, final String password,
+                                                      final String firstName, final String lastName,
+                                                      final String addressLine1, final String addressLine2,
+                                                      final int zipCode) {
+        return run(() -> FunctionsAndProcedures.registerCustomer(
+                emailAddress, password,
+                firstName, lastName,
+                addressLine1, addressLine2,
+                zipCode
+        ));
+    }
+
+    // S2
+    public CompletableFuture<Object[][]> searchProducts(final int resultsPosition, final int resultsCount,
+                                                        final String chemicalName,
+                                                        final String minPurity, final String maxPurity,
+                                                        final String stateOfMatter, final String Distributor,
+                                                        final char firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
+                                                        final boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc) {
+        return run(() -> FunctionsAndProcedures.searchProducts(
+                resultsPosition, resultsCount,
+                chemicalName,
+                minPurity, maxPurity,
+                stateOfMatter, Distributor,
+                firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
+                firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
+        ));
+    }
+
+    // S3
+    public CompletableFuture<Object[][]> viewReviews(final int startPos, final int rowCnt,
+                                                     final int chemID) {
+        return run(() -> FunctionsAndProcedures.viewReviews(startPos, rowCnt, chemID));
+    }
+
+    // S4
+    public CompletableFuture<Object[]> login(final String emailAddress, final String password) {
+        return run(() -> FunctionsAndProcedures.login(emailAddress, password));
+    }
+
+    // S5
+    // The cart must not be modified until the future completes
+    public CompletableFuture<Object[]> completeTransaction(final int customerID, final String taxPercent, final Integer discountID,
+                                                           final TransactionCart cart, final boolean online) {
+        return run(() -> FunctionsAndProcedures.completeTransaction(
+                customerID, taxPercent, discountID,
+                cart, online
+        ));
+    }
+
+    // S6
+    public CompletableFuture<String> markTransactionDelivered(final int transactionID) {
+        return run(() -> FunctionsAndProcedures.markTransactionDelivered(transactionID));
+    }
+
+    // S7
+    public CompletableFuture<Object[][]> viewPurchases(final int startPos, final int rowCnt,
+                                                       final int customerID, final boolean sortNewestFirst) {
+        return run(() -> FunctionsAndProcedures.viewPurchases(
+                startPos, rowCnt,
+                customerID, sortNewestFirst
+        ));
+    }
+
+    // S8
+    public CompletableFuture<Object[][]> viewSubpurchases(final int startPos, final int rowCnt,
+                                                          final int transactionID) {
+        return run(() -> FunctionsAndProcedures.viewSubpurchases(
+                startPos, rowCnt,
+                transactionID
+        ));
+    }
+
+    // S9
+    public CompletableFuture<String> reviewProduct(final int customerID, final int chemicalID, final int stars, final String text) {
+        return run(() -> FunctionsAndProcedures.reviewProduct(customerID, chemicalID, stars, text));
+    }
+
+    // S10
+    public CompletableFuture<String> addDistributor(final String distributorName) {
+        return run(() -> FunctionsAndProcedures.addDistributor(distributorName));
+    }
+
+    // S11
+    // The cart must not be modified until the future completes
+    public CompletableFuture<String> recordShipmentPurchase(final int distributorID, final ShipmentCart cart) {
+        return run(() -> FunctionsAndProcedures.recordShipmentPurchase(distributorID, cart));
+    }
+
+    public CompletableFuture<Object[][]> getDistributors() {
+        return run(FunctionsAndProcedures::getDistributors);
+    }
+
+    // S12
+    public CompletableFuture<String> markShipmentReceived(final int shipmentID) {
+        return run(() -> FunctionsAndProcedures.markShipmentReceived(shipmentID));
+    }
+
+    public CompletableFuture<Object[][]> getPendingShipments() {
+        return run(FunctionsAndProcedures::getPendingShipments);
+    }
+
+    // S13
+    public CompletableFuture<String> addChemicalType(final String chemicalName, final String measurementUnit, final String stateOfMatter) {
+        return run(() -> FunctionsAndProcedures.addChemicalType(chemicalName, measurementUnit, stateOfMatter));
+    }
+
+    // S14
+    public CompletableFuture<String> addChemicalQuality(final int chemicalTypeID, final String purity, final String costPerUnit) {
+        return run(() -> FunctionsAndProcedures.addChemicalQuality(chemicalTypeID, purity, costPerUnit));
+    }
+
+    // Other scenarios
+
+    public CompletableFuture<Object[][]> getCustomers() {
+        return run(FunctionsAndProcedures::getCustomers);
+    }
+
+    // rowConsumer is called on the worker thread
+    public CompletableFuture<Object[][]> forEachCustomer(final Consumer<Object[]> rowConsumer) {
+        return run(() -> FunctionsAndProcedures.forEachCustomer(rowConsumer));
+    }
+
+    public CompletableFuture<Object[][]> getMeasurementUnitApplicabilities() {
+        return run(FunctionsAndProcedures::getMeasurementUnitApplicabilities);
+    }
+
+    public CompletableFuture<Object[][]> getChemicalTypes() {
+        return run(FunctionsAndProcedures::getChemicalTypes);
+    }
+
+    public CompletableFuture<Object[][]> getChemicalQualities() {
+        return run(FunctionsAndProcedures::getChemicalQualities);
+    }
+
+    // S2, S3, S7, and S8 with keyset pagination
+
+    public CompletableFuture<KeysetPage> searchProductsAfter(final String token, final int resultsCount,
+                                                             final String chemicalName,
+                                                             final String minPurity, final String maxPurity,
+                                                             final String stateOfMatter, final String Distributor,
+                                                             final char firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
+                                                             final boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc) {
+        return run(() -> FunctionsAndProcedures.searchProductsAfter(
+                token, resultsCount,
+                chemicalName,
+                minPurity, maxPurity,
+                stateOfMatter, Distributor,
+                firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
+                firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
+        ));
+    }
+
+    public CompletableFuture<KeysetPage> viewReviewsAfter(final String token, final int rowCnt,
+                                                          final int chemID) {
+        return run(() -> FunctionsAndProcedures.viewReviewsAfter(token, rowCnt, chemID));
+    }
+
+    public CompletableFuture<KeysetPage> viewPurchasesAfter(final String token, final int rowCnt,
+                                                            final int customerID, final boolean sortNewestFirst) {
+        return run(() -> FunctionsAndProcedures.viewPurchasesAfter(
+                token, rowCnt,
+                customerID, sortNewestFirst
+        ));
+    }
+
+    public CompletableFuture<KeysetPage> viewSubpurchasesAfter(final String token, final int rowCnt,
+                                                               final int transactionID) {
+        return run(() -> FunctionsAndProcedures.viewSubpurchasesAfter(token, rowCnt, transactionID));
+    }
+
+    // SCENARIOS - END
+
+
+    // ANALYTICAL QUERIES - START
+
+    // 4.2
+    public CompletableFuture<Object[][]> HighlyRatedFirstTimeAndMinReviewsChemicals(int months, int reviews, int count) {
+        return run(() -> FunctionsAndProcedures.HighlyRatedFirstTimeAndMinReviewsChemicals(months, reviews, count));
+    }
+
+    // 4.3
+    public CompletableFuture<Object[][]> LargestPurityAmounts(int chemType, int n) {
+        return run(() -> FunctionsAndProcedures.LargestPurityAmounts(chemType, n));
+    }
+
+    // 4.4
+    public CompletableFuture<Object[][]> HighestRatioProductsToReview(int n) {
+        return run(() -> FunctionsAndProcedures.HighestRatioProductsToReview(n));
+    }
+
+    // 4.5
+    public CompletableFuture<Object[][]> HighestRecentSpenders(int months, int n) {
+        return run(() -> FunctionsAndProcedures.HighestRecentSpenders(months, n));
+    }
+
+    // 4.6
+    public CompletableFuture<Object[][]> HighestProfitProducts(int months, int n) {
+        return run(() -> FunctionsAndProcedures.HighestProfitProducts(months, n));
+    }
+
+    // 4.7
+    public CompletableFuture<Object[][]> HighestRatedDistributorWithMinReviews(int n, int m) {
+        return run(() -> FunctionsAndProcedures.HighestRatedDistributorWithMinReviews(n, m));
+    }
+
+    // 4.8
+    public CompletableFuture<Object[][]> DistributorHighestAvgRating(String purity, int chemType, int n) {
+        return run(() -> FunctionsAndProcedures.DistributorHighestAvgRating(purity, chemType, n));
+    }
+
+    // 4.9
+    public CompletableFuture<Object[][]> PercentagePurchaseWDiscounts(int months) {
+        return run(() -> FunctionsAndProcedures.PercentagePurchaseWDiscounts(months));
+    }
+
+    // ANALYTICAL QUERIES - END
+}
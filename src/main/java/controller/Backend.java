@@ -0,0 +1,26 @@
+package controller;
+
+import java.util.function.Consumer;
+
+// A database that DBManager runs Signatures against. DBManager validates
+// nothing itself; each backend converts the params, runs the call, and reports
+// failures with the same Object[][]{null, {message}} structure (built with
+// DBManager's fail helpers so that the messages are identical).
+//
+// SqlServerBackend runs calls on SQL Server through JDBC. InMemoryBackend runs
+// Java implementations of the script's functions and procedures over Java
+// collections, so the rest of the application can be run and measured without
+// a database server.
+interface Backend {
+
+    // Same return values as DBManager.forEachRow. Exceptions thrown by
+    // rowConsumer must be rethrown to the caller unchanged
+    Object[][] forEachRow(Signature sig, Consumer<Object[]> rowConsumer, Object[] params);
+
+    // The most calls that can usefully run at once
+    int maxConcurrentCalls();
+
+    PoolStatistics poolStatistics();
+
+    void close();
+}
@@ -0,0 +1,18 @@
+package controller;
+
+// A snapshot of the counters of one of the result caches used by
+// FunctionsAndProcedures. entries and size are taken at the moment the
+// snapshot is created; all other values are totals since the cache was
+// created. size is measured in the cache's own unit (rows for reference data,
+// estimated bytes for search pages).
+public record CacheStatistics(long hits, // Calls answered from the cache
+                              long misses, // Calls that had to run on the database
+                              long evictions, // Entries dropped because they expired or the cache was full
+                              long invalidations, // Times entries were dropped because their data changed
+                              int entries, // Entries currently cached
+                              long size) { // Total size of the cached entries
+
+    public double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
@@ -0,0 +1,53 @@
+package controller;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import static java.sql.Types.*;
+
+// Reads one column of the current row of a ResultSet as a Java value, or null
+// for SQL NULL. A Signature compiles one ColumnReader per return column when
+// it is built, with the column's type and 1-based index already resolved, so
+// reading a row is a straight sequence of read calls with no switch on the
+// type.
+@FunctionalInterface
+public interface ColumnReader {
+
+    Object read(ResultSet results) throws SQLException;
+
+    // Throws IllegalArgumentException for an unknown column type
+    static ColumnReader[] compile(final int[] returnColumnTypes)
+            throws IllegalArgumentException {
+        final var readers = new ColumnReader[returnColumnTypes.length];
+
+        for (int j = 0; j < returnColumnTypes.length; j++) {
+            final int col = j + 1;
+
+            // Same conversions as previously done with a switch in DBManager.
+            // Getters returning objects already return null for SQL NULL, so
+            // wasNull is only checked for primitive getters
+            readers[j] = switch (returnColumnTypes[j]) {
+                case INTEGER -> results -> {
+                    final int value = results.getInt(col);
+                    return results.wasNull() ? null : value;
+                };
+                case DECIMAL -> results -> results.getBigDecimal(col);
+                case NVARCHAR -> results -> results.getNString(col);
+                case CHAR -> results -> {
+                    final var str = results.getString(col);
+                    return str == null ? null : str.charAt(0);
+                };
+                case BOOLEAN -> results -> {
+                    final boolean value = results.getBoolean(col);
+                    return results.wasNull() ? null : value;
+                };
+                case BINARY -> results -> results.getBytes(col);
+                case DATE -> results -> results.getDate(col);
+                default -> throw new IllegalArgumentException(
+                        "Unknown return column type " + returnColumnTypes[j]
+                );
+            };
+        }
+
+        return readers;
+    }
+}
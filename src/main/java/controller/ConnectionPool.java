@@ -0,0 +1,341 @@
+package controller;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class keeps a bounded set of open connections to the database so that
+// DBManager does not need to complete a full login (including the TLS
+// handshake required by the encrypted connection) for every call. Connections
+// are borrowed with borrow() and returned to the pool by closing the returned
+// PooledConnection, which allows the same try-with-resources structure used
+// for unpooled connections.
+//
+// Note: Idle connections are kept in LIFO order so that the most recently used
+// (and thus most likely still valid) connection is borrowed first, while the
+// least recently used connections collect at the end of the deque, where the
+// evictor closes them once they have been idle for longer than the configured
+// idle timeout (without going below the configured minimum size).
+//
+// The methods that access the pool's state are synchronized on the pool
+// itself; physical connections are opened, validated, and closed outside of
+// the lock so that a slow network does not block other threads returning
+// connections.
+class ConnectionPool {
+
+    // Configuration for a ConnectionPool.
+    // validationBypassMillis allows a connection returned to the pool very
+    // recently to skip the validation round trip when borrowed again, since
+    // it was known to be working at that time
+    record Config(int minSize, // Connections kept open even when idle
+                  int maxSize, // Most connections open at once
+                  long idleTimeoutMillis, // Idle time before a connection above minSize is closed
+                  long borrowTimeoutMillis, // Most time to wait for a connection
+                  int validationTimeoutSeconds, // Most time to wait for a connection to be validated
+                  long validationBypassMillis, // Idle time below which validation is skipped
+                  int statementCacheSize) { // Prepared statements kept per connection
+
+        // The statement cache size allows every Signature built in
+        // FunctionsAndProcedures (28) and every query string used there (5)
+        // to stay prepared on each connection, with room for a few more
+        // (e.g., the load generator's queries). Raise it when adding calls
+        static final Config DEFAULT = new Config(
+                2, 10,
+                5 * 60 * 1000, 10 * 1000,
+                5, 500,
+                40
+        );
+
+        Config {
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+                throw new IllegalArgumentException(
+                        "Pool sizes must satisfy 0 <= minSize <= maxSize and maxSize >= 1"
+                );
+            if (idleTimeoutMillis <= 0 || borrowTimeoutMillis < 0 ||
+                validationTimeoutSeconds < 0 || validationBypassMillis < 0)
+                throw new IllegalArgumentException(
+                        "idleTimeoutMillis must be positive, and all other " +
+                        "timeouts must be nonnegative"
+                );
+            if (statementCacheSize < 1)
+                throw new IllegalArgumentException("statementCacheSize must be positive");
+        }
+    }
+
+    private final DataSource dataSource;
+    private final Config config;
+
+    // Most recently returned connection at the head
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    // Connections that are open or being opened, including borrowed ones
+    private int total = 0;
+    private int active = 0;
+    private boolean closed = false;
+
+    // Statistics
+    private long borrows = 0;
+    private long waits = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long timeouts = 0;
+    private long created = 0;
+    private long destroyed = 0;
+    // Shared by the statement caches of all connections, which are updated
+    // without holding the pool's lock
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private final ScheduledExecutorService evictor =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                var thread = new Thread(r, "DB connection pool evictor");
+                thread.setDaemon(true); // Must not keep the application open
+                return thread;
+            });
+
+    ConnectionPool(final DataSource dataSource, final Config config) {
+        this.dataSource = dataSource;
+        this.config = config;
+    }
+
+    // Opens the minimum number of connections and begins evicting idle
+    // connections. Failing to open the initial connections is not fatal, since
+    // borrow() opens connections as needed; the failure is logged so that an
+    // unreachable database is still reported at startup
+    void start() {
+        try {
+            fillToMinSize();
+        } catch (SQLException e) {
+            ProgramDirectoryManager.logError(
+                    e, "Could not open the initial pooled connections", true
+            );
+        }
+
+        final long period = Math.max(config.idleTimeoutMillis() / 2, 1);
+        evictor.scheduleWithFixedDelay(
+                this::evictIdleConnections,
+                period, period, TimeUnit.MILLISECONDS
+        );
+    }
+
+    PooledConnection borrow() throws SQLException {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(config.borrowTimeoutMillis());
+        boolean waited = false;
+
+        while (true) {
+            PooledConnection pooled;
+
+            synchronized (this) {
+                // Wait for a connection to be returned if none are idle and
+                // no more can be opened
+                while (!closed && idle.isEmpty() && total >= config.maxSize()) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLTimeoutException(
+                                "No pooled connection became available within " +
+                                config.borrowTimeoutMillis() + " ms"
+                        );
+                    }
+
+                    waited = true;
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt(); // Preserve for caller
+                        throw new SQLException("Interrupted while waiting for a pooled connection", e);
+                    }
+                }
+                if (closed)
+                    throw new SQLException("The connection pool has been closed");
+
+                // Reserve an idle connection or a slot for a new connection
+                pooled = idle.pollFirst();
+                if (pooled == null)
+                    total++;
+            }
+
+            if (pooled == null) { // Slot reserved, so open a new connection
+                pooled = open();
+            } else if (!isValid(pooled)) { // Broken connection, so try again
+                destroy(pooled);
+                continue;
+            }
+
+            recordBorrow(System.nanoTime() - start, waited);
+            return pooled;
+        }
+    }
+
+    Config config() {
+        return config;
+    }
+
+    synchronized PoolStatistics statistics() {
+        return new PoolStatistics(
+                active, idle.size(),
+                borrows, waits, totalWaitNanos, maxWaitNanos, timeouts,
+                created, destroyed,
+                statementCacheHits.sum(), statementCacheMisses.sum()
+        );
+    }
+
+    void close() {
+        final List<PooledConnection> toClose;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+
+            // Borrowed connections are closed when returned
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll(); // Wake waiting borrowers so they can fail
+        }
+
+        evictor.shutdownNow();
+        for (var pooled : toClose)
+            destroy(pooled);
+    }
+
+    // Called by PooledConnection.close()
+    void release(final PooledConnection pooled) {
+        boolean reusable;
+        try {
+            reusable = !pooled.connection().isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        synchronized (this) {
+            active--;
+
+            if (reusable && !closed) {
+                pooled.markReturned();
+                idle.addFirst(pooled);
+                notify(); // One connection is available for one waiting borrower
+
+                return;
+            }
+        }
+
+        destroy(pooled);
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            final var connection = dataSource.getConnection();
+            var pooled = new PooledConnection(this, connection, new StatementCache(
+                    connection, config.statementCacheSize(),
+                    statementCacheHits, statementCacheMisses
+            ));
+
+            synchronized (this) {
+                created++;
+            }
+
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            // Give up the reserved slot so another thread can try
+            synchronized (this) {
+                total--;
+                notify();
+            }
+
+            throw e;
+        }
+    }
+
+    private boolean isValid(final PooledConnection pooled) {
+        if (pooled.idleMillis() < config.validationBypassMillis())
+            return true;
+
+        try {
+            return pooled.connection().isValid(config.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(final PooledConnection pooled) {
+        try {
+            pooled.connection().close();
+        } catch (SQLException ignored) {
+            // The connection is discarded either way, and a failure to close
+            // an already broken connection is expected
+        }
+
+        synchronized (this) {
+            total--;
+            destroyed++;
+            notify(); // A slot for a new connection is available
+        }
+    }
+
+    private synchronized void recordBorrow(final long waitNanos, final boolean waited) {
+        active++;
+        borrows++;
+
+        if (waited) {
+            waits++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+    }
+
+    private void evictIdleConnections() {
+        final List<PooledConnection> toClose = new ArrayList<>();
+
+        synchronized (this) {
+            // Least recently used connections are at the end
+            while (total - toClose.size() > config.minSize() &&
+                   !idle.isEmpty() &&
+                   idle.peekLast().idleMillis() >= config.idleTimeoutMillis())
+                toClose.add(idle.pollLast());
+        }
+
+        for (var pooled : toClose)
+            destroy(pooled);
+
+        try {
+            fillToMinSize();
+        } catch (SQLException ignored) {
+            // Minimum size is restored on a later run or by borrow() once the
+            // database is reachable again. Failures are not logged here to
+            // avoid filling the log with one entry per evictor run
+        }
+    }
+
+    private void fillToMinSize() throws SQLException {
+        while (true) {
+            synchronized (this) {
+                if (closed || total >= config.minSize())
+                    return;
+                total++; // Reserve slot
+            }
+
+            var pooled = open();
+            synchronized (this) {
+                if (!closed) {
+                    pooled.markReturned();
+                    idle.addLast(pooled);
+                    notify();
+
+                    continue;
+                }
+            }
+
+            destroy(pooled); // Pool closed while the connection was opened
+            return;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import static java.sql.Types.*;
+
+// Encodes the keyset of the last row of a page (the values of the columns the
+// rows are ordered by, ending with a unique ID) as the continuation token
+// given to callers of the keyset-paginated calls, and decodes it back into
+// params for the next call.
+//
+// Tokens are URL-safe Base64 strings and are opaque to callers. Each token
+// records the call and the hash of the arguments it was created for, so a
+// token given with a different call or different arguments is rejected
+// instead of silently continuing some other list.
+//
+// Note: Tokens are not signed, so they must not be trusted beyond selecting
+// rows the caller could already request: every value decoded from a token is
+// still bound as a typed param, never added to SQL text.
+final class ContinuationToken {
+
+    private ContinuationToken() {
+    }
+
+    // keyset holds INTEGER (Integer), DECIMAL (BigDecimal), NVARCHAR (String),
+    // and DATE (Date) values, any of which may be null (e.g., the rating of a
+    // product without reviews)
+    static String encode(final String call, final Object[] arguments,
+                         final Object[] keyset) {
+        final var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(call.hashCode());
+            out.writeInt(Arrays.deepHashCode(arguments));
+            for (var value : keyset) {
+                out.writeBoolean(value != null);
+                if (value == null)
+                    continue;
+
+                if (value instanceof Integer i)
+                    out.writeInt(i);
+                else if (value instanceof BigDecimal d)
+                    out.writeUTF(d.toPlainString());
+                else if (value instanceof String s)
+                    out.writeUTF(s);
+                else if (value instanceof Date d)
+                    out.writeLong(d.toLocalDate().toEpochDay());
+                else
+                    throw new IllegalArgumentException("Unsupported keyset value " + value);
+            }
+        } catch (IOException e) { // Not thrown by ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    // The keyset encoded in token as params of the given java.sql.Types
+    // constants (with DECIMAL values as Strings, as FunctionsAndProcedures
+    // passes them). Throws IllegalArgumentException if token is malformed or
+    // was not created by encode for the same call and arguments
+    static Object[] decode(final String token, final String call,
+                           final Object[] arguments, final int[] keysetTypes)
+            throws IllegalArgumentException {
+        final var keyset = new Object[keysetTypes.length];
+        try (var in = new DataInputStream(new ByteArrayInputStream(
+                Base64.getUrlDecoder().decode(token)
+        ))) {
+            if (in.readInt() != call.hashCode() ||
+                in.readInt() != Arrays.deepHashCode(arguments))
+                throw new IllegalArgumentException("Token is for another call");
+
+            for (int i = 0; i < keysetTypes.length; i++)
+                keyset[i] = !in.readBoolean() ? null : switch (keysetTypes[i]) {
+                    case INTEGER -> in.readInt();
+                    case DECIMAL -> new BigDecimal(in.readUTF()).toPlainString(); // Validated here
+                    case NVARCHAR -> in.readUTF();
+                    case DATE -> Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+                    default -> throw new IllegalArgumentException("Unsupported keyset type " + keysetTypes[i]);
+                };
+
+            if (in.available() != 0)
+                throw new IllegalArgumentException("Token has trailing data");
+        } catch (IOException | DateTimeException e) { // Incl. EOFException for a short token
+            throw new IllegalArgumentException(e);
+        }
+
+        return keyset;
+    }
+}
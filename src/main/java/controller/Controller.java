@@ -37,9 +37,14 @@ public class Controller {
     private static final int RECOVERABLE_ERROR_STATUS = -3;
 
 
+    // Stage of initialize that every stage logging errors depends on
+    private static final String PROGRAM_DIRECTORY_STAGE = "Program directory";
+
     private static JFrame frame;
     private static boolean closed = false;
 
+    private static Startup startup; // Set by initialize, for startupReport
+
     public static void main(String[] args) {
         initialize();
 
@@ -91,6 +96,8 @@ public class Controller {
         // Perform any standard closing operations
         if (windowClosed())
             frame.dispatchEvent(new WindowEvent(frame, WindowEvent.WINDOW_CLOSING));
+        FunctionsAndProcedures.closeAsync(); // Stop queued background calls first
+        DBManager.close(); // Close pooled connections instead of dropping them
 
         // Indicate whether the logging process has failed. Realistically, this
         // information would not be shown to the user but would instead be
@@ -158,22 +165,50 @@ public class Controller {
         // This last, unlogged, unconditional exit should only be encountered
         // if the JVM does not support basic UI features (e.g., with an
         // outdated or modified JVM).
+        //
+        // Independent steps run at the same time (see Startup), and only the
+        // steps the UI needs are waited for here. The database (which may
+        // first be created from the SQL script) continues to initialize while
+        // the UI is shown, and calls made before it is ready wait for it. The
+        // time taken by each step is kept for diagnostics (see startupReport)
+        startup = new Startup();
+        startup.add(PROGRAM_DIRECTORY_STAGE, ProgramDirectoryManager::initialize);
+        startup.add("Signatures", FunctionsAndProcedures::initialize);
+        // Each of the following may log errors to the program directory
+        startup.add("Passwords", Password::initialize, PROGRAM_DIRECTORY_STAGE);
+        startup.add("Resources", Resources::initialize, PROGRAM_DIRECTORY_STAGE);
+        startup.add("Database", DBManager::initialize, PROGRAM_DIRECTORY_STAGE);
+
         try {
-            ProgramDirectoryManager.initialize();
-            Password.initialize();
-            Resources.initialize();
-            FunctionsAndProcedures.initialize();
-            DBManager.initialize();
+            startup.await(PROGRAM_DIRECTORY_STAGE, "Signatures", "Passwords", "Resources");
+        } catch (Exception e) {
+            initializationFailed(e);
+            return;
+        }
 
-        } catch (Exception e1) {
+        // Failures of the remaining steps are reported on the EDT, like any
+        // other failure after the UI is shown
+        startup.all().whenComplete((result, exception) -> {
+            if (exception != null && exception.getCause() instanceof Exception e)
+                SwingUtilities.invokeLater(() -> initializationFailed(e));
+        });
+    }
+
+    // The time taken by each step of initialize so far (see Startup.report),
+    // for profiling startup from diagnostics and benchmarks. Empty if
+    // initialize has not run
+    static String startupReport() {
+        return startup == null ? "" : startup.report();
+    }
+
+    private static void initializationFailed(final Exception e1) {
+        try {
+            ProgramDirectoryManager.logError(e1, "Initialization failure", false);
+        } catch (Exception e2) {
             try {
-                ProgramDirectoryManager.logError(e1, "Initialization failure", false);
-            } catch (Exception e2) {
-                try {
-                    exitForFailure();
-                } catch (Exception e3) {
-                    System.exit(FAILURE_STATUS);
-                }
+                exitForFailure();
+            } catch (Exception e3) {
+                System.exit(FAILURE_STATUS);
             }
         }
     }
@@ -66,6 +66,15 @@ public class CustomerSession {
         );
     }
 
+    // S7 with keyset pagination. See FunctionsAndProcedures.viewPurchasesAfter
+    public KeysetPage viewPurchasesAfter(final String token, final int rowCnt,
+                                         final boolean sortNewestFirst) {
+        return FunctionsAndProcedures.viewPurchasesAfter(
+                token, rowCnt,
+                customerID, sortNewestFirst
+        );
+    }
+
     // S9
     public String reviewProduct(final int chemicalID, final int stars, final String text) {
         return FunctionsAndProcedures.reviewProduct(customerID, chemicalID, stars, text);
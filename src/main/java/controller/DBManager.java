@@ -1,17 +1,9 @@
 package controller;
 
-import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
-
-import java.io.IOException;
-import java.math.BigDecimal;
-import java.sql.CallableStatement;
-import java.sql.Connection;
-import java.sql.Date;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import static java.sql.Types.*;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 // Note: With the system properly divided into separate applications (one
 // client-side application for customers, one client-side application for
@@ -27,7 +19,15 @@ import static java.sql.Types.*;
 // conversion between SQL types and Java types handled automatically with
 // information provided in a Signature object. The query function provides
 // similar but limited functionality for executing a single, prebuilt query
-// string.
+// string. For results too large to hold in memory, the forEachRow methods
+// pass each row to a consumer as it is read instead of returning an
+// Object[][].
+//
+// The calls are run by a Backend: SqlServerBackend (the default), which runs
+// them on SQL Server with pooled connections whose state can be read with
+// poolStatistics(), or InMemoryBackend, which runs Java implementations of the
+// script's functions and procedures so the application can run without a
+// database server.
 //
 // Note: To call a function or procedure, construct a Signature via the factory
 // methods in Signature, call runFunctionOrProcedure with that Signature and
@@ -43,29 +43,87 @@ public class DBManager {
     static final int TABLE = -3725;
 
 
-    private static final String DB_NAME = "tomlin_trevor_db";
-    private static final String SCRIPT_NAME = "barbee_joshua_Queries.sql";
-
-    private static final String CONNECTION_FAIL = "The system could not complete the operation.";
+    static final String CONNECTION_FAIL = "The system could not complete the operation.";
     private static final String RETURN_FAIL = "The data could not be retrieved from the database.";
 
-    // For creating connections
-    private static final SQLServerDataSource dataSource = new SQLServerDataSource();
+    // Runs the calls. Set in initialize, which may still be running (e.g.,
+    // creating the database) in the background while the UI is shown, so
+    // calls wait for it with backend(). If initialize fails, initialized
+    // completes exceptionally, and calls then fail with CONNECTION_FAIL
+    // instead of waiting
+    private static volatile Backend backend;
+    private static final CompletableFuture<Void> initialized = new CompletableFuture<>();
+    // Known from the configuration before the backend is created, so reading
+    // it never waits for initialize
+    private static volatile int maxConnections = ConnectionPool.Config.DEFAULT.maxSize();
 
     static void initialize() {
-        // Set connection details
-        dataSource.setServerName("localhost");
-        dataSource.setPortNumber(1433);
-        dataSource.setUser("sa"); // In professional project, should come from secure config file
-        dataSource.setPassword(""); // " "
-        dataSource.setEncrypt("true");
-        dataSource.setTrustServerCertificate(true);
-
-        // Create database if it does not exist
-        createDBIfNotExists();
-
-        // Have future connections connect directly to DB instead of only server
-        dataSource.setDatabaseName(DB_NAME);
+        initialize(ConnectionPool.Config.DEFAULT);
+    }
+
+    static void initialize(final ConnectionPool.Config poolConfig) {
+        maxConnections = poolConfig.maxSize();
+
+        final Backend created;
+        try {
+            created = new SqlServerBackend(poolConfig);
+        } catch (Throwable e) { // E.g., the server is unreachable
+            initialized.completeExceptionally(e);
+            throw e;
+        }
+        initialize(created);
+    }
+
+    // For running the application against another backend (e.g., an
+    // InMemoryBackend when no database server is available)
+    static void initialize(final Backend backend) {
+        maxConnections = backend.maxConcurrentCalls();
+        DBManager.backend = backend;
+        initialized.complete(null);
+    }
+
+    // The backend once initialize has set it, or null if initialize failed
+    private static Backend backend() {
+        try {
+            initialized.join();
+        } catch (CompletionException e) {
+            return null;
+        }
+        return backend;
+    }
+
+    // Closes all idle pooled connections. Connections that are in use are
+    // closed when they are returned
+    static void close() {
+        if (backend != null)
+            backend.close();
+    }
+
+    // The most connections the pool will open at once, which is also the most
+    // calls that can run at once. Taken from the pool's configuration (the
+    // default one until initialize is called), so this never waits for the
+    // database
+    static int maxConnections() {
+        return maxConnections;
+    }
+
+    public static PoolStatistics poolStatistics() {
+        final var backend = backend();
+        return backend == null ?
+                new PoolStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0) : // No pool was created
+                backend.poolStatistics();
+    }
+
+    // Sets the number of rows the driver should request from the server at a
+    // time for subsequent calls. Larger values need fewer round trips for
+    // large results; smaller values hold less of a result in memory at once.
+    // Backends without a server ignore this
+    static void setFetchSize(final int rows) {
+        if (rows < 1)
+            throw new IllegalArgumentException("rows must be positive");
+
+        if (backend() instanceof SqlServerBackend sqlServer)
+            sqlServer.setFetchSize(rows);
     }
 
     // Return values:
@@ -77,38 +135,25 @@ public class DBManager {
     //          scalar values, so scalar values appear in output[0][0], and
     //          table values are given in the rows and columns of the returned
     //          2D array.
+    //
+    // Note: The query is built into a Signature for every call, so
+    // frequently used queries should instead be built once with
+    // Signature.buildQuery and called with runFunctionOrProcedure. Throws
+    // IllegalArgumentException for an unknown column type, as Signature does
     static Object[][] query(final String query,
-                            final int[] returnColumnTypes) {
-        try (Connection con = dataSource.getConnection();
-             Statement stmt = con.createStatement(
-                     ResultSet.TYPE_SCROLL_INSENSITIVE, // Forward and backward scroll (to find row count)
-                     ResultSet.CONCUR_READ_ONLY // Only for directly retrieving and returning
-             )) {
-            final int[] returnColInd = new int[]{-1};
-
-            try {
-                // Run query to get table or scalar, and parse as 2D array with
-                // desired types
-                return resultSetTo2DArray(returnColInd, stmt.executeQuery(query), returnColumnTypes);
-            } catch (IllegalStateException e) {
-                // Bad type provided for a return column/variable
-                return returnFail(false, query, e, returnColInd[0]);
-            } catch (SQLException e) {
-                if (returnColInd[0] != -1) // Failure during result parsing
-                    return returnFail(false, query, e, returnColInd[0]);
-
-                // Exception raised when preparing or running the query
-                return SQLFail();
-            }
-        } catch (SQLException e) {
-            // Unknown access failure from getConnection or createStatement.
-            // Not necessarily permanent, so application not forcibly closed
-            ProgramDirectoryManager.logError(
-                    e, "Could not establish a connection to the database", true
-            );
-
-            return failWithMessage(CONNECTION_FAIL);
-        }
+                            final int[] returnColumnTypes)
+            throws IllegalArgumentException {
+        return runFunctionOrProcedure(Signature.buildQuery(query, returnColumnTypes));
+    }
+
+    // Passes each row of the query's result to rowConsumer as it is read,
+    // instead of collecting the result in memory. See the note before
+    // forEachRow(Signature, ...) for details and return values
+    static Object[][] forEachRow(final String query,
+                                 final int[] returnColumnTypes,
+                                 final Consumer<Object[]> rowConsumer)
+            throws IllegalArgumentException {
+        return forEachRow(Signature.buildQuery(query, returnColumnTypes), rowConsumer);
     }
 
     public static boolean isEmpty(final Object[][] output) {
@@ -146,289 +191,53 @@ public class DBManager {
     //          Object[] in output[0]
     static Object[][] runFunctionOrProcedure(final Signature sig,
                                              final Object... params) {
-        try (Connection con = dataSource.getConnection();
-             PreparedStatement stmt = prepareStatement(con, sig.procedure(), sig.call())) {
-            // Keep parameter index to report first invalid param value
-            final int[] paramInd = new int[]{-1};
-            // Keep return/return column index to report first invalid return
-            // type. For functions, this corresponds to the SQL function's
-            // return type(s); for procedures, the return types are the types
-            // of the SQL procedure's out-mode params that have been requested
-            // in sig.call()
-            final int[] returnInd = new int[]{-1};
-
-            try {
-                setParams(
-                        paramInd, stmt,
-                        sig.paramTypes(), params, sig.paramsNullable(), sig.paramsOut(),
-                        sig.procedure()
-                );
-
-                // Return results and automatically close connection (without
-                // making connection persist until client finishes its
-                // arbitrary processing)
-                return sig.procedure() ?
-                        retrieveProcedureResults(
-                                returnInd, (CallableStatement) stmt,
-                                sig.paramTypes(), sig.outParamIndices()
-                        ) :
-                        retrieveFunctionResults(
-                                returnInd, stmt,
-                                sig.returnColumnTypes()
-                        );
-            } catch (ClassCastException | IllegalArgumentException e) { // Incl. NumberFormatException from BigDecimal
-                // A conversion has failed, a param has an otherwise invalid
-                // value (bad type, bad range, etc.), or an exception was
-                // thrown in the SQL function/procedure. Report first param with
-                // invalid value or report that the user's input is invalid
-                return paramOrSQLFail(paramInd[0], sig.paramNames());
-            } catch (IllegalStateException e) {
-                // Bad type provided for a return column/variable
-                return returnFail(sig.procedure(), sig.call(), e, returnInd[0]);
-            } catch (SQLException e) {
-                if (returnInd[0] != -1) // Failure during result parsing
-                    return returnFail(sig.procedure(), sig.call(), e, returnInd[0]);
-
-                // Failure during param parsing, or exception raised when
-                // processing the statement
-                return paramOrSQLFail(paramInd[0], sig.paramNames());
-            }
-        } catch (SQLException e) {
-            // Unknown access failure from getConnection or
-            // prepareStatement/prepareCall. Not necessarily permanent, so
-            // application not forcibly closed
-            ProgramDirectoryManager.logError(
-                    e, "Could not establish a connection to the database", true
-            );
-
-            return failWithMessage(CONNECTION_FAIL);
-        }
-    }
+        final var rows = new ArrayList<Object[]>();
+        final var output = forEachRow(sig, rows::add, params);
 
-    private static void createDBIfNotExists() {
-        try (Connection con = dataSource.getConnection();
-             PreparedStatement stmt = con.prepareStatement(
-                     "SELECT CASE WHEN EXISTS (SELECT 1 FROM SYS.DATABASES WHERE Name = ?) " +
-                             "THEN 1 ELSE 0 END"
-             )) {
-
-            // Skip creation if DB exists
-            stmt.setString(1, DB_NAME);
-            var result = stmt.executeQuery();
-            result.next();
-            if (result.getBoolean(1))
-                return;
-
-            // Run script with sqlcmd utility (available on Windows, Mac, and Linux)
-            var processBuilder = new ProcessBuilder(
-                    "sqlcmd", "-U", "sa", "-P", "\"\"", "-i", SCRIPT_NAME
-            );
-            // Redirect output to this process' console.
-            // Note that this code would appear in the server-side application
-            // of a professional system based on this concept, so detailed
-            // information can be safely printed to its console
-            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-            processBuilder.start().waitFor(); // Wait until the entire script is run and sqlcmd returns
-        } catch (SQLException e) {
-            ProgramDirectoryManager.logError(
-                    e, "Could not confirm DB " + DB_NAME + " exists", false
-            );
-        } catch (IOException | SecurityException | InterruptedException e) {
-            ProgramDirectoryManager.logError(
-                    e, "Could not create DB " + DB_NAME, false
-            );
-        }
+        return hasFailed(output) ? output : rows.toArray(new Object[0][]);
     }
 
-    private static PreparedStatement prepareStatement(final Connection con,
-                                                      final boolean isProcedure,
-                                                      final String call)
-            throws SQLException {
-        if (isProcedure) // Required in case out-mode params are requested
-            return con.prepareCall(
-                    call,
-                    ResultSet.TYPE_SCROLL_INSENSITIVE,
-                    ResultSet.CONCUR_READ_ONLY
-            );
-
-        return con.prepareStatement(
-                call,
-                ResultSet.TYPE_SCROLL_INSENSITIVE, // Forward or backward scroll (for counting rows)
-                ResultSet.CONCUR_READ_ONLY // Returned table readonly
-        );
-    }
-
-    private static void setParams(final int[] paramInd,
-                                  final PreparedStatement stmt,
-                                  final int[] paramTypes,
-                                  final Object[] params,
-                                  final boolean[] nullableParams,
-                                  final boolean[] outParams,
-                                  final boolean isProcedure)
-            throws SQLException, IllegalArgumentException, ClassCastException {
-        var cstmt = isProcedure ? (CallableStatement) stmt : null;
-
-        for (int i = 0; i < paramTypes.length; i++) {
-            paramInd[0] = i;
-
-            if (isProcedure && outParams[i])
-                cstmt.registerOutParameter(i + 1, paramTypes[i]); // Cannot accept TABLE as output
-            else
-                setInParam(stmt, paramTypes[i], params[i], nullableParams[i], i + 1);
-        }
-
-        // Params parsed successfully, so subsequent errors are not for param
-        // parsing
-        paramInd[0] = -1;
-    }
-
-    private static void setInParam(final PreparedStatement stmt,
-                                   final int paramType,
-                                   final Object param,
-                                   final boolean nullable,
-                                   final int ind)
-            throws SQLException {
-        // Allow user to set certain params to null; client code must
-        // specify which params are nullable to prevent user error from
-        // propagating
-        if (param == null) {
-            if (!nullable) // This param cannot be null
-                throw new IllegalArgumentException();
-
-            stmt.setNull(ind, paramType);
-            return;
-        }
-
-        // Set next param with given nonnull value, requiring value to be
-        // convertible to intended type. Otherwise, ClassCastException,
-        // IllegalArgumentException (also accounting for
-        // NumberFormatException), or SQLException thrown.
-        //
-        // Switch used instead of stmt.setObject(ind, obj, type) to avoid
-        // AssertionError thrown by setObject if given invalid type.
-        //
-        // Convert param indices from Java's 0-based to required 1-based
-        switch (paramType) {
-            case INTEGER -> stmt.setInt(ind, (int) param);
-            case DECIMAL -> stmt.setBigDecimal(ind, new BigDecimal((String) param));
-            case NVARCHAR -> stmt.setNString(ind, (String) param);
-            case CHAR -> stmt.setString(ind, "" + (char) param);
-            case BOOLEAN -> stmt.setBoolean(ind, (boolean) param);
-            case BINARY -> stmt.setBytes(ind, (byte[]) param);
-            case DATE -> stmt.setDate(ind, (Date) param);
-            case TABLE -> stmt.setObject(ind, ((TableValuedParameter) param).convertToTable());
-            default -> throw new IllegalArgumentException(); // Unknown type
-        }
-    }
-
-    private static Object[][] retrieveProcedureResults(final int[] returnInd,
-                                                       final CallableStatement stmt,
-                                                       final int[] paramTypes,
-                                                       final int[] outParamIndices)
-            throws SQLException, IllegalStateException {
-        stmt.execute();
-
-        var output = new Object[outParamIndices.length];
-        int i = -1;
-        for (int outParamIndex : outParamIndices) {
-            i++;
-            returnInd[0] = outParamIndex - 1; // outParamIndices uses 1-based indices
-
-            // Same structure and justifications of switch as given in setInParam
-            output[i] = switch (paramTypes[outParamIndex - 1]) {
-                case INTEGER -> stmt.getInt(outParamIndex);
-                case DECIMAL -> stmt.getBigDecimal(outParamIndex);
-                case NVARCHAR -> stmt.getNString(outParamIndex);
-                case CHAR -> {
-                    var str = stmt.getString(outParamIndex);
-                    if (str == null) // May return null, so check to avoid NPE
-                        yield null;
-                    yield str.charAt(0);
-                }
-                case BOOLEAN -> stmt.getBoolean(outParamIndex);
-                case BINARY -> stmt.getBytes(outParamIndex);
-                case DATE -> stmt.getDate(outParamIndex);
-                default -> throw new IllegalStateException(); // Unknown type
-            };
-
-            // For SQL NULL, return Java null instead of default values
-            if (stmt.wasNull())
-                output[i] = null;
-        }
-
-        // Results read successfully, so subsequent errors are not for result
-        // parsing.
-        // Resetting returnInd is not strictly necessary because no code
-        // follows the call to this function in runFunction; this is added
-        // defensively in case the code is modified in the future
-        returnInd[0] = -1;
-
-        return new Object[][]{output};
-    }
-
-    private static Object[][] retrieveFunctionResults(final int[] returnColInd,
-                                                      final PreparedStatement stmt,
-                                                      final int[] returnColumnTypes)
-            throws SQLException, IllegalStateException {
-        return resultSetTo2DArray(returnColInd, stmt.executeQuery(), returnColumnTypes);
+    // This method provides the same functionality as runFunctionOrProcedure,
+    // but each row of the result is passed to rowConsumer as soon as it is
+    // read instead of being collected into an Object[][]. This allows results
+    // of any size to be processed (e.g., exported) in constant memory, as long
+    // as rowConsumer does not keep the rows. For procedures, rowConsumer
+    // receives the requested out-mode params as a single row.
+    //
+    // Note: The connection used for the call is held until every row has been
+    // consumed, so rowConsumer should not perform slow operations (and must
+    // not call back into DBManager while many threads are doing the same, or
+    // the connection pool may be exhausted). An exception thrown by
+    // rowConsumer stops the call and is rethrown to the caller unchanged.
+    //
+    // Return values:
+    //      new Object[][]{null, new Object[]{message}} for failures, as in
+    //          runFunctionOrProcedure. Rows passed to rowConsumer before a
+    //          failure during result parsing are not retracted;
+    //      new Object[][]{new Object[]{rowCount}} otherwise, where rowCount is
+    //          the number of rows passed to rowConsumer
+    static Object[][] forEachRow(final Signature sig,
+                                 final Consumer<Object[]> rowConsumer,
+                                 final Object... params) {
+        final var backend = backend();
+        return backend == null ?
+                failWithMessage(CONNECTION_FAIL) :
+                backend.forEachRow(sig, rowConsumer, params);
     }
 
-    private static Object[][] resultSetTo2DArray(final int[] returnColInd,
-                                                 final ResultSet results,
-                                                 final int[] returnColumnTypes)
-            throws SQLException, IllegalStateException {
-        var output = new Object[results.last() ? results.getRow() : 0]
-                [results.getMetaData().getColumnCount()];
-        results.beforeFirst(); // Reset position to start (after change by results.last())
-
-        for (int i = 0; results.next() && i < output.length; i++) { // Checking i in the condition is not necessary here, but it may prevent some uncaught array index exceptions if the ResultSet API for SQL Server changes
-            for (int j = 0; j < output[0].length; j++) {
-                returnColInd[0] = j;
-
-                // Same structure and justifications of switch as given in setInParam
-                output[i][j] = switch (returnColumnTypes[j]) {
-                    case INTEGER -> results.getInt(j + 1);
-                    case DECIMAL -> results.getBigDecimal(j + 1);
-                    case NVARCHAR -> results.getNString(j + 1);
-                    case CHAR -> {
-                        var str = results.getString(j + 1);
-                        if (str == null) // May return null, so check to avoid NPE
-                            yield null;
-                        yield str.charAt(0);
-                    }
-                    case BOOLEAN -> results.getBoolean(j + 1);
-                    case BINARY -> results.getBytes(j + 1);
-                    case DATE -> results.getDate(j + 1);
-                    default -> throw new IllegalStateException(); // Unknown type
-                };
-
-                // For SQL NULL, return Java null instead of default values
-                if (results.wasNull())
-                    output[i][j] = null;
-            }
-        }
-
-        // Results read successfully, so subsequent errors are not for result
-        // parsing.
-        // Resetting returnInd is not strictly necessary because no code
-        // follows the call to this function in runFunctionOrProcedure or
-        // query; this is added defensively in case the code is modified in the
-        // future
-        returnColInd[0] = -1;
-
-        return output;
-    }
+    // FAILURES
+    // Shared by the backends so that every backend reports failures with the
+    // same messages
 
-    private static Object[][] paramOrSQLFail(final int paramInd,
-                                             final String[] paramNames) {
+    static Object[][] paramOrSQLFail(final int paramInd,
+                                     final String[] paramNames) {
 
         return paramInd != -1 ?
                failWithMessage("Invalid " + paramNames[paramInd] + ".") : // Exception in Java code parsing and supplying params
                SQLFail();
     }
 
-    private static Object[][] SQLFail() {
+    static Object[][] SQLFail() {
         // Access exception or exception in SQL code. An access exception
         // should be logged, but the JDBC interface does not provide a means to
         // clearly distinguish SQL exceptions (which are used to consistently
@@ -442,8 +251,8 @@ public class DBManager {
         );
     }
 
-    private static Object[][] returnFail(final boolean isProcedure, final String call,
-                                         final Exception e, final int returnInd) {
+    static Object[][] returnFail(final boolean isProcedure, final String call,
+                                 final Exception e, final int returnInd) {
         // A return fail indicates an incongruence between the constructed
         // Signature and the corresponding function/procedure in the database
         // and thus must always be logged. Other parts of the application may
@@ -458,7 +267,11 @@ public class DBManager {
         return failWithMessage(RETURN_FAIL);
     }
 
-    private static Object[][] failWithMessage(final String message) {
+    static Object[][] failWithMessage(final String message) {
         return new Object[][]{null, new Object[]{message}};
     }
+
+    static Object[][] rowCount(final int rowCount) {
+        return new Object[][]{{rowCount}};
+    }
 }
@@ -1,14 +1,19 @@
 package controller;
 
+import java.util.Arrays;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import static java.sql.Types.*;
 
+import static controller.DBManager.failWithMessage;
+import static controller.DBManager.forEachRow;
 import static controller.DBManager.getError;
 import static controller.DBManager.hasFailed;
 import static controller.DBManager.isEmpty;
 import static controller.DBManager.query;
 import static controller.DBManager.runFunctionOrProcedure;
 import static controller.DBManager.TABLE;
+import static controller.ReferenceDataCache.Table.*;
 import util.Password;
 
 public class FunctionsAndProcedures {
@@ -36,6 +41,15 @@ public class FunctionsAndProcedures {
             "An error occurred while logging in: ";
     private static final String INCORRECT_PASSWORD =
             "Incorrect password.";
+    // Registration and login (package-private so that the load generator can
+    // retry it)
+    static final String HASHING_BUSY =
+            "The system is handling many logins right now. Please try again " +
+                    "in a moment.";
+    // Keyset pagination
+    private static final String INVALID_TOKEN =
+            "This list has changed or the page is no longer available. " +
+                    "Please start again from the first page.";
     // Error messages can be included as constants at the top of the file, as
     // literals where they are used, or in a separate config file. The first
     // two of these options are shown in this example, and in a professional
@@ -58,6 +72,10 @@ public class FunctionsAndProcedures {
     private static Signature MARK_SHIPMENT_RECEIVED_SIG; // S12 Employee
     private static Signature ADD_CHEMICAL_TYPE_SIG; // S13 Employee
     private static Signature ADD_CHEMICAL_QUALITY_SIG; // S14 Employee
+    private static Signature SEARCH_PRODUCTS_AFTER_SIG; // S2 Both, with keyset pagination ↓
+    private static Signature VIEW_REVIEWS_AFTER_SIG; // S3
+    private static Signature VIEW_PURCHASES_AFTER_SIG; // S7
+    private static Signature VIEW_SUBPURCHASES_AFTER_SIG; // S8
     private static Signature HIGHLY_RATED_FIRST_TIME_AND_MIN_REVIEWS_CHEMICALS_SIG; // 4.2 Employee ↓ (all analytical queries are employee-mode only)
     private static Signature LARGEST_PURITY_AMOUNTS_SIG; // 4.3
     private static Signature HIGHEST_RATIO_PRODUCTS_TO_REVIEW_SIG; // 4.4
@@ -67,6 +85,19 @@ public class FunctionsAndProcedures {
     private static Signature DISTRIBUTOR_HIGHEST_AVG_RATING_SIG; // 4.8
     private static Signature PERCENTAGE_PURCHASE_W_DISCOUNTS_SIG; // 4.9
 
+    // Queries
+    private static Signature GET_CUSTOMERS_SIG;
+
+    // Created on first use, after DBManager has been initialized
+    private static AsyncFunctionsAndProcedures async;
+
+    // For the reference tables read by the employee screens. Each procedure
+    // that changes one of these tables invalidates it when it succeeds
+    private static final ReferenceDataCache REFERENCE_DATA = new ReferenceDataCache();
+    // For pages of searchProducts results. Invalidated when stock, purchaser
+    // counts, or ratings change
+    private static final SearchResultCache SEARCH_RESULTS = new SearchResultCache();
+
     // These exceptions prevent the user from accessing the required database
     // functions and procedures in a way that would complicate error handling
     // if the application were to continue with partial functionality, so
@@ -97,8 +128,10 @@ public class FunctionsAndProcedures {
                         "Address Line 1", "Address Line 2", "ZIP Code"
                 }
         );
-        SEARCH_PRODUCTS_SIG = Signature.buildFunc(
-                "SearchProducts(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+        // The procedure orders by only the sort conditions given, with a plan
+        // for each sort order (see the script)
+        SEARCH_PRODUCTS_SIG = Signature.buildRowsProc(
+                "SearchProductsSorted(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
                 new int[]{ // Param types
                         INTEGER, INTEGER, // Since many params, lines match def in SQL script
                         NVARCHAR,
@@ -118,13 +151,12 @@ public class FunctionsAndProcedures {
                 },
                 new int[]{ // Return column types
                         INTEGER, // Since many params, lines match def in SQL script (see
-                        NVARCHAR, DECIMAL, NVARCHAR,            // SearchProducts in script)
+                        NVARCHAR, DECIMAL, NVARCHAR,            // SearchProductsSorted in script)
                         DECIMAL, DECIMAL,
                         NVARCHAR, NVARCHAR,
                         NVARCHAR,
                         DECIMAL, INTEGER
-                },
-                true
+                }
         );
         VIEW_REVIEWS_SIG = Signature.buildFunc(
                 "ViewReviews(?, ?, ?)",
@@ -239,6 +271,110 @@ public class FunctionsAndProcedures {
                 new String[]{"Chemical Type ID", "Purity", "Cost per Unit"}
         );
 
+        // Keyset-paginated scenarios. Each takes the same params as the
+        // function above without the start position, followed by the keyset
+        // of the row to continue after (all null for the first page), and
+        // returns the same columns followed by the keyset of each row. See
+        // keysetPage
+        // The procedure runs SearchProductsSorted with the keyset (see the
+        // script), so its keyset is the values of the columns sorted by
+        SEARCH_PRODUCTS_AFTER_SIG = Signature.buildRowsProc(
+                "SearchProductsAfter(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                new int[]{ // Param types
+                        INTEGER,
+                        NVARCHAR,
+                        DECIMAL, DECIMAL,
+                        NVARCHAR, NVARCHAR,
+                        CHAR, CHAR, CHAR, CHAR,
+                        BOOLEAN, BOOLEAN, BOOLEAN, BOOLEAN,
+                        DECIMAL, DECIMAL, DECIMAL, INTEGER,
+                        INTEGER
+                },
+                IntStream.range(2, 20).filter(i -> i != 7 && i != 11).toArray(), // As in SEARCH_PRODUCTS_SIG, and the keyset
+                new String[]{ // Param names for user
+                        "Number of Results to Show",
+                        "Chemical",
+                        "Min Purity", "Max Purity",
+                        "State of Matter", "Distributor",
+                        "First Sorter", "Second Sorter", "Third Sorter", "Fourth Sorter",
+                        "First Sort Asc.", "Second Sort Asc.", "Third Sort Asc.", "Fourth Sort Asc.",
+                        "Continuation Token", "Continuation Token", "Continuation Token", "Continuation Token",
+                        "Continuation Token"
+                },
+                new int[]{ // Return column types
+                        INTEGER,
+                        NVARCHAR, DECIMAL, NVARCHAR,
+                        DECIMAL, DECIMAL,
+                        NVARCHAR, NVARCHAR,
+                        NVARCHAR,
+                        DECIMAL, INTEGER,
+                        DECIMAL, DECIMAL, DECIMAL, INTEGER, // Keyset: CostPerUnit, Purity, AvgRating, PurchaserCnt,
+                        INTEGER //                             and ChemicalID
+                }
+        );
+        VIEW_REVIEWS_AFTER_SIG = Signature.buildFunc(
+                "ViewReviewsAfter(?, ?, ?, ?)",
+                new int[]{
+                        INTEGER,
+                        INTEGER,
+                        DATE, INTEGER
+                },
+                new int[]{3, 4},
+                new String[]{
+                        "Number of Results to Show",
+                        "Chemical",
+                        "Continuation Token", "Continuation Token"
+                },
+                new int[]{
+                        NVARCHAR, NVARCHAR, INTEGER, NVARCHAR, DATE,
+                        DATE, INTEGER // Keyset: ReviewDate and ReviewID
+                },
+                true
+        );
+        VIEW_PURCHASES_AFTER_SIG = Signature.buildFunc(
+                "ViewPurchasesAfter(?, ?, ?, ?, ?)",
+                new int[]{
+                        INTEGER,
+                        INTEGER, BOOLEAN,
+                        DATE, INTEGER
+                },
+                new int[]{4, 5},
+                new String[]{
+                        "Number of Results to Show",
+                        "Customer", "Sort Newest First",
+                        "Continuation Token", "Continuation Token"
+                },
+                new int[]{
+                        DATE, DECIMAL,
+                        NVARCHAR, DECIMAL,
+                        INTEGER,
+                        DATE,
+                        DATE, INTEGER // Keyset: PurchaseDate and TransactionID
+                },
+                true
+        );
+        VIEW_SUBPURCHASES_AFTER_SIG = Signature.buildFunc(
+                "ViewSubpurchasesAfter(?, ?, ?, ?)",
+                new int[]{
+                        INTEGER,
+                        INTEGER,
+                        NVARCHAR, INTEGER
+                },
+                new int[]{3, 4},
+                new String[]{
+                        "Number of Results to Show",
+                        "Transaction",
+                        "Continuation Token", "Continuation Token"
+                },
+                new int[]{
+                        NVARCHAR, DECIMAL, DECIMAL, NVARCHAR, NVARCHAR,
+                        DECIMAL,
+                        NVARCHAR,
+                        NVARCHAR, INTEGER // Keyset: ChemicalName and ChemicalID
+                },
+                true
+        );
+
         // Analytical queries
         HIGHLY_RATED_FIRST_TIME_AND_MIN_REVIEWS_CHEMICALS_SIG = Signature.buildFunc(
                 "HighlyRatedFirstTimeAndMinReviewsChemicals(?, ?, ?)",
@@ -326,6 +462,28 @@ public class FunctionsAndProcedures {
                 },
                 true
         );
+
+        // Queries
+        GET_CUSTOMERS_SIG = Signature.buildQuery(
+                "SELECT CustomerID, EmailAddress FROM CUSTOMER",
+                new int[]{INTEGER, NVARCHAR}
+        );
+    }
+
+    // The same calls as this class, run in the background. See
+    // AsyncFunctionsAndProcedures.
+    // Note: Sized from the pool's configuration, so this never waits for the
+    // database, and may be called on the EDT while it is still initializing
+    public static synchronized AsyncFunctionsAndProcedures async() {
+        if (async == null)
+            async = new AsyncFunctionsAndProcedures(DBManager.maxConnections());
+
+        return async;
+    }
+
+    static synchronized void closeAsync() {
+        if (async != null)
+            async.shutdown();
     }
 
     // SCENARIOS - START
@@ -347,8 +505,12 @@ public class FunctionsAndProcedures {
 
         // Generate random salt and hash password if password is right format
         final var saltAndHash = new byte[2][]; // Hash at 0, salt at 1
-        if (!Password.isValid(password) || !Password.saltAndHash(password, saltAndHash))
+        if (!Password.isValid(password))
             return INVALID_PASSWORD;
+        switch (Password.saltAndHash(password, saltAndHash)) {
+            case INVALID -> { return INVALID_PASSWORD; }
+            case BUSY -> { return HASHING_BUSY; }
+        }
 
         final var output = runFunctionOrProcedure(REGISTER_CUSTOMER_SIG,
                 emailAddress, saltAndHash[0], saltAndHash[1],
@@ -367,14 +529,38 @@ public class FunctionsAndProcedures {
                                             final String stateOfMatter, final String Distributor,
                                             final char firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
                                             final boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc) {
-        return runFunctionOrProcedure(SEARCH_PRODUCTS_SIG,
+        final var params = searchProductsParams(
+                resultsPosition, resultsCount,
+                chemicalName,
+                minPurity, maxPurity,
+                stateOfMatter, Distributor,
+                firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
+                firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
+        );
+
+        // Each call gets its own copy of a cached page
+        return SEARCH_RESULTS.get(params, () -> runFunctionOrProcedure(SEARCH_PRODUCTS_SIG, params));
+    }
+
+    // Hits and misses of the cache used by searchProducts
+    public static CacheStatistics searchResultStatistics() {
+        return SEARCH_RESULTS.statistics();
+    }
+
+    private static Object[] searchProductsParams(final int resultsPosition, final int resultsCount,
+                                                 final String chemicalName,
+                                                 final String minPurity, final String maxPurity,
+                                                 final String stateOfMatter, final String Distributor,
+                                                 final char firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
+                                                 final boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc) {
+        return new Object[]{
                 resultsPosition, resultsCount,
                 "".equals(chemicalName) ? null : chemicalName, // Convert empty strings to null to ignore missing search parameters
                 "".equals(minPurity) ? null : minPurity, "".equals(maxPurity) ? null : maxPurity,
                 "".equals(stateOfMatter) ? null : stateOfMatter, "".equals(Distributor) ? null : Distributor,
                 firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
                 firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
-        );
+        };
     }
 
     // S3
@@ -413,8 +599,12 @@ public class FunctionsAndProcedures {
         // ensuring runtimes for this method are as close as possible
         // regardless of the success or failure case.
         final var hashAndSalt = new byte[][]{null, (byte[]) customerIDAndSalt[0][1]};
-        if (!Password.isValid(password) || !Password.hash(password, hashAndSalt))
+        if (!Password.isValid(password))
             return new Object[]{INVALID_PASSWORD};
+        switch (Password.hash(password, hashAndSalt)) {
+            case INVALID -> { return new Object[]{INVALID_PASSWORD}; }
+            case BUSY -> { return new Object[]{HASHING_BUSY}; }
+        }
 
         // Check the calculated hash against the customer's stored hash value
         final var validated = runFunctionOrProcedure(VALIDATE_CUSTOMER_SIG,
@@ -442,6 +632,7 @@ public class FunctionsAndProcedures {
         if (hasFailed(output))
             return new Object[]{"Transaction could not be completed: " + getError(output)};
 
+        SEARCH_RESULTS.invalidate(); // Remaining quantities and purchaser counts changed
         return new Object[]{SUCCESS, output[0][0], output[0][1]};
     }
 
@@ -483,109 +674,228 @@ public class FunctionsAndProcedures {
         var output = runFunctionOrProcedure(REVIEW_PRODUCT_SIG,
                 customerID, chemicalID, stars, text
         );
+        if (hasFailed(output))
+            return getError(output) + " You may only review products you have purchased and received.";
 
-        return hasFailed(output) ?
-               getError(output) + " You may only review products you have purchased and received." :
-               SUCCESS;
+        SEARCH_RESULTS.invalidate(); // Average rating changed
+        return SUCCESS;
     }
 
     // S10
     public static String addDistributor(final String distributorName) {
-        return hasFailed(runFunctionOrProcedure(ADD_DISTRIBUTOR_SIG,
+        if (hasFailed(runFunctionOrProcedure(ADD_DISTRIBUTOR_SIG,
                 distributorName
-        )) ? "A distributor with this name already exists." : SUCCESS;
+        )))
+            return "A distributor with this name already exists.";
+
+        REFERENCE_DATA.invalidate(DISTRIBUTORS);
+        return SUCCESS;
     }
 
     // S11
     public static String recordShipmentPurchase(final int distributorID, final ShipmentCart cart) {
-        return hasFailed(runFunctionOrProcedure(RECORD_SHIPMENT_PURCHASE_SIG,
+        if (hasFailed(runFunctionOrProcedure(RECORD_SHIPMENT_PURCHASE_SIG,
                 distributorID, cart
-        )) ?
-                "One or more listed items are invalid. Ensure there are no" +
-                        "duplicates, null values, or nonpositive values" :
-                SUCCESS;
+        )))
+            return "One or more listed items are invalid. Ensure there are no" +
+                    "duplicates, null values, or nonpositive values";
+
+        REFERENCE_DATA.invalidate(PENDING_SHIPMENTS);
+        return SUCCESS;
     }
 
     // REQUIRED FOR S11
     // Should be called before recordShipmentPurchase so that employee can
     // choose distributor
     public static Object[][] getDistributors() {
-        return query("SELECT * FROM DISTRIBUTOR",
+        return REFERENCE_DATA.get(DISTRIBUTORS, () -> query("SELECT * FROM DISTRIBUTOR",
                 new int[]{INTEGER, NVARCHAR} // ID and name
-        );
+        ));
     }
 
     // S12
     public static String markShipmentReceived(final int shipmentID) {
-        return hasFailed(runFunctionOrProcedure(MARK_SHIPMENT_RECEIVED_SIG,
+        if (hasFailed(runFunctionOrProcedure(MARK_SHIPMENT_RECEIVED_SIG,
                 shipmentID
-        )) ? "The shipment does not exist or was already received." : SUCCESS;
+        )))
+            return "The shipment does not exist or was already received.";
+
+        REFERENCE_DATA.invalidate(PENDING_SHIPMENTS);
+        SEARCH_RESULTS.invalidate(); // Shipment's products now searchable
+        return SUCCESS;
     }
 
     // REQUIRED FOR S12
     // Should be called before markShipmentReceived so that employee can
     // choose shipment
     public static Object[][] getPendingShipments() {
-        return query("SELECT * FROM PENDING_SHIPMENT",
+        return REFERENCE_DATA.get(PENDING_SHIPMENTS, () -> query("SELECT * FROM PENDING_SHIPMENT",
                 new int[]{INTEGER, INTEGER, DATE} // ShipmentID, DistributorID, and PurchaseDate
-        );
+        ));
     }
 
     // S13
     public static String addChemicalType(final String chemicalName, final String measurementUnit, final String stateOfMatter) {
-        return hasFailed(runFunctionOrProcedure(ADD_CHEMICAL_TYPE_SIG,
+        if (hasFailed(runFunctionOrProcedure(ADD_CHEMICAL_TYPE_SIG,
                 chemicalName, measurementUnit, stateOfMatter
-        )) ?
-                "A chemical type with these values already exists, or one of" +
-                        " these values is invalid (including nonexistent " +
-                        "measurement units and states of matter)." :
-                SUCCESS;
+        )))
+            return "A chemical type with these values already exists, or one of" +
+                    " these values is invalid (including nonexistent " +
+                    "measurement units and states of matter).";
+
+        REFERENCE_DATA.invalidate(CHEMICAL_TYPES);
+        return SUCCESS;
     }
 
     // S14
     public static String addChemicalQuality(final int chemicalTypeID, final String purity, final String costPerUnit) {
-        return hasFailed(runFunctionOrProcedure(ADD_CHEMICAL_QUALITY_SIG,
+        if (hasFailed(runFunctionOrProcedure(ADD_CHEMICAL_QUALITY_SIG,
                 chemicalTypeID, purity, costPerUnit
-        )) ?
-                "A chemical quality already exists for this chemical type " +
-                        "and purity level, or one of these values is invalid." :
-                SUCCESS;
+        )))
+            return "A chemical quality already exists for this chemical type " +
+                    "and purity level, or one of these values is invalid.";
+
+        REFERENCE_DATA.invalidate(CHEMICAL_QUALITIES);
+        return SUCCESS;
     }
 
     // Other scenarios
 
     // For employees to use customer operations
     public static Object[][] getCustomers() {
-        return query("SELECT CustomerID, EmailAddress FROM CUSTOMER",
-                new int[]{INTEGER, NVARCHAR}
-        );
+        return runFunctionOrProcedure(GET_CUSTOMERS_SIG);
         // For a professional system with many customers, a PreparedStatement
         // could be used here with search parameters to select a few specific
         // customers, or the results could be paged with offsets and row counts
-        // for performance and ease of use
+        // for performance and ease of use. forEachCustomer can be used to
+        // process every customer without holding them all in memory
+    }
+
+    // Passes each (CustomerID, EmailAddress) row to rowConsumer as it is read.
+    // Returns the same values as DBManager.forEachRow: check with hasFailed,
+    // and on success, the number of customers read is in output[0][0]
+    public static Object[][] forEachCustomer(final Consumer<Object[]> rowConsumer) {
+        return forEachRow(GET_CUSTOMERS_SIG, rowConsumer);
     }
 
     // For viewing measurement units and states to make chemical types
     public static Object[][] getMeasurementUnitApplicabilities() {
-        return query("SELECT * FROM MEASUREMENT_UNIT_APPLICABILITY",
+        return REFERENCE_DATA.get(MEASUREMENT_UNIT_APPLICABILITIES, () -> query("SELECT * FROM MEASUREMENT_UNIT_APPLICABILITY",
                 new int[]{NVARCHAR, NVARCHAR}
-        );
+        ));
     }
 
     // For viewing chemical types to make chemical qualities
     public static Object[][] getChemicalTypes() {
-        return query("SELECT * FROM CHEMICAL_TYPE",
+        return REFERENCE_DATA.get(CHEMICAL_TYPES, () -> query("SELECT * FROM CHEMICAL_TYPE",
                 new int[]{INTEGER, NVARCHAR, NVARCHAR, NVARCHAR}
-        );
+        ));
     }
 
     // For viewing chemical qualities to add items to shipments
     public static Object[][] getChemicalQualities() {
-        return query("SELECT * FROM CHEMICAL_QUALITY",
+        return REFERENCE_DATA.get(CHEMICAL_QUALITIES, () -> query("SELECT * FROM CHEMICAL_QUALITY",
                 new int[]{INTEGER, DECIMAL, DECIMAL}
+        ));
+    }
+
+    // Hits and misses of the cache used by getDistributors,
+    // getPendingShipments, getMeasurementUnitApplicabilities,
+    // getChemicalTypes, and getChemicalQualities, summed over those tables
+    public static CacheStatistics referenceDataStatistics() {
+        return REFERENCE_DATA.statistics();
+    }
+
+    // S2, S3, S7, and S8 with keyset pagination
+    // Each of these methods returns the rows that follow token (or the first
+    // rows if token is null) in the same order as the corresponding method
+    // above, so the cost of a page does not grow with how deep it is. Pass
+    // the returned page's nextToken, with the same other arguments, to get the
+    // next page. Unlike with the methods above, rows with equal sort values
+    // are ordered by ID, so no row is skipped or repeated between pages.
+    //
+    // Note: Pages are not cached by SearchResultCache, which stores pages by
+    // position
+
+    public static KeysetPage searchProductsAfter(final String token, final int resultsCount,
+                                                 final String chemicalName,
+                                                 final String minPurity, final String maxPurity,
+                                                 final String stateOfMatter, final String Distributor,
+                                                 final char firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
+                                                 final boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc) {
+        final var params = searchProductsParams(
+                0, resultsCount,
+                chemicalName,
+                minPurity, maxPurity,
+                stateOfMatter, Distributor,
+                firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
+                firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
+        );
+
+        // Without the start position and count
+        return keysetPage(SEARCH_PRODUCTS_AFTER_SIG, token, resultsCount,
+                Arrays.copyOfRange(params, 2, params.length)
         );
     }
 
+    public static KeysetPage viewReviewsAfter(final String token, final int rowCnt,
+                                              final int chemID) {
+        return keysetPage(VIEW_REVIEWS_AFTER_SIG, token, rowCnt, chemID);
+    }
+
+    public static KeysetPage viewPurchasesAfter(final String token, final int rowCnt,
+                                                final int customerID, final boolean sortNewestFirst) {
+        return keysetPage(VIEW_PURCHASES_AFTER_SIG, token, rowCnt,
+                customerID, sortNewestFirst
+        );
+    }
+
+    public static KeysetPage viewSubpurchasesAfter(final String token, final int rowCnt,
+                                                   final int transactionID) {
+        return keysetPage(VIEW_SUBPURCHASES_AFTER_SIG, token, rowCnt, transactionID);
+    }
+
+    // Runs sig, a keyset-paginated function (or procedure) whose params are
+    // the row count, then arguments, then the keyset of the row to continue
+    // after, and whose last columns are the keyset of each row (one column
+    // for each keyset param). One more row than requested is fetched to find
+    // whether there is a next page, and the keyset columns are removed from
+    // the returned rows
+    private static KeysetPage keysetPage(final Signature sig, final String token, final int rowCnt,
+                                         final Object... arguments) {
+        if (rowCnt <= 0) // Would be accepted by TOP, unlike by FETCH
+            return new KeysetPage(failWithMessage("Invalid " + sig.paramNames()[0] + "."), null);
+
+        final var keysetTypes = Arrays.copyOfRange(sig.paramTypes(), 1 + arguments.length, sig.paramTypes().length);
+        final Object[] after;
+        try {
+            after = token == null ?
+                    new Object[keysetTypes.length] : // First page
+                    ContinuationToken.decode(token, sig.call(), arguments, keysetTypes);
+        } catch (IllegalArgumentException e) {
+            return new KeysetPage(failWithMessage(INVALID_TOKEN), null);
+        }
+
+        final var params = new Object[sig.paramTypes().length];
+        params[0] = rowCnt == Integer.MAX_VALUE ? rowCnt : rowCnt + 1;
+        System.arraycopy(arguments, 0, params, 1, arguments.length);
+        System.arraycopy(after, 0, params, 1 + arguments.length, after.length);
+
+        final var output = runFunctionOrProcedure(sig, params);
+        if (hasFailed(output))
+            return new KeysetPage(output, null);
+
+        final int columns = sig.returnColumnTypes().length - keysetTypes.length;
+        final var rows = new Object[Math.min(output.length, rowCnt)][];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = Arrays.copyOf(output[i], columns);
+
+        return new KeysetPage(rows, output.length <= rowCnt ? null : ContinuationToken.encode(
+                sig.call(), arguments,
+                Arrays.copyOfRange(output[rowCnt - 1], columns, output[rowCnt - 1].length)
+        ));
+    }
+
 
     // SCENARIOS - END
 
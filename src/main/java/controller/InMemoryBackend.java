@@ -0,0 +1,303 @@
+package controller;
+
+import com.microsoft.sqlserver.jdbc.SQLServerDataTable;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import static java.sql.Types.*;
+
+import static controller.DBManager.CONNECTION_FAIL;
+import static controller.DBManager.SQLFail;
+import static controller.DBManager.TABLE;
+import static controller.DBManager.failWithMessage;
+import static controller.DBManager.hasFailed;
+import static controller.DBManager.paramOrSQLFail;
+import static controller.DBManager.returnFail;
+import static controller.DBManager.rowCount;
+
+// Runs DBManager's calls against an InMemoryDatabase instead of SQL Server, so
+// the controller layer (and anything built on it, such as the load generator)
+// can run without a database server.
+//
+// Each Signature's call is matched to a routine by the name of the function or
+// procedure it calls (or, for queries, by the whole query string). Params are
+// converted exactly as by the ParamBinders of SqlServerBackend (e.g., DECIMAL
+// params are given as Strings), and failures are reported with the same
+// messages, so callers cannot tell the backends apart except by timing.
+//
+// Note: Calls not implemented by InMemoryDatabase are logged and reported as
+// connection failures, as they would be if the database were unreachable.
+final class InMemoryBackend implements Backend {
+
+    private final Map<String, Routine> routines;
+
+    // Runs one function, procedure, or query with converted params. Returns
+    // the rows of a function or query, or a single row of out-mode params for
+    // a procedure
+    @FunctionalInterface
+    private interface Routine {
+        List<Object[]> run(Object[] args) throws SQLException;
+    }
+
+    InMemoryBackend(final InMemoryDatabase database) {
+        routines = Map.ofEntries(
+                // Scenarios
+                Map.entry("RegisterCustomer", args -> procedure(database.RegisterCustomer(
+                        (String) args[0], (byte[]) args[1], (byte[]) args[2],
+                        (String) args[3], (String) args[4],
+                        (String) args[5], (String) args[6], (Integer) args[7]
+                ))),
+                Map.entry("SearchProductsSorted", args -> database.SearchProductsSorted(
+                        (Integer) args[0], (Integer) args[1],
+                        (String) args[2],
+                        (BigDecimal) args[3], (BigDecimal) args[4],
+                        (String) args[5], (String) args[6],
+                        (Character) args[7], (Character) args[8], (Character) args[9], (Character) args[10],
+                        (Boolean) args[11], (Boolean) args[12], (Boolean) args[13], (Boolean) args[14]
+                )),
+                Map.entry("ViewReviews", args -> database.ViewReviews(
+                        (Integer) args[0], (Integer) args[1], (Integer) args[2]
+                )),
+                Map.entry("GetCustomerAndSalt", args -> database.GetCustomerAndSalt((String) args[0])),
+                Map.entry("ValidateCustomer", args -> database.ValidateCustomer(
+                        (Integer) args[0], (byte[]) args[1]
+                )),
+                Map.entry("CompleteTransaction", args -> procedure(database.CompleteTransaction(
+                        (Integer) args[0], (BigDecimal) args[1], (Integer) args[2],
+                        table(args[3]), (Boolean) args[4]
+                ))),
+                Map.entry("MarkTransactionDelivered", args -> procedure(
+                        database.MarkTransactionDelivered((Integer) args[0])
+                )),
+                Map.entry("ViewPurchases", args -> database.ViewPurchases(
+                        (Integer) args[0], (Integer) args[1], (Integer) args[2], (Boolean) args[3]
+                )),
+                Map.entry("ViewSubpurchases", args -> database.ViewSubpurchases(
+                        (Integer) args[0], (Integer) args[1], (Integer) args[2]
+                )),
+                Map.entry("ReviewProduct", args -> procedure(database.ReviewProduct(
+                        (Integer) args[0], (Integer) args[1], (Integer) args[2], (String) args[3]
+                ))),
+                Map.entry("AddDistributor", args -> procedure(database.AddDistributor((String) args[0]))),
+                Map.entry("RecordShipmentPurchase", args -> procedure(database.RecordShipmentPurchase(
+                        (Integer) args[0], table(args[1])
+                ))),
+                Map.entry("MarkShipmentReceived", args -> procedure(
+                        database.MarkShipmentReceived((Integer) args[0])
+                )),
+                Map.entry("AddChemicalType", args -> procedure(database.AddChemicalType(
+                        (String) args[0], (String) args[1], (String) args[2]
+                ))),
+                Map.entry("AddChemicalQuality", args -> procedure(database.AddChemicalQuality(
+                        (Integer) args[0], (BigDecimal) args[1], (BigDecimal) args[2]
+                ))),
+
+                // Scenarios with keyset pagination
+                Map.entry("SearchProductsAfter", args -> database.SearchProductsAfter(
+                        (Integer) args[0],
+                        (String) args[1],
+                        (BigDecimal) args[2], (BigDecimal) args[3],
+                        (String) args[4], (String) args[5],
+                        (Character) args[6], (Character) args[7], (Character) args[8], (Character) args[9],
+                        (Boolean) args[10], (Boolean) args[11], (Boolean) args[12], (Boolean) args[13],
+                        (BigDecimal) args[14], (BigDecimal) args[15], (BigDecimal) args[16], (Integer) args[17],
+                        (Integer) args[18]
+                )),
+                Map.entry("ViewReviewsAfter", args -> database.ViewReviewsAfter(
+                        (Integer) args[0], (Integer) args[1], (Date) args[2], (Integer) args[3]
+                )),
+                Map.entry("ViewPurchasesAfter", args -> database.ViewPurchasesAfter(
+                        (Integer) args[0], (Integer) args[1], (Boolean) args[2], (Date) args[3], (Integer) args[4]
+                )),
+                Map.entry("ViewSubpurchasesAfter", args -> database.ViewSubpurchasesAfter(
+                        (Integer) args[0], (Integer) args[1], (String) args[2], (Integer) args[3]
+                )),
+
+                // Analytical queries
+                Map.entry("HighlyRatedFirstTimeAndMinReviewsChemicals", args ->
+                        database.HighlyRatedFirstTimeAndMinReviewsChemicals(
+                                (Integer) args[0], (Integer) args[1], (Integer) args[2]
+                        )),
+                Map.entry("LargestPurityAmounts", args -> database.LargestPurityAmounts(
+                        (Integer) args[0], (Integer) args[1]
+                )),
+                Map.entry("HighestRatioProductsToReview", args ->
+                        database.HighestRatioProductsToReview((Integer) args[0])),
+                Map.entry("HighestRecentSpenders", args -> database.HighestRecentSpenders(
+                        (Integer) args[0], (Integer) args[1]
+                )),
+                Map.entry("HighestProfitProducts", args -> database.HighestProfitProducts(
+                        (Integer) args[0], (Integer) args[1]
+                )),
+                Map.entry("HighestRatedDistributorWithMinReviews", args ->
+                        database.HighestRatedDistributorWithMinReviews((Integer) args[0], (Integer) args[1])),
+                Map.entry("DistributorHighestAvgRating", args -> database.DistributorHighestAvgRating(
+                        (BigDecimal) args[0], (Integer) args[1], (Integer) args[2]
+                )),
+                Map.entry("PercentagePurchaseWDiscounts", args ->
+                        database.PercentagePurchaseWDiscounts((Integer) args[0])),
+
+                // Queries
+                Map.entry("SELECT CustomerID, EmailAddress FROM CUSTOMER", args -> database.customers()),
+                Map.entry("SELECT * FROM DISTRIBUTOR", args -> database.distributors()),
+                Map.entry("SELECT * FROM PENDING_SHIPMENT", args -> database.pendingShipments()),
+                Map.entry("SELECT * FROM MEASUREMENT_UNIT_APPLICABILITY", args ->
+                        database.measurementUnitApplicabilities()),
+                Map.entry("SELECT * FROM CHEMICAL_TYPE", args -> database.chemicalTypes()),
+                Map.entry("SELECT * FROM CHEMICAL_QUALITY", args -> database.chemicalQualities())
+        );
+    }
+
+    // A backend over a database holding the script's example data
+    static InMemoryBackend withSampleData() {
+        return new InMemoryBackend(InMemoryDatabase.withSampleData());
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+
+    // Calls only contend for the database's lock, so more calls than cores
+    // gain nothing
+    @Override
+    public int maxConcurrentCalls() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // No connections are used, so every count is 0
+    @Override
+    public PoolStatistics poolStatistics() {
+        return new PoolStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public Object[][] forEachRow(final Signature sig,
+                                 final Consumer<Object[]> rowConsumer,
+                                 final Object[] params) {
+        final var rows = new ArrayList<Object[]>();
+        final var status = execute(sig, rows, params);
+        if (hasFailed(status))
+            return status;
+
+        // Passed to rowConsumer outside of execute so that its exceptions are
+        // rethrown unchanged
+        rows.forEach(rowConsumer);
+        return rowCount(sig.procedure() ? 1 : rows.size());
+    }
+
+    // Runs the call, adding its rows (or its single row of out-mode params) to
+    // output. Returns a failure as in DBManager.forEachRow, or an empty
+    // Object[][] on success
+    private Object[][] execute(final Signature sig,
+                               final List<Object[]> output,
+                               final Object[] params) {
+        final var routine = routines.get(routineName(sig.call()));
+        if (routine == null) {
+            ProgramDirectoryManager.logError(
+                    new UnsupportedOperationException(sig.call()),
+                    "No in-memory implementation of call/query \"" + sig.call() + '\"',
+                    true
+            );
+
+            return failWithMessage(CONNECTION_FAIL);
+        }
+
+        final Object[] args;
+        final int[] paramInd = new int[]{-1};
+        try {
+            args = convertParams(paramInd, sig, params);
+        } catch (ClassCastException | IllegalArgumentException | SQLException e) { // Incl. NumberFormatException from BigDecimal
+            return paramOrSQLFail(paramInd[0], sig.paramNames());
+        }
+
+        final List<Object[]> rows;
+        try {
+            rows = routine.run(args);
+        } catch (SQLException | ClassCastException e) {
+            // The call was rejected, as by a THROW or constraint in the
+            // script, or a table-valued param had a row of the wrong types
+            return SQLFail();
+        }
+
+        // Same check as SqlServerBackend.readRows: a function may not return
+        // more columns than its Signature expects
+        final int expectedColumns = sig.procedure() ?
+                sig.outParamIndices().length : sig.returnColumnTypes().length;
+        for (var row : rows)
+            if (row.length > expectedColumns ||
+                sig.procedure() && row.length != expectedColumns)
+                return returnFail(sig.procedure(), sig.call(), new IllegalStateException(), expectedColumns);
+
+        output.addAll(rows);
+        return new Object[0][];
+    }
+
+    // Converts each param as its ParamBinder would before binding it, giving
+    // null for out-mode params
+    private static Object[] convertParams(final int[] paramInd,
+                                          final Signature sig,
+                                          final Object[] params)
+            throws SQLException, IllegalArgumentException, ClassCastException {
+        final var args = new Object[params.length];
+        for (int i = 0; i < params.length; i++) {
+            paramInd[0] = i;
+            if (sig.procedure() && sig.paramsOut()[i])
+                continue;
+
+            final var param = params[i];
+            if (param == null) {
+                if (!sig.paramsNullable()[i]) // This param cannot be null
+                    throw new IllegalArgumentException();
+                continue;
+            }
+
+            args[i] = switch (sig.paramTypes()[i]) {
+                case INTEGER -> (Integer) param;
+                case DECIMAL -> new BigDecimal((String) param);
+                case NVARCHAR -> (String) param;
+                case CHAR -> (Character) param;
+                case BOOLEAN -> (Boolean) param;
+                case BINARY -> ((byte[]) param).clone();
+                case DATE -> (Date) param;
+                case TABLE -> ((TableValuedParameter) param).convertToTable();
+                default -> throw new IllegalArgumentException("Unknown param type " + sig.paramTypes()[i]);
+            };
+        }
+
+        paramInd[0] = -1;
+        return args;
+    }
+
+    // The rows of a table-valued param converted by convertParams, in the
+    // order they were added
+    private static List<Object[]> table(final Object convertedTable) {
+        final var rows = new ArrayList<Map.Entry<Integer, Object[]>>();
+        ((SQLServerDataTable) convertedTable).getIterator()
+                .forEachRemaining(rows::add);
+        rows.sort(Map.Entry.comparingByKey());
+
+        return rows.stream().map(Map.Entry::getValue).toList();
+    }
+
+    private static List<Object[]> procedure(final Object[] outParams) {
+        return List.<Object[]>of(outParams);
+    }
+
+    // "RegisterCustomer" for "{call RegisterCustomer(?, ...)}", "ViewReviews"
+    // for "SELECT * FROM dbo.ViewReviews(?, ...)", and the whole string for
+    // queries
+    private static String routineName(final String call) {
+        if (call.startsWith("{call "))
+            return call.substring("{call ".length(), call.indexOf('('));
+
+        final int dbo = call.indexOf("dbo.");
+        final int paren = call.indexOf('(', Math.max(dbo, 0));
+        return dbo >= 0 && paren > dbo ? call.substring(dbo + "dbo.".length(), paren) : call;
+    }
+}
@@ -0,0 +1,1359 @@
+package controller;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// The tables, functions, and procedures of barbee_joshua_Queries.sql,
+// implemented over Java collections for InMemoryBackend. Each method below
+// corresponds to the function or procedure of the same name in the script
+// (see the script for what each one does), takes the params already converted
+// to the Java types of the SQL params, and returns the same rows and columns.
+// Failures that SQL Server reports with an error (THROWs, constraint
+// violations, arithmetic overflow, invalid OFFSET/FETCH values, etc.) throw
+// SQLException here, and no changes are made by a call that fails, as with
+// the script's transactions.
+//
+// Behavior deliberately matches the script's queries even where they are
+// surprising (e.g., ViewPurchases only lists transactions that used a
+// discount, since it joins DISCOUNT without an outer join). Where the script
+// leaves an order undefined (ties in ORDER BY), rows are ordered by ID so that
+// results are repeatable. String comparisons are case-insensitive, as with
+// SQL Server's default collation, and LIKE patterns are matched as plain
+// substrings.
+//
+// Note: Calls that only read run concurrently under a shared lock; calls that
+// modify any table hold an exclusive lock for their whole duration, which
+// gives the same isolation as running each procedure in a serializable
+// transaction.
+final class InMemoryDatabase {
+
+    private static final LocalDate EMPTY_DATE = LocalDate.of(1900, 1, 1); // CAST('' AS DATE)
+    // When the script's example data was written, so that its discounts are
+    // still valid while it is inserted
+    static final LocalDate SAMPLE_DATA_DATE = LocalDate.of(2024, 6, 1);
+
+    // Lengths of the script's string and binary types
+    private static final int STRING_LENGTH = 128;
+    private static final int LONGSTRING_LENGTH = 4000;
+    private static final int EMAIL_LENGTH = 320;
+    private static final int BINARY_LENGTH = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Clock clock = Clock.systemDefaultZone(); // For GETDATE()
+
+    // TABLES
+    // Lists are indexed by IDs, which start at 0 as with IDENTITY(0, 1).
+    // Maps keyed by names use key(name) for case-insensitive matching
+    private final Set<Integer> zipCodes = new HashSet<>();
+    private final List<Customer> customers = new ArrayList<>();
+    private final Map<String, Customer> customersByEmail = new HashMap<>();
+    private final List<Discount> discounts = new ArrayList<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final Map<String, String> states = new HashMap<>();
+    private final Map<String, MeasurementUnit> measurementUnits = new HashMap<>();
+    private final Map<String, UnitApplicability> applicabilities = new TreeMap<>(); // In PK order
+    private final List<ChemicalType> chemicalTypes = new ArrayList<>();
+    private final Set<String> chemicalTypeKeys = new HashSet<>(); // For the name-unit-state UNIQUE constraint
+    private final Map<QualityKey, BigDecimal> chemicalQualities = new TreeMap<>(); // CostPerUnit, in PK order
+    private final List<Distributor> distributors = new ArrayList<>();
+    private final Map<String, Distributor> distributorsByName = new HashMap<>();
+    private final List<Shipment> shipments = new ArrayList<>();
+    private final List<Chemical> chemicals = new ArrayList<>();
+    private int nextReviewID = 0;
+
+    // ROWS
+    // Rows refer to each other directly instead of through IDs, and each row
+    // keeps the rows that refer to it, so joins are followed without lookups
+
+    private record Customer(int id, String email, byte[] passwordHash, byte[] passwordSalt,
+                            String firstName, String lastName,
+                            String addressLine1, String addressLine2, int zipCode,
+                            LocalDate accountCreationDate,
+                            List<Transaction> transactions) {}
+
+    private record Discount(int id, String name, BigDecimal percentage, boolean reusable,
+                            LocalDate initialValidDate, LocalDate expirationDate) {}
+
+    private static final class Transaction {
+        final int id;
+        final Customer customer;
+        final LocalDate purchaseDate;
+        BigDecimal taxAmount;
+        final Discount discount; // Null if none used
+        final boolean online; // Whether in ONLINE_TRANSACTION
+        LocalDate receiveDate; // For online transactions; EMPTY_DATE until delivered
+        final List<LineItem> lineItems = new ArrayList<>();
+        final List<Review> reviews = new ArrayList<>();
+
+        Transaction(final int id, final Customer customer, final LocalDate purchaseDate,
+                    final Discount discount, final boolean online) {
+            this.id = id;
+            this.customer = customer;
+            this.purchaseDate = purchaseDate;
+            this.discount = discount;
+            this.online = online;
+            receiveDate = online ? EMPTY_DATE : null;
+        }
+    }
+
+    private record MeasurementUnit(String name, String abbreviation) {}
+
+    private record UnitApplicability(MeasurementUnit unit, String state) {}
+
+    private record ChemicalType(int id, String name, MeasurementUnit unit, String state) {}
+
+    // Purity always has the scale of DECIMAL(6, 3), so equals matches SQL
+    private record QualityKey(int chemicalTypeID, BigDecimal purity) implements Comparable<QualityKey> {
+
+        @Override
+        public int compareTo(final QualityKey other) {
+            final int byType = Integer.compare(chemicalTypeID, other.chemicalTypeID);
+            return byType != 0 ? byType : purity.compareTo(other.purity);
+        }
+    }
+
+    private record Distributor(int id, String name) {}
+
+    private static final class Shipment {
+        final int id;
+        final Distributor distributor;
+        final LocalDate purchaseDate;
+        LocalDate receiveDate = EMPTY_DATE;
+
+        Shipment(final int id, final Distributor distributor, final LocalDate purchaseDate) {
+            this.id = id;
+            this.distributor = distributor;
+            this.purchaseDate = purchaseDate;
+        }
+    }
+
+    private static final class Chemical {
+        final int id;
+        final ChemicalType type;
+        final BigDecimal purity;
+        final BigDecimal initialQuantity;
+        BigDecimal remainingQuantity;
+        final Shipment shipment;
+        final BigDecimal totalPurchasePrice;
+        final List<LineItem> lineItems = new ArrayList<>();
+        final List<Review> reviews = new ArrayList<>();
+
+        Chemical(final int id, final ChemicalType type, final BigDecimal purity,
+                 final BigDecimal quantity, final Shipment shipment,
+                 final BigDecimal totalPurchasePrice) {
+            this.id = id;
+            this.type = type;
+            this.purity = purity;
+            initialQuantity = remainingQuantity = quantity;
+            this.shipment = shipment;
+            this.totalPurchasePrice = totalPurchasePrice;
+        }
+    }
+
+    private record LineItem(Transaction transaction, Chemical chemical,
+                            BigDecimal quantity, BigDecimal costPerUnitWhenPurchased) {}
+
+    private record Review(int id, Transaction transaction, Chemical chemical,
+                          int stars, String text, LocalDate reviewDate) {}
+
+    // A call run while holding the lock
+    @FunctionalInterface
+    private interface Action<T> {
+        T run() throws SQLException;
+    }
+
+    // An empty database, with the tables but no rows
+    InMemoryDatabase() {
+    }
+
+    // A database with the rows inserted by the script's example data section
+    static InMemoryDatabase withSampleData() {
+        final var db = new InMemoryDatabase();
+        db.clock = Clock.fixed(SAMPLE_DATA_DATE.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+        try {
+            db.insertSampleData();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Example data is inconsistent with the schema", e);
+        }
+
+        db.clock = Clock.systemDefaultZone();
+        return db;
+    }
+
+    // Sets the clock used for GETDATE(), e.g., to test date ranges
+    void setClock(final Clock clock) {
+        lock.writeLock().lock();
+        try {
+            this.clock = clock;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // SCENARIOS - START
+
+    // S1
+    Object[] RegisterCustomer(final String emailAddress, final byte[] passwordHash, final byte[] passwordSalt,
+                              final String firstName, final String lastName,
+                              final String addressLine1, final String addressLine2, final int zipCode)
+            throws SQLException {
+        return write(() -> {
+            final var email = truncate(emailAddress, EMAIL_LENGTH);
+            if (customersByEmail.containsKey(key(email)))
+                throw error("Violation of UNIQUE KEY constraint on EmailAddress.");
+            if (!zipCodes.contains(zipCode))
+                throw error("The INSERT statement conflicted with the FOREIGN KEY constraint on ZIPCode.");
+
+            final var customer = new Customer(
+                    customers.size(), email,
+                    binary(passwordHash), binary(passwordSalt),
+                    truncate(firstName, STRING_LENGTH), truncate(lastName, STRING_LENGTH),
+                    truncate(addressLine1, STRING_LENGTH), truncate(addressLine2, STRING_LENGTH), zipCode,
+                    today(),
+                    new ArrayList<>()
+            );
+            customers.add(customer);
+            customersByEmail.put(key(email), customer);
+
+            return new Object[0];
+        });
+    }
+
+    // S2
+    List<Object[]> SearchProductsSorted(final int resultsPosition, final int resultsCount,
+                                        final String chemicalName,
+                                        final BigDecimal minPurity, final BigDecimal maxPurity,
+                                        final String stateOfMatter, final String distributor,
+                                        final Character firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
+                                        final Boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc)
+            throws SQLException {
+        final var name = chemicalName == null ? null : key(truncate(chemicalName, STRING_LENGTH));
+        final var min = minPurity == null ? null : decimal(minPurity, 6, 3);
+        final var max = maxPurity == null ? null : decimal(maxPurity, 6, 3);
+
+        final Comparator<Object[]> order = sortOrder(firstSortBy, firstSortAsc)
+                .thenComparing(sortOrder(secondSortBy, secondSortAsc))
+                .thenComparing(sortOrder(thirdSortBy, thirdSortAsc))
+                .thenComparing(sortOrder(fourthSortBy, fourthSortAsc))
+                .thenComparing(row -> (Integer) row[0]);
+
+        return read(() -> {
+            final var rows = searchRows(name, min, max, stateOfMatter, distributor);
+            rows.sort(order);
+            return page(rows, resultsPosition, resultsCount);
+        });
+    }
+
+    // S2 with keyset pagination (SearchProductsSorted with @Keyset = 1). Each
+    // row ends with its keyset: CostPerUnit, Purity, AvgRating, PurchaserCnt,
+    // and ChemicalID. Only the values of the columns sorted by are compared,
+    // with NULL ratings first ascending and last descending as in the ORDER BY
+    List<Object[]> SearchProductsAfter(final int resultsCount,
+                                       final String chemicalName,
+                                       final BigDecimal minPurity, final BigDecimal maxPurity,
+                                       final String stateOfMatter, final String distributor,
+                                       final Character firstSortBy, final Character secondSortBy, final Character thirdSortBy, final Character fourthSortBy,
+                                       final Boolean firstSortAsc, final Boolean secondSortAsc, final Boolean thirdSortAsc, final Boolean fourthSortAsc,
+                                       final BigDecimal afterCostPerUnit, final BigDecimal afterPurity,
+                                       final BigDecimal afterAvgRating, final Integer afterPurchaserCnt,
+                                       final Integer afterChemicalID)
+            throws SQLException {
+        if (resultsCount <= 0)
+            throw error("The number of rows provided for a FETCH clause must be greater then zero.");
+
+        final var name = chemicalName == null ? null : key(truncate(chemicalName, STRING_LENGTH));
+        final var min = minPurity == null ? null : decimal(minPurity, 6, 3);
+        final var max = maxPurity == null ? null : decimal(maxPurity, 6, 3);
+
+        final Comparator<Object[]> order = sortOrder(firstSortBy, firstSortAsc)
+                .thenComparing(sortOrder(secondSortBy, secondSortAsc))
+                .thenComparing(sortOrder(thirdSortBy, thirdSortAsc))
+                .thenComparing(sortOrder(fourthSortBy, fourthSortAsc))
+                .thenComparing(row -> (Integer) row[0]);
+
+        // The row to continue after, with only its keyset columns set
+        final var after = new Object[11];
+        after[0] = afterChemicalID;
+        after[2] = afterPurity;
+        after[5] = afterCostPerUnit;
+        after[9] = afterAvgRating;
+        after[10] = afterPurchaserCnt;
+
+        return read(() -> {
+            final var rows = searchRows(name, min, max, stateOfMatter, distributor);
+            rows.sort(order);
+
+            final var output = new ArrayList<Object[]>();
+            for (var row : rows) {
+                if (output.size() == resultsCount)
+                    break;
+                if (afterChemicalID != null && order.compare(row, after) <= 0) // Not after the keyset
+                    continue;
+
+                final var keyed = Arrays.copyOf(row, 16);
+                keyed[11] = row[5];
+                keyed[12] = row[2];
+                keyed[13] = row[9];
+                keyed[14] = row[10];
+                keyed[15] = row[0];
+                output.add(keyed);
+            }
+            return output;
+        });
+    }
+
+    // The unordered rows of SearchProductsSorted. name, min, and max are already
+    // normalized. Must be called while holding the lock
+    private List<Object[]> searchRows(final String name,
+                                      final BigDecimal min, final BigDecimal max,
+                                      final String stateOfMatter, final String distributor) {
+        final var rows = new ArrayList<Object[]>();
+        for (var chemical : chemicals) {
+            if (chemical.shipment.receiveDate.equals(EMPTY_DATE) || // Only RECEIVED_SHIPMENT
+                name != null && !key(chemical.type.name).contains(name) ||
+                min != null && max != null &&
+                    (chemical.purity.compareTo(min) < 0 || chemical.purity.compareTo(max) > 0) ||
+                stateOfMatter != null && !key(chemical.type.state).equals(key(stateOfMatter)) ||
+                distributor != null && !key(chemical.shipment.distributor.name).equals(key(distributor)))
+                continue;
+
+            rows.add(new Object[]{
+                    chemical.id,
+                    chemical.type.name, chemical.purity, chemical.type.state,
+                    chemical.remainingQuantity, cost(chemical),
+                    chemical.type.unit.name, chemical.type.unit.abbreviation,
+                    chemical.shipment.distributor.name,
+                    averageRating(chemical), purchaserCount(chemical)
+            });
+        }
+
+        return rows;
+    }
+
+    // S3
+    List<Object[]> ViewReviews(final int resultsPosition, final int resultsCount,
+                               final int chemicalID) throws SQLException {
+        return read(() -> {
+            final var chemical = chemical(chemicalID);
+            if (chemical == null)
+                return page(List.of(), resultsPosition, resultsCount);
+
+            final var reviews = new ArrayList<>(chemical.reviews);
+            reviews.sort(Comparator.comparing(Review::reviewDate).thenComparing(Review::id).reversed()); // Latest first
+
+            final var rows = new ArrayList<Object[]>();
+            for (var review : reviews)
+                rows.add(new Object[]{
+                        review.transaction.customer.firstName, review.transaction.customer.lastName,
+                        review.stars, review.text, date(review.reviewDate)
+                });
+
+            return page(rows, resultsPosition, resultsCount);
+        });
+    }
+
+    // S3 with keyset pagination. Each row ends with its keyset: ReviewDate
+    // and ReviewID
+    List<Object[]> ViewReviewsAfter(final int resultsCount,
+                                    final int chemicalID,
+                                    final Date afterReviewDate, final Integer afterReviewID) throws SQLException {
+        final Comparator<Object[]> order = descending(5).thenComparing(descending(6)); // Latest first
+
+        return read(() -> {
+            final var chemical = chemical(chemicalID);
+            final var rows = new ArrayList<Object[]>();
+            if (chemical != null)
+                for (var review : chemical.reviews)
+                    rows.add(new Object[]{
+                            review.transaction.customer.firstName, review.transaction.customer.lastName,
+                            review.stars, review.text, date(review.reviewDate),
+                            date(review.reviewDate), review.id
+                    });
+
+            return top(rows, order, new Object[]{afterReviewDate, afterReviewID}, resultsCount);
+        });
+    }
+
+    // S4
+    List<Object[]> GetCustomerAndSalt(final String emailAddress) throws SQLException {
+        return read(() -> {
+            final var customer = customersByEmail.get(key(truncate(emailAddress, STRING_LENGTH)));
+
+            return customer == null ?
+                    List.of() :
+                    List.<Object[]>of(new Object[]{customer.id, customer.passwordSalt.clone()});
+        });
+    }
+
+    List<Object[]> ValidateCustomer(final int customerID, final byte[] passwordHash) throws SQLException {
+        return read(() -> {
+            final var customer = customerID >= 0 && customerID < customers.size() ?
+                    customers.get(customerID) : null;
+
+            return List.<Object[]>of(new Object[]{
+                    customer != null && Arrays.equals(customer.passwordHash, binary(passwordHash))
+            });
+        });
+    }
+
+    // S5
+    // Returns {Subtotal, TaxAmount}
+    Object[] CompleteTransaction(final int customerID, final BigDecimal taxPercent, final Integer discountID,
+                                 final List<Object[]> cart, final boolean online) throws SQLException {
+        return write(() -> {
+            final var now = today();
+            final var tax = decimal(taxPercent, 10, 2);
+
+            // Validate discount and determine discount percent
+            final var discount = discountID == null ? null : discount(discountID);
+            if (discountID != null && (
+                    discount == null ||
+                    discount.initialValidDate.isAfter(now) ||
+                    discount.expirationDate.isBefore(now) ||
+                    !discount.reusable && customerID >= 0 && customerID < customers.size() &&
+                        customers.get(customerID).transactions.stream().anyMatch(t -> t.discount == discount)
+            ))
+                throw error("This discount cannot be used.");
+            final var discountPercent = discount == null ? BigDecimal.ZERO : discount.percentage;
+
+            // Validate quantities. Cart rows for nonexistent chemicals are
+            // skipped, as they are by the script's joins
+            final var items = new LinkedHashMap<Chemical, BigDecimal>();
+            for (var row : cart) {
+                final var chemical = row[0] == null ? null : chemical((Integer) row[0]);
+                if (chemical == null)
+                    continue;
+
+                final var quantity = row[1] == null ? null : decimal((BigDecimal) row[1], 38, 4);
+                if (quantity == null || quantity.signum() <= 0)
+                    throw error("The INSERT statement conflicted with the CHECK constraint on Quantity.");
+                if (items.put(chemical, quantity) != null)
+                    throw error("Violation of PRIMARY KEY constraint on TRANSACTION_LINE_ITEM.");
+                if (quantity.compareTo(chemical.remainingQuantity) > 0)
+                    throw error("Insufficient stock for this order.");
+            }
+
+            if (customerID < 0 || customerID >= customers.size())
+                throw error("The INSERT statement conflicted with the FOREIGN KEY constraint on CustomerID.");
+            final var customer = customers.get(customerID);
+
+            // Calculate totals before changing anything, so that an overflow
+            // leaves no changes
+            BigDecimal total = null; // SUM of no rows is NULL
+            for (var item : items.entrySet()) {
+                final var lineTotal = cost(item.getKey()).multiply(item.getValue());
+                total = total == null ? lineTotal : total.add(lineTotal);
+            }
+            final var subtotal = total == null ? null :
+                    decimal(BigDecimal.ONE.subtract(discountPercent).multiply(total), 10, 2);
+            final var taxAmount = subtotal == null ? null :
+                    decimal(subtotal.multiply(tax).divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP), 10, 2);
+            if (taxAmount == null) // TRANSACTION.TaxAmount is NOT NULL
+                throw error("Cannot insert the value NULL into column TaxAmount.");
+
+            // Update quantities, and create transaction and line items
+            final var transaction = new Transaction(transactions.size(), customer, now, discount, online);
+            transaction.taxAmount = taxAmount;
+            for (var item : items.entrySet()) {
+                final var chemical = item.getKey();
+                chemical.remainingQuantity = chemical.remainingQuantity.subtract(item.getValue());
+
+                final var lineItem = new LineItem(transaction, chemical, item.getValue(), cost(chemical));
+                transaction.lineItems.add(lineItem);
+                chemical.lineItems.add(lineItem);
+            }
+            transactions.add(transaction);
+            customer.transactions.add(transaction);
+
+            return new Object[]{subtotal, taxAmount};
+        });
+    }
+
+    // S6
+    Object[] MarkTransactionDelivered(final int transactionID) throws SQLException {
+        return write(() -> {
+            final var transaction = transaction(transactionID);
+            if (transaction == null || !transaction.online)
+                throw error("No such online transaction.");
+            if (!transaction.receiveDate.equals(EMPTY_DATE))
+                throw error("Products already delivered.");
+
+            transaction.receiveDate = today();
+            return new Object[0];
+        });
+    }
+
+    // S7
+    List<Object[]> ViewPurchases(final int resultsPosition, final int resultsCount,
+                                 final int customerID, final boolean sortNewestFirst) throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var transaction : purchases(customerID, sortNewestFirst))
+                rows.add(new Object[]{
+                        date(transaction.purchaseDate), purchaseTotal(transaction),
+                        transaction.discount.name, transaction.discount.percentage,
+                        transaction.id,
+                        transaction.online ? date(transaction.receiveDate) : null
+                });
+
+            return page(rows, resultsPosition, resultsCount);
+        });
+    }
+
+    // S7 with keyset pagination. Each row ends with its keyset: PurchaseDate
+    // and TransactionID
+    List<Object[]> ViewPurchasesAfter(final int resultsCount,
+                                      final int customerID, final boolean sortNewestFirst,
+                                      final Date afterPurchaseDate, final Integer afterTransactionID) throws SQLException {
+        final Comparator<Object[]> oldestFirst = ascending(6).thenComparing(ascending(7));
+
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var transaction : purchases(customerID, sortNewestFirst))
+                rows.add(new Object[]{
+                        date(transaction.purchaseDate), purchaseTotal(transaction),
+                        transaction.discount.name, transaction.discount.percentage,
+                        transaction.id,
+                        transaction.online ? date(transaction.receiveDate) : null,
+                        date(transaction.purchaseDate), transaction.id
+                });
+
+            return top(rows, sortNewestFirst ? oldestFirst.reversed() : oldestFirst,
+                    new Object[]{afterPurchaseDate, afterTransactionID}, resultsCount);
+        });
+    }
+
+    // The customer's transactions listed by ViewPurchasesWithoutOnlineStatus,
+    // in its order. Must be called while holding the lock
+    private List<Transaction> purchases(final int customerID, final boolean sortNewestFirst) {
+        final var purchases = new ArrayList<Transaction>();
+        if (customerID >= 0 && customerID < customers.size())
+            for (var transaction : customers.get(customerID).transactions)
+                if (transaction.discount != null) // Inner join with DISCOUNT
+                    purchases.add(transaction);
+
+        final Comparator<Transaction> byDate = Comparator
+                .<Transaction, LocalDate>comparing(t -> t.purchaseDate)
+                .thenComparingInt(t -> t.id);
+        purchases.sort(sortNewestFirst ? byDate.reversed() : byDate);
+
+        return purchases;
+    }
+
+    // S8
+    List<Object[]> ViewSubpurchases(final int resultsPosition, final int resultsCount,
+                                    final int transactionID) throws SQLException {
+        return read(() -> {
+            final var transaction = transaction(transactionID);
+            final var lineItems = transaction == null ?
+                    new ArrayList<LineItem>() : new ArrayList<>(transaction.lineItems);
+            lineItems.sort(Comparator.<LineItem, String>comparing(item -> key(item.chemical.type.name))
+                    .thenComparingInt(item -> item.chemical.id));
+
+            final var rows = new ArrayList<Object[]>();
+            for (var item : lineItems)
+                rows.add(new Object[]{
+                        item.chemical.type.name, item.chemical.purity, item.quantity,
+                        item.chemical.type.unit.abbreviation, item.chemical.type.state,
+                        item.quantity.multiply(item.costPerUnitWhenPurchased),
+                        item.chemical.shipment.distributor.name
+                });
+
+            return page(rows, resultsPosition, resultsCount);
+        });
+    }
+
+    // S8 with keyset pagination. Each row ends with its keyset: ChemicalName
+    // and ChemicalID
+    List<Object[]> ViewSubpurchasesAfter(final int resultsCount,
+                                         final int transactionID,
+                                         final String afterChemicalName, final Integer afterChemicalID)
+            throws SQLException {
+        final Comparator<Object[]> order = Comparator
+                .<Object[], String>comparing(row -> key((String) row[7]))
+                .thenComparing(ascending(8));
+
+        return read(() -> {
+            final var transaction = transaction(transactionID);
+            final var rows = new ArrayList<Object[]>();
+            if (transaction != null)
+                for (var item : transaction.lineItems)
+                    rows.add(new Object[]{
+                            item.chemical.type.name, item.chemical.purity, item.quantity,
+                            item.chemical.type.unit.abbreviation, item.chemical.type.state,
+                            item.quantity.multiply(item.costPerUnitWhenPurchased),
+                            item.chemical.shipment.distributor.name,
+                            item.chemical.type.name, item.chemical.id
+                    });
+
+            return top(rows, order, new Object[]{
+                    afterChemicalName == null ? null : truncate(afterChemicalName, STRING_LENGTH), afterChemicalID
+            }, resultsCount);
+        });
+    }
+
+    // S9
+    Object[] ReviewProduct(final int customerID, final int chemicalID, final int stars, final String text)
+            throws SQLException {
+        return write(() -> {
+            final var purchases = new ArrayList<Transaction>(); // Transactions with this product
+            boolean acquired = false;
+            if (customerID >= 0 && customerID < customers.size())
+                for (var transaction : customers.get(customerID).transactions)
+                    for (var item : transaction.lineItems)
+                        if (item.chemical.id == chemicalID) {
+                            purchases.add(transaction);
+                            acquired |= !transaction.online || !transaction.receiveDate.equals(EMPTY_DATE);
+                        }
+            if (!acquired)
+                throw error("Customer has not acquired this product.");
+            if (stars < 0 || stars > 5)
+                throw error("The INSERT statement conflicted with the CHECK constraint on Stars.");
+
+            // Replace customer's existing review of this product if one exists
+            final var chemical = chemical(chemicalID);
+            for (var transaction : purchases)
+                transaction.reviews.removeIf(review -> review.chemical == chemical);
+            chemical.reviews.removeIf(review -> review.transaction.customer.id == customerID);
+
+            final var review = new Review(
+                    nextReviewID++,
+                    purchases.get(0), // First transaction where customer bought this product
+                    chemical, stars, truncate(text, LONGSTRING_LENGTH), today()
+            );
+            review.transaction.reviews.add(review);
+            chemical.reviews.add(review);
+
+            return new Object[0];
+        });
+    }
+
+    // S10
+    Object[] AddDistributor(final String distributorName) throws SQLException {
+        return write(() -> {
+            final var name = truncate(distributorName, STRING_LENGTH);
+            if (distributorsByName.containsKey(key(name)))
+                throw error("Violation of UNIQUE KEY constraint on DistributorName.");
+
+            final var distributor = new Distributor(distributors.size(), name);
+            distributors.add(distributor);
+            distributorsByName.put(key(name), distributor);
+
+            return new Object[0];
+        });
+    }
+
+    // S11
+    // items has rows of (ChemicalTypeID, Purity, Quantity, PurchasePrice)
+    Object[] RecordShipmentPurchase(final int distributorID, final List<Object[]> items) throws SQLException {
+        return write(() -> {
+            if (distributorID < 0 || distributorID >= distributors.size())
+                throw error("The INSERT statement conflicted with the FOREIGN KEY constraint on DistributorID.");
+
+            // Validate every item before inserting any
+            final var keys = new HashSet<QualityKey>();
+            final var converted = new ArrayList<Object[]>();
+            for (var item : items) {
+                if (item[0] == null || item[1] == null || item[2] == null || item[3] == null)
+                    throw error("Cannot insert the value NULL into CHEMICAL.");
+
+                final var key = new QualityKey((Integer) item[0], decimal((BigDecimal) item[1], 6, 3));
+                final var quantity = decimal((BigDecimal) item[2], 38, 4);
+                if (!chemicalQualities.containsKey(key))
+                    throw error("The INSERT statement conflicted with the FOREIGN KEY constraint on CHEMICAL_QUALITY.");
+                if (quantity.signum() <= 0)
+                    throw error("The INSERT statement conflicted with the CHECK constraint on InitialQuantity.");
+                if (!keys.add(key))
+                    throw error("Violation of UNIQUE KEY constraint on CHEMICAL.");
+
+                converted.add(new Object[]{key, quantity, decimal((BigDecimal) item[3], 10, 2)});
+            }
+
+            final var shipment = new Shipment(shipments.size(), distributors.get(distributorID), today());
+            shipments.add(shipment);
+            for (var item : converted) {
+                final var key = (QualityKey) item[0];
+                chemicals.add(new Chemical(
+                        chemicals.size(), chemicalTypes.get(key.chemicalTypeID), key.purity,
+                        (BigDecimal) item[1], shipment, (BigDecimal) item[2]
+                ));
+            }
+
+            return new Object[0];
+        });
+    }
+
+    // S12
+    Object[] MarkShipmentReceived(final int shipmentID) throws SQLException {
+        return write(() -> {
+            if (shipmentID < 0 || shipmentID >= shipments.size())
+                throw error("Shipment does not exist.");
+            final var shipment = shipments.get(shipmentID);
+            if (!shipment.receiveDate.equals(EMPTY_DATE))
+                throw error("Shipment already received.");
+
+            shipment.receiveDate = today();
+            return new Object[0];
+        });
+    }
+
+    // S13
+    Object[] AddChemicalType(final String chemicalName, final String measurementUnit, final String stateOfMatter)
+            throws SQLException {
+        return write(() -> {
+            final var applicability = applicabilities.get(key(measurementUnit) + '\0' + key(stateOfMatter));
+            if (applicability == null)
+                throw error("The INSERT statement conflicted with the FOREIGN KEY constraint on MEASUREMENT_UNIT_APPLICABILITY.");
+
+            final var name = truncate(chemicalName, STRING_LENGTH);
+            if (!chemicalTypeKeys.add(key(name) + '\0' + key(measurementUnit) + '\0' + key(stateOfMatter)))
+                throw error("Violation of UNIQUE KEY constraint on CHEMICAL_TYPE.");
+
+            chemicalTypes.add(new ChemicalType(
+                    chemicalTypes.size(), name, applicability.unit, applicability.state
+            ));
+            return new Object[0];
+        });
+    }
+
+    // S14
+    Object[] AddChemicalQuality(final int chemicalTypeID, final BigDecimal purity, final BigDecimal costPerUnit)
+            throws SQLException {
+        return write(() -> {
+            if (chemicalTypeID < 0 || chemicalTypeID >= chemicalTypes.size())
+                throw error("The INSERT statement conflicted with the FOREIGN KEY constraint on CHEMICAL_TYPE.");
+
+            final var key = new QualityKey(chemicalTypeID, decimal(purity, 6, 3));
+            if (key.purity.signum() < 0 || key.purity.compareTo(BigDecimal.valueOf(100)) > 0)
+                throw error("The INSERT statement conflicted with the CHECK constraint on Purity.");
+            final var cost = decimal(costPerUnit, 10, 2);
+            if (chemicalQualities.containsKey(key))
+                throw error("Violation of PRIMARY KEY constraint on CHEMICAL_QUALITY.");
+
+            chemicalQualities.put(key, cost);
+            return new Object[0];
+        });
+    }
+
+    // Queries used directly by FunctionsAndProcedures
+
+    // SELECT CustomerID, EmailAddress FROM CUSTOMER
+    List<Object[]> customers() throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var customer : customers)
+                rows.add(new Object[]{customer.id, customer.email});
+            return rows;
+        });
+    }
+
+    // SELECT * FROM DISTRIBUTOR
+    List<Object[]> distributors() throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var distributor : distributors)
+                rows.add(new Object[]{distributor.id, distributor.name});
+            return rows;
+        });
+    }
+
+    // SELECT * FROM PENDING_SHIPMENT
+    List<Object[]> pendingShipments() throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var shipment : shipments)
+                if (shipment.receiveDate.equals(EMPTY_DATE))
+                    rows.add(new Object[]{shipment.id, shipment.distributor.id, date(shipment.purchaseDate)});
+            return rows;
+        });
+    }
+
+    // SELECT * FROM MEASUREMENT_UNIT_APPLICABILITY
+    List<Object[]> measurementUnitApplicabilities() throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var applicability : applicabilities.values())
+                rows.add(new Object[]{applicability.unit.name, applicability.state});
+            return rows;
+        });
+    }
+
+    // SELECT * FROM CHEMICAL_TYPE
+    List<Object[]> chemicalTypes() throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            for (var type : chemicalTypes)
+                rows.add(new Object[]{type.id, type.name, type.unit.name, type.state});
+            return rows;
+        });
+    }
+
+    // SELECT * FROM CHEMICAL_QUALITY
+    List<Object[]> chemicalQualities() throws SQLException {
+        return read(() -> {
+            final var rows = new ArrayList<Object[]>();
+            chemicalQualities.forEach((key, cost) ->
+                    rows.add(new Object[]{key.chemicalTypeID, key.purity, cost})
+            );
+            return rows;
+        });
+    }
+
+    // SCENARIOS - END
+
+
+    // ANALYTICAL QUERIES - START
+    // DATEADD(MONTH, -@Months, GETDATE()) includes the current time, so a
+    // DATE column only compares >= to it if it is a later day (except at
+    // exactly midnight)
+
+    // 4.2
+    List<Object[]> HighlyRatedFirstTimeAndMinReviewsChemicals(final int months, final int reviews, final int count)
+            throws SQLException {
+        return read(() -> {
+            final var since = today().minusMonths(months);
+
+            final var rows = new ArrayList<Object[]>();
+            for (var chemical : chemicals)
+                if (!chemical.reviews.isEmpty() && // Inner join with REVIEW
+                    !chemical.shipment.receiveDate.equals(EMPTY_DATE) &&
+                    chemical.shipment.receiveDate.isAfter(since) &&
+                    chemical.reviews.size() >= reviews)
+                    rows.add(new Object[]{
+                            chemical.id, chemical.type.name, chemical.purity,
+                            average(chemical.reviews.stream().mapToInt(Review::stars).toArray())
+                    });
+
+            rows.sort(descending(3).thenComparing(row -> (Integer) row[0]));
+            return page(rows, 0, count);
+        });
+    }
+
+    // 4.3
+    List<Object[]> LargestPurityAmounts(final int chemicalTypeID, final int n) throws SQLException {
+        return read(() -> {
+            final var totals = new TreeMap<BigDecimal, BigDecimal>(); // By purity
+            for (var chemical : chemicals)
+                if (chemical.type.id == chemicalTypeID)
+                    for (var item : chemical.lineItems)
+                        totals.merge(chemical.purity, item.quantity, BigDecimal::add);
+
+            final var rows = new ArrayList<Object[]>();
+            totals.forEach((purity, total) -> rows.add(new Object[]{purity, total}));
+
+            rows.sort(descending(1).thenComparing(row -> (BigDecimal) row[0]));
+            return page(rows, 0, n);
+        });
+    }
+
+    // 4.4
+    // Only transactions with at least one review are joined, so products
+    // bought in other transactions are not counted as purchased
+    List<Object[]> HighestRatioProductsToReview(final int n) throws SQLException {
+        return read(() -> {
+            final var reviewed = new TreeMap<Integer, Set<Integer>>(); // By CustomerID
+            final var purchased = new TreeMap<Integer, Set<Integer>>();
+            for (var transaction : transactions) {
+                if (transaction.reviews.isEmpty() || transaction.lineItems.isEmpty())
+                    continue;
+
+                final int customerID = transaction.customer.id;
+                for (var review : transaction.reviews)
+                    reviewed.computeIfAbsent(customerID, id -> new HashSet<>()).add(review.chemical.id);
+                for (var item : transaction.lineItems)
+                    purchased.computeIfAbsent(customerID, id -> new HashSet<>()).add(item.chemical.id);
+            }
+
+            final var rows = new ArrayList<Object[]>();
+            reviewed.forEach((customerID, products) -> {
+                final var customer = customers.get(customerID);
+                final int purchasedCount = purchased.get(customerID).size();
+                rows.add(new Object[]{
+                        customerID, customer.firstName, customer.lastName,
+                        products.size(), purchasedCount,
+                        BigDecimal.valueOf(products.size()).divide(
+                                BigDecimal.valueOf(purchasedCount), 12, RoundingMode.HALF_UP
+                        )
+                });
+            });
+
+            rows.sort(descending(5).thenComparing(row -> (Integer) row[0]));
+            return page(rows, 0, n);
+        });
+    }
+
+    // 4.5
+    List<Object[]> HighestRecentSpenders(final int months, final int n) throws SQLException {
+        return read(() -> {
+            final var since = today().minusMonths(months);
+
+            final var rows = new ArrayList<Object[]>();
+            for (var customer : customers) {
+                BigDecimal total = null;
+                for (var transaction : customer.transactions)
+                    if (transaction.purchaseDate.isAfter(since))
+                        for (var item : transaction.lineItems) {
+                            final var cost = item.costPerUnitWhenPurchased.multiply(item.quantity);
+                            total = total == null ? cost : total.add(cost);
+                        }
+
+                if (total != null)
+                    rows.add(new Object[]{customer.id, customer.firstName, customer.lastName, total});
+            }
+
+            rows.sort(descending(3).thenComparing(row -> (Integer) row[0]));
+            return page(rows, 0, n);
+        });
+    }
+
+    // 4.6
+    List<Object[]> HighestProfitProducts(final int months, final int n) throws SQLException {
+        return read(() -> {
+            final var since = today().minusMonths(months);
+
+            final var rows = new ArrayList<Object[]>();
+            for (var chemical : chemicals) {
+                var revenue = BigDecimal.ZERO;
+                var quantity = BigDecimal.ZERO;
+                boolean any = false;
+                for (var item : chemical.lineItems) {
+                    final var transaction = item.transaction;
+                    if (transaction.discount == null || !transaction.purchaseDate.isAfter(since))
+                        continue; // Inner join with DISCOUNT
+
+                    any = true;
+                    revenue = revenue.add(item.quantity.multiply(item.costPerUnitWhenPurchased)
+                            .multiply(BigDecimal.ONE.subtract(transaction.discount.percentage)));
+                    quantity = quantity.add(item.quantity);
+                }
+
+                if (any)
+                    rows.add(new Object[]{
+                            chemical.type.name, chemical.purity, chemical.shipment.distributor.name,
+                            revenue.subtract(quantity.multiply(chemical.totalPurchasePrice).divide(
+                                    chemical.initialQuantity, 6, RoundingMode.HALF_UP
+                            )).setScale(6, RoundingMode.HALF_UP)
+                    });
+            }
+
+            rows.sort(descending(3));
+            return page(rows, 0, n);
+        });
+    }
+
+    // 4.7
+    List<Object[]> HighestRatedDistributorWithMinReviews(final int n, final int m) throws SQLException {
+        return read(() -> {
+            final var stars = new TreeMap<Integer, List<Integer>>(); // By DistributorID
+            for (var chemical : chemicals) {
+                final var distributorStars = stars.computeIfAbsent(
+                        chemical.shipment.distributor.id, id -> new ArrayList<>()
+                );
+                for (var review : chemical.reviews)
+                    distributorStars.add(review.stars);
+            }
+
+            final var rows = new ArrayList<Object[]>();
+            stars.forEach((distributorID, ratings) -> {
+                if (ratings.size() >= n)
+                    rows.add(new Object[]{
+                            distributorID, distributors.get(distributorID).name, ratings.size(),
+                            average(ratings.stream().mapToInt(Integer::intValue).toArray())
+                    });
+            });
+
+            rows.sort(descending(3).thenComparing(row -> (Integer) row[0]));
+            return page(rows, 0, m);
+        });
+    }
+
+    // 4.8
+    List<Object[]> DistributorHighestAvgRating(final BigDecimal purity, final int chemicalTypeID, final int n)
+            throws SQLException {
+        final var matchPurity = decimal(purity, 6, 3);
+
+        return read(() -> {
+            final var stars = new TreeMap<Integer, List<Integer>>(); // By DistributorID
+            for (var chemical : chemicals)
+                if (chemical.type.id == chemicalTypeID && chemical.purity.compareTo(matchPurity) == 0)
+                    for (var review : chemical.reviews)
+                        stars.computeIfAbsent(chemical.shipment.distributor.id, id -> new ArrayList<>())
+                                .add(review.stars);
+
+            final var rows = new ArrayList<Object[]>();
+            stars.forEach((distributorID, ratings) -> rows.add(new Object[]{
+                    distributorID, distributors.get(distributorID).name,
+                    average(ratings.stream().mapToInt(Integer::intValue).toArray())
+            }));
+
+            rows.sort(descending(2).thenComparing(row -> (Integer) row[0]));
+            return page(rows, 0, n);
+        });
+    }
+
+    // 4.9
+    List<Object[]> PercentagePurchaseWDiscounts(final int months) throws SQLException {
+        return read(() -> {
+            final var since = today().minusMonths(months);
+
+            int total = 0;
+            int discounted = 0;
+            for (var transaction : transactions)
+                if (transaction.purchaseDate.isAfter(since)) {
+                    total++;
+                    if (transaction.discount != null)
+                        discounted++;
+                }
+            if (total == 0)
+                throw error("Divide by zero error encountered.");
+
+            return List.<Object[]>of(new Object[]{
+                    total, discounted,
+                    BigDecimal.valueOf(discounted * 100L).divide(
+                            BigDecimal.valueOf(total), 12, RoundingMode.HALF_UP
+                    )
+            });
+        });
+    }
+
+    // ANALYTICAL QUERIES - END
+
+
+    // HELPERS
+
+    private <T> T read(final Action<T> action) throws SQLException {
+        lock.readLock().lock();
+        try {
+            return action.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(final Action<T> action) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            return action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    private Chemical chemical(final int chemicalID) {
+        return chemicalID >= 0 && chemicalID < chemicals.size() ? chemicals.get(chemicalID) : null;
+    }
+
+    private Transaction transaction(final int transactionID) {
+        return transactionID >= 0 && transactionID < transactions.size() ?
+                transactions.get(transactionID) : null;
+    }
+
+    private Discount discount(final int discountID) {
+        return discountID >= 0 && discountID < discounts.size() ? discounts.get(discountID) : null;
+    }
+
+    private BigDecimal cost(final Chemical chemical) {
+        return chemicalQualities.get(new QualityKey(chemical.type.id, chemical.purity));
+    }
+
+    // [dbo].AverageRating, which returns DECIMAL(38, 3)
+    private static BigDecimal averageRating(final Chemical chemical) {
+        final var average = average(chemical.reviews.stream().mapToInt(Review::stars).toArray());
+        return average == null ? null : average.setScale(3, RoundingMode.HALF_UP);
+    }
+
+    // [dbo].PurchaserCount
+    private static int purchaserCount(final Chemical chemical) {
+        final var purchasers = new HashSet<Integer>();
+        for (var item : chemical.lineItems)
+            purchasers.add(item.transaction.customer.id);
+        return purchasers.size();
+    }
+
+    // [dbo].PurchaseTotal. Only called for transactions with discounts; NULL
+    // (as in SQL) if the transaction has no line items
+    private static BigDecimal purchaseTotal(final Transaction transaction) {
+        if (transaction.lineItems.isEmpty())
+            return null;
+
+        var total = BigDecimal.ZERO;
+        for (var item : transaction.lineItems)
+            total = total.add(item.costPerUnitWhenPurchased.multiply(item.quantity));
+
+        return transaction.taxAmount
+                .add(BigDecimal.ONE.subtract(transaction.discount.percentage).multiply(total))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // AVG(CAST(Stars AS DECIMAL(38, 3))), which has a scale of 6. Null for no
+    // values
+    private static BigDecimal average(final int[] stars) {
+        if (stars.length == 0)
+            return null;
+
+        long sum = 0;
+        for (int star : stars)
+            sum += star;
+        return BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(stars.length), 6, RoundingMode.HALF_UP);
+    }
+
+    // ORDER BY the column at col DESC, with NULLs last as in SQL Server
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object[]> descending(final int col) {
+        return Comparator.<Object[], Comparable<Object>>comparing(
+                row -> (Comparable<Object>) row[col],
+                Comparator.nullsFirst(Comparator.<Comparable<Object>>naturalOrder())
+        ).reversed();
+    }
+
+    // ORDER BY the column at col ASC, with NULLs first as in SQL Server
+    private static Comparator<Object[]> ascending(final int col) {
+        return descending(col).reversed();
+    }
+
+    // The column of a searchRows row sorted by one of SearchProductsSorted's
+    // sort conditions, or -1 if the condition is ignored
+    private static int searchSortColumn(final Character sortBy, final Boolean ascending) {
+        return sortBy == null || ascending == null ? -1 : switch (sortBy) {
+            case 'C' -> 5; // CostPerUnit
+            case 'P' -> 2; // Purity
+            case 'R' -> 9; // AvgRating
+            case 'N' -> 10; // PurchaserCnt
+            default -> -1;
+        };
+    }
+
+    // One of SearchProductsSorted's sort conditions. A condition without both
+    // a valid column and a direction is left out of the script's ORDER BY, so
+    // it does not affect the order
+    private static Comparator<Object[]> sortOrder(final Character sortBy, final Boolean ascending) {
+        final int col = searchSortColumn(sortBy, ascending);
+        if (col < 0)
+            return (a, b) -> 0;
+
+        final var descending = descending(col);
+        return ascending ? descending.reversed() : descending;
+    }
+
+    // OFFSET @ResultsPosition ROWS FETCH NEXT @ResultsCount ROWS ONLY
+    private static List<Object[]> page(final List<Object[]> rows,
+                                       final int position, final int count)
+            throws SQLException {
+        if (position < 0)
+            throw error("The offset specified in a OFFSET clause may not be negative.");
+        if (count <= 0)
+            throw error("The number of rows provided for a FETCH clause must be greater then zero.");
+
+        return position >= rows.size() ?
+                List.of() :
+                rows.subList(position, (int) Math.min(rows.size(), (long) position + count));
+    }
+
+    // TOP (@ResultsCount) of rows in keysetOrder, starting after the row whose
+    // keyset (the last after.length columns of each row) is after. As in the
+    // script, a NULL last value (i.e., no row to continue after) gives the
+    // first page, and any other NULL value matches no rows
+    private static List<Object[]> top(final List<Object[]> rows,
+                                      final Comparator<Object[]> keysetOrder,
+                                      final Object[] after, final int count)
+            throws SQLException {
+        if (count < 0)
+            throw error("A TOP N or FETCH rows count value may not be negative.");
+
+        rows.sort(keysetOrder);
+        if (after[after.length - 1] == null) // First page
+            return rows.subList(0, Math.min(rows.size(), count));
+        if (Arrays.asList(after).contains(null))
+            return List.of();
+
+        final var output = new ArrayList<Object[]>();
+        for (var row : rows) {
+            if (output.size() == count)
+                break;
+
+            // row with its keyset replaced by after, for comparison
+            final var afterRow = row.clone();
+            System.arraycopy(after, 0, afterRow, row.length - after.length, after.length);
+            if (keysetOrder.compare(row, afterRow) > 0)
+                output.add(row);
+        }
+
+        return output;
+    }
+
+    // Rounds to the scale of DECIMAL(precision, scale), as SQL Server does
+    // when converting, and fails if the value does not fit
+    private static BigDecimal decimal(final BigDecimal value, final int precision, final int scale)
+            throws SQLException {
+        final var rounded = value.setScale(scale, RoundingMode.HALF_UP);
+        if (rounded.precision() - rounded.scale() > precision - scale)
+            throw error("Arithmetic overflow error converting numeric to data type numeric.");
+
+        return rounded;
+    }
+
+    // NVARCHAR params are silently truncated to their declared length
+    private static String truncate(final String value, final int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+
+    // BINARY(64) values are padded with zeros or truncated
+    private static byte[] binary(final byte[] value) {
+        return Arrays.copyOf(value, BINARY_LENGTH);
+    }
+
+    private static Date date(final LocalDate date) {
+        return Date.valueOf(date);
+    }
+
+    // For case-insensitive comparisons
+    private static String key(final String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static SQLException error(final String message) {
+        return new SQLException(message);
+    }
+
+
+    // EXAMPLE DATA
+    // The rows inserted by the script's example data section, using the
+    // procedures above where the script uses them
+
+    private void insertSampleData() throws SQLException {
+        zipCodes.addAll(List.of(12345, 23423, 15232, 98402, 98403));
+
+        RegisterCustomer("john@example.com",
+                hex("0123456789abcdef0123456789abcdef"), hex("fedcba9876543210fedcba9876543210"),
+                "John", "Doe", "123 Main St", "Apt 4B", 12345);
+        RegisterCustomer("jane@example.com",
+                hex("abcdef0123456789abcdef0123456789"), hex("3210fedcba9876543210fedcba987654"),
+                "Jane", "Smith", "456 Elm St", "Apt 7C", 23423);
+        RegisterCustomer("alex@example.com",
+                hex("9876543210fedcba9876543210fedcba"), hex("6543210fedcba9876543210fedcba987"),
+                "Alex", "Johnson", "789 Oak St", "Apt 2A", 15232);
+
+        AddDistributor("ABC Distributors");
+        AddDistributor("Chemical Creators");
+        AddDistributor("Chemistry Inc.");
+
+        addDiscount("Summer Sale", "0.2", true, "2023-06-01", "2023-06-30");
+        addDiscount("Holiday Special", "0.15", false, "2023-12-01", "2023-12-31");
+        addDiscount("New Year Discount", "0.10", true, "2024-01-01", "2024-01-31");
+        addDiscount("2023-24 Reusable", "0.05", true, "2023-01-01", "2025-01-01");
+        addDiscount("2023-24 Single-Use", "0.05", false, "2023-01-01", "2025-01-01");
+
+        for (var state : List.of("Solid", "Liquid", "Gas"))
+            states.put(key(state), state);
+
+        for (var unit : List.of(
+                new MeasurementUnit("Gram", "g"),
+                new MeasurementUnit("Milliliter", "mL"),
+                new MeasurementUnit("Kilogram", "kg")))
+            measurementUnits.put(key(unit.name), unit);
+
+        addApplicability("Gram", "Solid");
+        addApplicability("Milliliter", "Liquid");
+        addApplicability("Milliliter", "Gas");
+        addApplicability("Kilogram", "Solid");
+
+        AddChemicalType("Acetone", "Milliliter", "Liquid");
+        AddChemicalType("Sodium Chloride", "Gram", "Solid");
+        AddChemicalType("Ethanol", "Milliliter", "Liquid");
+
+        AddChemicalQuality(0, new BigDecimal("99.9"), new BigDecimal("0.50"));
+        AddChemicalQuality(0, new BigDecimal("90.0"), new BigDecimal("0.30"));
+        AddChemicalQuality(1, new BigDecimal("98.8"), new BigDecimal("0.15"));
+        AddChemicalQuality(2, new BigDecimal("99.5"), new BigDecimal("0.05"));
+
+        RecordShipmentPurchase(0, List.<Object[]>of(
+                shipmentItem(0, "99.9", "10000", "200.00"), // Acetone 99.9%
+                shipmentItem(1, "98.8", "5000", "100.00") // Sodium Chloride 98.8%
+        ));
+        MarkShipmentReceived(0);
+        RecordShipmentPurchase(2, List.<Object[]>of(
+                shipmentItem(0, "99.9", "5000", "110.00"), // Acetone 99.9%
+                shipmentItem(0, "90.0", "20000", "100.00") // Acetone 90.0%
+        ));
+        MarkShipmentReceived(1);
+        RecordShipmentPurchase(1, List.<Object[]>of(
+                shipmentItem(2, "99.5", "50000", "200.00") // Ethanol 99.5%
+        ));
+        MarkShipmentReceived(2);
+        RecordShipmentPurchase(2, List.<Object[]>of( // Not received
+                shipmentItem(1, "98.8", "50000", "800.00") // Sodium Chloride 98.8%
+        ));
+
+        CompleteTransaction(0, new BigDecimal("8"), 4, List.<Object[]>of( // In-person
+                cartItem(0, "1000"), cartItem(1, "500"), cartItem(3, "1000")
+        ), false);
+        CompleteTransaction(1, new BigDecimal("10"), 4, List.<Object[]>of( // Online (delivered)
+                cartItem(4, "100"), cartItem(1, "100")
+        ), true);
+        MarkTransactionDelivered(1);
+        CompleteTransaction(2, new BigDecimal("10"), 3, List.<Object[]>of( // Online (not delivered)
+                cartItem(2, "1000")
+        ), true);
+
+        ReviewProduct(0, 3, 5, "Excellent product!");
+        ReviewProduct(1, 4, 4, "Good quality, but expensive.");
+        ReviewProduct(0, 0, 3, "Average product, needs improvement.");
+    }
+
+    private void addDiscount(final String name, final String percentage, final boolean reusable,
+                             final String initialValidDate, final String expirationDate) {
+        discounts.add(new Discount(
+                discounts.size(), name, new BigDecimal(percentage).setScale(2), reusable,
+                LocalDate.parse(initialValidDate), LocalDate.parse(expirationDate)
+        ));
+    }
+
+    private void addApplicability(final String unit, final String state) {
+        applicabilities.put(
+                key(unit) + '\0' + key(state),
+                new UnitApplicability(measurementUnits.get(key(unit)), states.get(key(state)))
+        );
+    }
+
+    private static Object[] shipmentItem(final int chemicalTypeID, final String purity,
+                                         final String quantity, final String purchasePrice) {
+        return new Object[]{
+                chemicalTypeID, new BigDecimal(purity),
+                new BigDecimal(quantity), new BigDecimal(purchasePrice)
+        };
+    }
+
+    private static Object[] cartItem(final int chemicalID, final String quantity) {
+        return new Object[]{chemicalID, new BigDecimal(quantity)};
+    }
+
+    private static byte[] hex(final String hex) {
+        final var bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        return bytes;
+    }
+}
@@ -0,0 +1,14 @@
+package controller;
+
+// One page of rows from a keyset-paginated call (e.g.,
+// FunctionsAndProcedures.searchProductsAfter). rows follows the usual
+// convention, so DBManager.hasFailed(rows) must be checked before reading it.
+// nextToken is passed back to the same call, with the same other arguments,
+// to get the rows following this page; it is null if this is the last page or
+// the call failed.
+public record KeysetPage(Object[][] rows, String nextToken) {
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,51 @@
+package controller;
+
+import java.sql.CallableStatement;
+import java.sql.SQLException;
+import static java.sql.Types.*;
+
+// Reads one out-mode param of an executed CallableStatement as a Java value, or
+// null for SQL NULL. The procedure equivalent of ColumnReader; a Signature for
+// a procedure compiles one OutParamReader per out-mode param when it is built.
+@FunctionalInterface
+public interface OutParamReader {
+
+    Object read(CallableStatement stmt) throws SQLException;
+
+    // outParamIndices are 1-based, as in Signature.
+    // Throws IllegalArgumentException for an unknown param type
+    static OutParamReader[] compile(final int[] paramTypes,
+                                    final int[] outParamIndices)
+            throws IllegalArgumentException {
+        final var readers = new OutParamReader[outParamIndices.length];
+
+        for (int i = 0; i < outParamIndices.length; i++) {
+            final int ind = outParamIndices[i];
+
+            // Same conversions and null handling as in ColumnReader
+            readers[i] = switch (paramTypes[ind - 1]) {
+                case INTEGER -> stmt -> {
+                    final int value = stmt.getInt(ind);
+                    return stmt.wasNull() ? null : value;
+                };
+                case DECIMAL -> stmt -> stmt.getBigDecimal(ind);
+                case NVARCHAR -> stmt -> stmt.getNString(ind);
+                case CHAR -> stmt -> {
+                    final var str = stmt.getString(ind);
+                    return str == null ? null : str.charAt(0);
+                };
+                case BOOLEAN -> stmt -> {
+                    final boolean value = stmt.getBoolean(ind);
+                    return stmt.wasNull() ? null : value;
+                };
+                case BINARY -> stmt -> stmt.getBytes(ind);
+                case DATE -> stmt -> stmt.getDate(ind);
+                default -> throw new IllegalArgumentException(
+                        "Unknown out-mode param type " + paramTypes[ind - 1]
+                );
+            };
+        }
+
+        return readers;
+    }
+}
@@ -0,0 +1,155 @@
+package controller;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static controller.DBManager.hasFailed;
+
+// Loads the pages of a paged call (SearchProductsSorted, ViewReviews,
+// ViewPurchases, or ViewSubpurchases, which take a start position and a row
+// count) for a screen that shows one page at a time, so that moving to the
+// next page does not wait on the database.
+//
+// While a page is displayed, the page after it is loaded in the background on
+// the threads of FunctionsAndProcedures.async(). The pages within a small
+// window of the current page are kept, so stepping back and forth between
+// nearby pages is also answered without a call. Each request names its query
+// (the call's arguments other than the start position and row count); when
+// the query or the row count changes, every kept page is discarded and any
+// loads still queued for the previous query are cancelled.
+//
+// Pages are kept until they leave the window, their time to live passes, or
+// invalidate is called, which screens should do after changing the data they
+// show (e.g., after adding a review). Failed pages are never kept, so asking
+// for the page again retries the call.
+//
+// Note: The futures returned by page are copies of the kept futures, so a
+// caller cancelling one (e.g., when a newer request supersedes it) does not
+// cancel the kept page. Loads that have already started when they are
+// cancelled run to completion, but their results are discarded.
+public final class PagePrefetcher<T> {
+
+    static final int DEFAULT_WINDOW = 2; // Pages kept on each side of the current page
+    static final long DEFAULT_TIME_TO_LIVE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    // Loads one page for the current query
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        T load(int startPos, int rowCnt);
+    }
+
+    private record Page<T>(CompletableFuture<T> future, long loadedNanos) {}
+
+    private final ToIntFunction<T> rowCount; // Of a loaded page, or -1 if it failed
+    private final int window;
+    private final long timeToLiveNanos;
+
+    private final Map<Integer, Page<T>> pages = new HashMap<>(); // By start position
+    private Object query = null;
+    private int rowCnt = -1;
+    private long generation = 0; // Incremented whenever every page is discarded
+
+    PagePrefetcher(final ToIntFunction<T> rowCount,
+                   final int window, final long timeToLiveNanos) {
+        if (window < 0 || timeToLiveNanos < 0)
+            throw new IllegalArgumentException("window and timeToLiveNanos must be nonnegative");
+
+        this.rowCount = rowCount;
+        this.window = window;
+        this.timeToLiveNanos = timeToLiveNanos;
+    }
+
+    // For the calls returning an Object[][], such as viewReviews
+    public static PagePrefetcher<Object[][]> forRows() {
+        return new PagePrefetcher<>(
+                rows -> hasFailed(rows) ? -1 : rows.length,
+                DEFAULT_WINDOW, DEFAULT_TIME_TO_LIVE_NANOS
+        );
+    }
+
+    // The page of query starting at startPos, loaded with loader if it is not
+    // kept. query must identify every argument that loader passes to the call
+    // other than startPos and rowCnt (e.g., a List of those arguments), since
+    // pages are reused whenever query is equal. Once the page is loaded, the
+    // next page is loaded in the background if this page was full
+    public synchronized CompletableFuture<T> page(final Object query,
+                                                  final int startPos, final int rowCnt,
+                                                  final PageLoader<T> loader) {
+        if (!Objects.equals(query, this.query) || rowCnt != this.rowCnt) {
+            discardAll();
+            this.query = query;
+            this.rowCnt = rowCnt;
+        }
+
+        final var future = load(startPos, loader);
+        discardOutsideWindow(startPos);
+
+        final long loadGeneration = generation;
+        future.thenAccept(page -> {
+            if (rowCount.applyAsInt(page) == rowCnt) // Otherwise there are no further rows
+                prefetch(loadGeneration, startPos + rowCnt, loader);
+        });
+
+        return future.copy();
+    }
+
+    // Discards every kept page, so that each page is loaded again when next
+    // requested
+    public synchronized void invalidate() {
+        discardAll();
+    }
+
+    private synchronized void prefetch(final long loadGeneration, final int startPos,
+                                       final PageLoader<T> loader) {
+        if (loadGeneration == generation) // Otherwise no longer for the current query
+            load(startPos, loader);
+    }
+
+    // The kept page starting at startPos if it has not expired, and otherwise
+    // a new load of it
+    private CompletableFuture<T> load(final int startPos, final PageLoader<T> loader) {
+        final var kept = pages.get(startPos);
+        if (kept != null && System.nanoTime() - kept.loadedNanos < timeToLiveNanos)
+            return kept.future;
+
+        final int loadRowCnt = rowCnt;
+        final var future = FunctionsAndProcedures.async().submit(
+                () -> loader.load(startPos, loadRowCnt)
+        );
+        final var page = new Page<>(future, System.nanoTime());
+        pages.put(startPos, page);
+
+        // Failed pages are not kept, so that they are retried
+        future.whenComplete((result, exception) -> {
+            if (exception != null || rowCount.applyAsInt(result) < 0)
+                synchronized (this) {
+                    pages.remove(startPos, page);
+                }
+        });
+
+        return future;
+    }
+
+    private void discardOutsideWindow(final int startPos) {
+        final long span = (long) window * rowCnt;
+        pages.entrySet().removeIf(entry -> {
+            if (Math.abs((long) entry.getKey() - startPos) <= span)
+                return false;
+
+            entry.getValue().future.cancel(false); // Skipped if not started
+            return true;
+        });
+    }
+
+    private void discardAll() {
+        generation++;
+        for (var page : pages.values())
+            page.future.cancel(false);
+
+        pages.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package controller;
+
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import static java.sql.Types.*;
+
+import static controller.DBManager.TABLE;
+
+// Sets one param of a PreparedStatement from a Java value. A Signature compiles
+// one ParamBinder per param when it is built, with the param's type,
+// nullability, mode, and 1-based index already resolved, so binding the params
+// for a call is a straight sequence of bind calls with no switch on the type.
+//
+// bind throws IllegalArgumentException if the param is null but not nullable
+// or has an invalid value (including NumberFormatException from BigDecimal),
+// ClassCastException if the param has the wrong type, and SQLException if the
+// driver rejects the value. These are the same exceptions that
+// SqlServerBackend.execute reports as invalid params.
+@FunctionalInterface
+public interface ParamBinder {
+
+    void bind(PreparedStatement stmt, Object param) throws SQLException;
+
+    // Throws IllegalArgumentException for an unknown param type
+    static ParamBinder[] compile(final int[] paramTypes,
+                                 final boolean[] paramsNullable,
+                                 final boolean[] paramsOut)
+            throws IllegalArgumentException {
+        final var binders = new ParamBinder[paramTypes.length];
+
+        for (int i = 0; i < paramTypes.length; i++)
+            binders[i] = paramsOut != null && paramsOut[i] ?
+                    forOutParam(paramTypes[i], i + 1) :
+                    forInParam(paramTypes[i], paramsNullable[i], i + 1);
+
+        return binders;
+    }
+
+    // Out-mode params are registered instead of set, and the value given for
+    // them is ignored. Out-mode params are only used by procedures, which are
+    // always prepared as CallableStatements
+    private static ParamBinder forOutParam(final int type, final int ind) {
+        if (type == TABLE) // Cannot accept TABLE as output
+            throw new IllegalArgumentException("TABLE params cannot be out-mode");
+
+        return (stmt, param) -> ((CallableStatement) stmt).registerOutParameter(ind, type);
+    }
+
+    private static ParamBinder forInParam(final int type, final boolean nullable,
+                                          final int ind) {
+        // Allow user to set certain params to null; client code must
+        // specify which params are nullable to prevent user error from
+        // propagating.
+        //
+        // Separate lambdas are created for nullable and nonnullable params so
+        // that each binder is a single, small method the JIT can inline at the
+        // call site. setObject(ind, obj, type) is not used because it throws
+        // AssertionError if given an invalid type
+        return nullable ?
+                switch (type) {
+                    case INTEGER -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setInt(ind, (int) param);
+                    };
+                    case DECIMAL -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setBigDecimal(ind, new BigDecimal((String) param));
+                    };
+                    case NVARCHAR -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setNString(ind, (String) param);
+                    };
+                    case CHAR -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setString(ind, String.valueOf((char) param));
+                    };
+                    case BOOLEAN -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setBoolean(ind, (boolean) param);
+                    };
+                    case BINARY -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setBytes(ind, (byte[]) param);
+                    };
+                    case DATE -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setDate(ind, (Date) param);
+                    };
+                    case TABLE -> (stmt, param) -> {
+                        if (param == null) stmt.setNull(ind, type);
+                        else stmt.setObject(ind, ((TableValuedParameter) param).convertToTable());
+                    };
+                    default -> throw unknownType(type);
+                } :
+                switch (type) {
+                    case INTEGER -> (stmt, param) -> stmt.setInt(ind, (int) nonnull(param));
+                    case DECIMAL -> (stmt, param) -> stmt.setBigDecimal(ind, new BigDecimal((String) nonnull(param)));
+                    case NVARCHAR -> (stmt, param) -> stmt.setNString(ind, (String) nonnull(param));
+                    case CHAR -> (stmt, param) -> stmt.setString(ind, String.valueOf((char) nonnull(param)));
+                    case BOOLEAN -> (stmt, param) -> stmt.setBoolean(ind, (boolean) nonnull(param));
+                    case BINARY -> (stmt, param) -> stmt.setBytes(ind, (byte[]) nonnull(param));
+                    case DATE -> (stmt, param) -> stmt.setDate(ind, (Date) nonnull(param));
+                    case TABLE -> (stmt, param) -> stmt.setObject(ind, ((TableValuedParameter) nonnull(param)).convertToTable());
+                    default -> throw unknownType(type);
+                };
+    }
+
+    private static Object nonnull(final Object param) {
+        if (param == null) // This param cannot be null
+            throw new IllegalArgumentException();
+
+        return param;
+    }
+
+    private static IllegalArgumentException unknownType(final int type) {
+        return new IllegalArgumentException("Unknown param type " + type);
+    }
+}
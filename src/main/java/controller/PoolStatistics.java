@@ -0,0 +1,34 @@
+package controller;
+
+// A snapshot of the state and lifetime counters of the connection pool used by
+// DBManager. Counts of active and idle connections are taken at the moment the
+// snapshot is created; all other values are totals since the pool was started.
+// Wait times are only accumulated for borrows that could not be satisfied
+// immediately (that is, borrows that had to wait for a connection to be
+// returned to the pool). Statement cache hits and misses are summed over the
+// statement caches of all connections the pool has opened.
+public record PoolStatistics(int active, // Connections currently borrowed
+                             int idle, // Open connections available for borrowing
+                             long borrows, // Successful borrows
+                             long waits, // Borrows that had to wait for a connection
+                             long totalWaitNanos, // Time spent waiting by all borrows
+                             long maxWaitNanos, // Longest time spent waiting by one borrow
+                             long timeouts, // Borrows that gave up after waiting
+                             long created, // Physical connections opened
+                             long destroyed, // Physical connections closed (evicted or invalid)
+                             long statementCacheHits, // Statements reused from a connection's cache
+                             long statementCacheMisses) { // Statements prepared on a connection
+
+    public int total() {
+        return active + idle;
+    }
+
+    public double averageWaitMillis() {
+        return waits == 0 ? 0 : totalWaitNanos / 1_000_000.0 / waits;
+    }
+
+    public double statementCacheHitRate() {
+        final long lookups = statementCacheHits + statementCacheMisses;
+        return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+    }
+}
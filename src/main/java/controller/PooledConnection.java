@@ -0,0 +1,55 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// A connection borrowed from a ConnectionPool. Closing this object returns the
+// connection to its pool instead of closing the underlying connection, so
+// client code must not close the Connection returned by connection() directly
+// (doing so will cause the pool to discard it when it is returned).
+//
+// Statements should be prepared with prepare, which reuses statements
+// previously prepared on this connection. See StatementCache.
+final class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statements;
+
+    // Set when the connection is returned to the pool, for idle eviction and
+    // for skipping validation of recently used connections
+    private long lastReturnedNanos = System.nanoTime();
+
+    PooledConnection(final ConnectionPool pool, final Connection connection,
+                     final StatementCache statements) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statements = statements;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    // The returned statement must not be closed by client code
+    PreparedStatement prepare(final boolean isProcedure, final String call,
+                              final int resultSetType)
+            throws SQLException {
+        return statements.get(isProcedure, call, resultSetType);
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    // Only accessed while holding the pool's lock
+    void markReturned() {
+        lastReturnedNanos = System.nanoTime();
+    }
+
+    long idleMillis() {
+        return (System.nanoTime() - lastReturnedNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,158 @@
+package controller;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static controller.DBManager.hasFailed;
+
+// Caches the small reference tables (distributors, pending shipments,
+// measurement unit applicabilities, chemical types, and chemical qualities)
+// that the employee screens read in full every time they are refreshed.
+//
+// Each table is kept until its time to live passes or it is invalidated.
+// FunctionsAndProcedures invalidates a table as soon as a procedure that
+// changes it succeeds, so changes made through this application are seen
+// immediately; the time to live only bounds how long changes made by other
+// clients of the database can go unseen. Failed reads are never cached.
+//
+// Note: Only one thread loads a given table at a time, and threads that need
+// the same table wait for that load rather than running the query again.
+// Invalidation never waits: each table has a generation that is incremented
+// by invalidate, and a cached result is only used if it was loaded in the
+// current generation, so a load that races with an invalidation is discarded
+// instead of hiding the change.
+final class ReferenceDataCache {
+
+    enum Table {
+        DISTRIBUTORS(5, TimeUnit.MINUTES),
+        // Changed by every shipment recorded or received, including by other
+        // employees, so kept briefly
+        PENDING_SHIPMENTS(30, TimeUnit.SECONDS),
+        // Not changed by any procedure
+        MEASUREMENT_UNIT_APPLICABILITIES(30, TimeUnit.MINUTES),
+        CHEMICAL_TYPES(5, TimeUnit.MINUTES),
+        CHEMICAL_QUALITIES(5, TimeUnit.MINUTES);
+
+        private final long timeToLiveNanos;
+
+        Table(final long timeToLive, final TimeUnit unit) {
+            timeToLiveNanos = unit.toNanos(timeToLive);
+        }
+    }
+
+    private record Entry(Object[][] rows, long loadedNanos, long generation) {}
+
+    private static final class Slot {
+        private final Object loadLock = new Object();
+        private final AtomicLong generation = new AtomicLong();
+        private volatile Entry entry; // Null until first loaded
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder expirations = new LongAdder();
+        private final LongAdder invalidations = new LongAdder();
+    }
+
+    private final Map<Table, Slot> slots = new EnumMap<>(Table.class);
+
+    ReferenceDataCache() {
+        for (var table : Table.values())
+            slots.put(table, new Slot());
+    }
+
+    // The cached rows of table if they are still valid, and otherwise the
+    // result of loader, which is cached if it succeeds. Returns the same
+    // values as loader. Each call returns its own copy of the rows, so callers
+    // may modify them
+    Object[][] get(final Table table, final Supplier<Object[][]> loader) {
+        final var slot = slots.get(table);
+
+        var rows = validRows(table, slot);
+        if (rows != null)
+            return rows;
+
+        synchronized (slot.loadLock) {
+            // Another thread may have loaded the table while this one waited
+            rows = validRows(table, slot);
+            if (rows != null)
+                return rows;
+
+            // Taken before loading so that the time to live is never
+            // overestimated
+            final long generation = slot.generation.get();
+            slot.misses.increment();
+            if (slot.entry != null && slot.entry.generation == generation) // Not invalidated, so expired
+                slot.expirations.increment();
+
+            final long loadedNanos = System.nanoTime();
+            final var output = loader.get();
+            if (!hasFailed(output))
+                slot.entry = new Entry(copy(output), loadedNanos, generation);
+
+            return output;
+        }
+    }
+
+    // Discards the cached rows of table, so that the next get reads it again
+    void invalidate(final Table table) {
+        final var slot = slots.get(table);
+        slot.generation.incrementAndGet();
+        slot.invalidations.increment();
+    }
+
+    CacheStatistics statistics(final Table table) {
+        final var slot = slots.get(table);
+        final var entry = slot.entry;
+        final boolean cached = entry != null && entry.generation == slot.generation.get();
+
+        return new CacheStatistics(
+                slot.hits.sum(), slot.misses.sum(),
+                slot.expirations.sum(), slot.invalidations.sum(),
+                cached ? 1 : 0, cached ? entry.rows.length : 0
+        );
+    }
+
+    // Summed over every table
+    CacheStatistics statistics() {
+        long hits = 0, misses = 0, evictions = 0, invalidations = 0, size = 0;
+        int entries = 0;
+        for (var table : Table.values()) {
+            final var tableStatistics = statistics(table);
+            hits += tableStatistics.hits();
+            misses += tableStatistics.misses();
+            evictions += tableStatistics.evictions();
+            invalidations += tableStatistics.invalidations();
+            entries += tableStatistics.entries();
+            size += tableStatistics.size();
+        }
+
+        return new CacheStatistics(hits, misses, evictions, invalidations, entries, size);
+    }
+
+    // A copy of the cached rows if they are from the current generation and
+    // have not expired, counting a hit; otherwise null
+    private static Object[][] validRows(final Table table, final Slot slot) {
+        final var entry = slot.entry;
+        if (entry == null ||
+            entry.generation != slot.generation.get() ||
+            System.nanoTime() - entry.loadedNanos >= table.timeToLiveNanos)
+            return null;
+
+        slot.hits.increment();
+        return copy(entry.rows);
+    }
+
+    // Cells (Integer, String, BigDecimal, and Date values) are never modified
+    // by the application, so copying each row is enough to keep callers from
+    // changing the cache
+    private static Object[][] copy(final Object[][] rows) {
+        final var output = new Object[rows.length][];
+        for (int i = 0; i < rows.length; i++)
+            output[i] = rows[i].clone();
+
+        return output;
+    }
+}
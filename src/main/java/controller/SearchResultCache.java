@@ -0,0 +1,219 @@
+package controller;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Caches pages of SearchProductsSorted results, keyed by the normalized
+// arguments of the call, so that the handful of searches most customers run
+// (and the pages they step back and forth through) are not recomputed by the
+// database.
+//
+// Arguments are normalized so that calls the script treats identically share
+// an entry: names are compared case-insensitively (as by the database's
+// collation), purity bounds are compared as numbers and dropped unless both
+// are given, and sort conditions the script ignores (no column or no
+// direction) are dropped.
+//
+// The cache is bounded by the estimated memory of its pages, evicting the
+// least recently used pages first. Every page is dropped when stock, ratings,
+// or purchaser counts may have changed (see invalidate), and pages also expire
+// after a short time to live, which bounds how long changes made by other
+// clients of the database can go unseen.
+//
+// Note: Each hit returns its own copy of the page (as ReferenceDataCache
+// does), so callers cannot change the cached one. Loads run outside the lock, so a slow search never blocks hits on
+// other pages; a load that finishes after an invalidate is returned to its
+// caller but not cached.
+final class SearchResultCache {
+
+    static final long DEFAULT_MAX_BYTES = 8L << 20; // 8 MiB
+    static final long DEFAULT_TIME_TO_LIVE_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final long maxBytes;
+    private final long timeToLiveNanos;
+
+    // In access order, so the first entry is the least recently used
+    private final LinkedHashMap<Key, Entry> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long generation = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    // The normalized SearchProductsSorted arguments. Purity bounds are
+    // BigDecimals without trailing zeros, so equal values are equal keys
+    private record Key(int resultsPosition, int resultsCount,
+                       String chemicalName,
+                       BigDecimal minPurity, BigDecimal maxPurity,
+                       String stateOfMatter, String distributor,
+                       Character firstSortBy, Character secondSortBy, Character thirdSortBy, Character fourthSortBy,
+                       Boolean firstSortAsc, Boolean secondSortAsc, Boolean thirdSortAsc, Boolean fourthSortAsc) {}
+
+    private record Entry(Object[][] page, long bytes, long loadedNanos) {}
+
+    SearchResultCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE_NANOS);
+    }
+
+    SearchResultCache(final long maxBytes, final long timeToLiveNanos) {
+        if (maxBytes < 0 || timeToLiveNanos < 0)
+            throw new IllegalArgumentException("maxBytes and timeToLiveNanos must be nonnegative");
+
+        this.maxBytes = maxBytes;
+        this.timeToLiveNanos = timeToLiveNanos;
+    }
+
+    // The cached page for params (the params of a SearchProductsSorted call,
+    // as passed to DBManager) if there is one, and otherwise the result of
+    // loader, which is cached if it succeeds. Params that cannot be
+    // normalized (e.g., an invalid purity) bypass the cache, so that the
+    // database reports the error
+    Object[][] get(final Object[] params, final Supplier<Object[][]> loader) {
+        final var key = key(params);
+        if (key == null)
+            return loader.get();
+
+        final long loadGeneration;
+        synchronized (this) {
+            final var entry = pages.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedNanos < timeToLiveNanos) {
+                    hits++;
+                    return copy(entry.page);
+                }
+
+                remove(key, entry);
+                evictions++;
+            }
+
+            misses++;
+            loadGeneration = generation;
+        }
+
+        final long loadedNanos = System.nanoTime();
+        final var page = loader.get();
+        if (DBManager.hasFailed(page))
+            return page;
+
+        final long pageBytes = estimatedBytes(page);
+        synchronized (this) {
+            // Not cached if the data may have changed during the load, or if
+            // the page alone would exceed the limit
+            if (loadGeneration != generation || pageBytes > maxBytes)
+                return page;
+
+            final var replaced = pages.put(key, new Entry(copy(page), pageBytes, loadedNanos));
+            if (replaced != null) // Loaded by another thread at the same time
+                bytes -= replaced.bytes;
+            bytes += pageBytes;
+
+            // Evict least recently used pages until within the limit
+            final var iterator = pages.entrySet().iterator();
+            while (bytes > maxBytes) {
+                final var eldest = iterator.next();
+                bytes -= eldest.getValue().bytes;
+                iterator.remove();
+                evictions++;
+            }
+        }
+
+        return page;
+    }
+
+    // Drops every cached page. Called when a change may affect any page:
+    // completed transactions change remaining quantities and purchaser
+    // counts, received shipments add products, and reviews change ratings,
+    // all of which can also change the order of results
+    synchronized void invalidate() {
+        generation++;
+        if (!pages.isEmpty())
+            invalidations++;
+
+        pages.clear();
+        bytes = 0;
+    }
+
+    synchronized CacheStatistics statistics() {
+        return new CacheStatistics(hits, misses, evictions, invalidations, pages.size(), bytes);
+    }
+
+    private void remove(final Key key, final Entry entry) {
+        pages.remove(key);
+        bytes -= entry.bytes;
+    }
+
+    // Null if params cannot be normalized
+    private static Key key(final Object[] params) {
+        try {
+            final var minPurity = purity(params[3]);
+            final var maxPurity = purity(params[4]);
+            final boolean purityRange = minPurity != null && maxPurity != null; // Otherwise ignored by the script
+
+            final var sortBy = new Character[4];
+            final var sortAsc = new Boolean[4];
+            for (int i = 0; i < 4; i++) {
+                final var by = (Character) params[7 + i];
+                final var asc = (Boolean) params[11 + i];
+                // Sort codes are compared case-insensitively by the script, and
+                // conditions without a known code and a direction are ignored
+                if (by != null && asc != null && "CPRN".indexOf(Character.toUpperCase(by)) >= 0) {
+                    sortBy[i] = Character.toUpperCase(by);
+                    sortAsc[i] = asc;
+                }
+            }
+
+            return new Key(
+                    (int) params[0], (int) params[1],
+                    lowerCase(params[2]),
+                    purityRange ? minPurity : null, purityRange ? maxPurity : null,
+                    lowerCase(params[5]), lowerCase(params[6]),
+                    sortBy[0], sortBy[1], sortBy[2], sortBy[3],
+                    sortAsc[0], sortAsc[1], sortAsc[2], sortAsc[3]
+            );
+        } catch (ClassCastException | NullPointerException | NumberFormatException e) {
+            return null; // Left to the database to reject
+        }
+    }
+
+    // Cells (Integer, String, BigDecimal, Date, and Boolean values) are never
+    // modified by the application, so copying each row is enough
+    private static Object[][] copy(final Object[][] rows) {
+        final var output = new Object[rows.length][];
+        for (int i = 0; i < rows.length; i++)
+            output[i] = rows[i].clone();
+
+        return output;
+    }
+
+    // Approximate heap size of rows: the arrays and the values in them
+    private static long estimatedBytes(final Object[][] rows) {
+        long total = 16 + 8L * rows.length;
+        for (var row : rows) {
+            total += 16 + 8L * row.length;
+            for (var value : row)
+                if (value instanceof String string)
+                    total += 40 + string.length() * 2L;
+                else if (value instanceof byte[] bytes)
+                    total += 16 + bytes.length;
+                else if (value instanceof BigDecimal)
+                    total += 40;
+                else if (value != null)
+                    total += 24; // Integer, Date, etc.
+        }
+
+        return total;
+    }
+
+    private static BigDecimal purity(final Object param) {
+        return param == null ? null : new BigDecimal((String) param).stripTrailingZeros();
+    }
+
+    private static String lowerCase(final Object param) {
+        return param == null ? null : ((String) param).toLowerCase(Locale.ROOT);
+    }
+}
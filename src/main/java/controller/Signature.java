@@ -15,6 +15,13 @@ import util.Util;
 // Note on null fields: For functions, paramsOut and outParamIndices are both
 // null; for procedures, returnColumnTypes is null. procedure() must be checked
 // before attempting to access any of these arrays.
+//
+// Note on compiled fields: paramBinders, columnReaders, and outParamReaders
+// are derived from the other fields when a Signature is built with the
+// factory methods (or the constructor without them), so that the type of each
+// param and return value is only examined once (in
+// FunctionsAndProcedures.initialize()) instead of on every call. columnReaders
+// is null for procedures, and outParamReaders is null for functions.
 public record Signature(boolean procedure, // Whether this is a procedure (not a function)
                         String call, // The proc/func name and parameters, including placeholders
                         int[] paramTypes, // The types the placeholders, in order
@@ -22,9 +29,68 @@ public record Signature(boolean procedure, // Whether this is a procedure (not a
                         String[] paramNames, // Name to return if param's value is invalid
                         boolean[] paramsOut, // Whether each placeholder is an out-mode param
                         int[] returnColumnTypes, // The column types of a function return
-                        int[] outParamIndices) { // Indices of only the out-mode placeholders
+                        int[] outParamIndices, // Indices of only the out-mode placeholders
+                        ParamBinder[] paramBinders, // Sets or registers each placeholder
+                        ColumnReader[] columnReaders, // Reads each column of a function return
+                        OutParamReader[] outParamReaders) { // Reads each out-mode placeholder
 
     public Signature {
+        validate(procedure, call, paramTypes, paramsNullable, paramNames, paramsOut,
+                 returnColumnTypes, outParamIndices);
+
+        if (paramBinders == null || paramBinders.length != paramTypes.length)
+            throw new IllegalArgumentException(
+                    "paramBinders must have one binder for each param"
+            );
+        if (procedure ?
+            columnReaders != null || outParamReaders == null ||
+                outParamReaders.length != outParamIndices.length :
+            outParamReaders != null || columnReaders == null ||
+                columnReaders.length != returnColumnTypes.length)
+            throw new IllegalArgumentException(
+                    "Procedures must have one outParamReader for each " +
+                    "out-mode param and no columnReaders, and functions must " +
+                    "have one columnReader for each return column and no " +
+                    "outParamReaders"
+            );
+    }
+
+    // Compiles the binders and readers from the other fields
+    public Signature(final boolean procedure,
+                     final String call,
+                     final int[] paramTypes,
+                     final boolean[] paramsNullable,
+                     final String[] paramNames,
+                     final boolean[] paramsOut,
+                     final int[] returnColumnTypes,
+                     final int[] outParamIndices) {
+        this(
+                procedure, call,
+                paramTypes, paramsNullable, paramNames, paramsOut,
+                returnColumnTypes, outParamIndices,
+                // Validated before compiling so that invalid fields are
+                // reported with the messages in validate
+                validate(
+                        procedure, call,
+                        paramTypes, paramsNullable, paramNames, paramsOut,
+                        returnColumnTypes, outParamIndices
+                ) ? ParamBinder.compile(paramTypes, paramsNullable, paramsOut) : null,
+                procedure ? null : ColumnReader.compile(returnColumnTypes),
+                procedure ? OutParamReader.compile(paramTypes, outParamIndices) : null
+        );
+    }
+
+    // Always returns true (for use in constructor delegation) or throws
+    // IllegalArgumentException
+    private static boolean validate(final boolean procedure,
+                                    final String call,
+                                    final int[] paramTypes,
+                                    final boolean[] paramsNullable,
+                                    final String[] paramNames,
+                                    final boolean[] paramsOut,
+                                    final int[] returnColumnTypes,
+                                    final int[] outParamIndices)
+            throws IllegalArgumentException {
         if (call == null || call.isBlank())
             throw new IllegalArgumentException("call must not be null or blank");
         if (paramTypes == null)
@@ -54,6 +120,8 @@ public record Signature(boolean procedure, // Whether this is a procedure (not a
                         "and paramsOut and outParamIndices must be null"
                 );
         }
+
+        return true;
     }
 
     static Signature buildFunc(final String func,
@@ -87,6 +155,40 @@ public record Signature(boolean procedure, // Whether this is a procedure (not a
         );
     }
 
+    // A function call with no params that is run exactly as given (e.g., a
+    // SELECT from a table or view)
+    static Signature buildQuery(final String query,
+                                final int[] returnColumnTypes)
+            throws IllegalArgumentException {
+        return new Signature(
+                false,
+                query,
+                new int[0], new boolean[0], new String[0],
+                null,
+                returnColumnTypes, null
+        );
+    }
+
+    // A procedure that returns its rows as a table (e.g., from sp_executesql)
+    // rather than through out-mode params, which is run like a table-valued
+    // function
+    static Signature buildRowsProc(final String proc,
+                                   final int[] paramTypes,
+                                   final int[] nullableParamIndices,
+                                   final String[] paramNames,
+                                   final int[] returnColumnTypes)
+            throws IllegalArgumentException {
+        return new Signature(
+                false,
+                "{call " + proc + "}",
+                paramTypes,
+                Util.trueOnlyOnIndices(paramTypes.length, nullableParamIndices),
+                paramNames,
+                null,
+                returnColumnTypes, null
+        );
+    }
+
     static Signature buildProc(final String proc,
                                final int[] paramTypes,
                                final int[] nullableParamIndices,
@@ -0,0 +1,375 @@
+package controller;
+
+import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
+
+import java.io.IOException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+import static controller.DBManager.CONNECTION_FAIL;
+import static controller.DBManager.failWithMessage;
+import static controller.DBManager.paramOrSQLFail;
+import static controller.DBManager.returnFail;
+import static controller.DBManager.rowCount;
+
+// Runs DBManager's calls on SQL Server through JDBC, converting params and
+// results with the binders and readers compiled into each Signature.
+//
+// Connections are borrowed from a bounded ConnectionPool rather than opened
+// for each call, since opening a connection requires a full login and TLS
+// handshake with the server. The database is created from the SQL script if
+// it does not exist yet.
+final class SqlServerBackend implements Backend {
+
+    private static final String DB_NAME = "tomlin_trevor_db";
+    private static final String SCRIPT_NAME = "barbee_joshua_Queries.sql";
+
+    // Rows requested from the server at a time while reading results. May be
+    // changed with setFetchSize
+    private static final int DEFAULT_FETCH_SIZE = 256;
+
+    // For creating connections
+    private final SQLServerDataSource dataSource = serverDataSource();
+    // For reusing connections. Created once the database is known to exist
+    private final ConnectionPool pool;
+
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+
+    SqlServerBackend(final ConnectionPool.Config poolConfig) {
+        // Create database if it does not exist
+        createDBIfNotExists();
+
+        // Have future connections connect directly to DB instead of only server
+        dataSource.setDatabaseName(DB_NAME);
+
+        pool = new ConnectionPool(dataSource, poolConfig);
+        pool.start();
+    }
+
+    // A new connection to the database outside any pool, for tools that
+    // change session settings pooled connections must not keep (e.g., SET
+    // STATISTICS IO). The database must already exist
+    static Connection openUnpooledConnection() throws SQLException {
+        final var dataSource = serverDataSource();
+        dataSource.setDatabaseName(DB_NAME);
+        return dataSource.getConnection();
+    }
+
+    // Closes all idle pooled connections. Connections that are in use are
+    // closed when they are returned
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    // The most connections the pool will open at once
+    @Override
+    public int maxConcurrentCalls() {
+        return pool.config().maxSize();
+    }
+
+    @Override
+    public PoolStatistics poolStatistics() {
+        return pool.statistics();
+    }
+
+    // See DBManager.setFetchSize
+    void setFetchSize(final int rows) {
+        fetchSize = rows;
+    }
+
+    // Note: The connection used for the call is held until every row has been
+    // consumed
+    @Override
+    public Object[][] forEachRow(final Signature sig,
+                                 final Consumer<Object[]> rowConsumer,
+                                 final Object[] params) {
+        // Keep exceptions from rowConsumer separate from DB failures
+        final var guardedConsumer = new ConsumerGuard(rowConsumer);
+
+        return execute(
+                sig,
+                (returnColInd, results) ->
+                        readRows(returnColInd, results, sig.columnReaders(), guardedConsumer),
+                guardedConsumer,
+                params
+        );
+    }
+
+    // Calls the function or procedure, reading a function's result with
+    // reader or passing a procedure's out-mode params to outParamConsumer.
+    // Returns the same values as forEachRow
+    private Object[][] execute(final Signature sig,
+                               final ResultReader reader,
+                               final Consumer<Object[]> outParamConsumer,
+                               final Object... params) {
+        try (PooledConnection con = pool.borrow()) {
+            // Cached on the connection, so not closed here
+            final PreparedStatement stmt = prepareStatement(con, sig.procedure(), sig.call());
+            // Keep parameter index to report first invalid param value
+            final int[] paramInd = new int[]{-1};
+            // Keep return/return column index to report first invalid return
+            // type. For functions, this corresponds to the SQL function's
+            // return type(s); for procedures, the return types are the types
+            // of the SQL procedure's out-mode params that have been requested
+            // in sig.call()
+            final int[] returnInd = new int[]{-1};
+
+            try {
+                setParams(paramInd, stmt, sig.paramBinders(), params);
+
+                // Read results and automatically return connection to the
+                // pool once all are read
+                if (sig.procedure()) {
+                    outParamConsumer.accept(retrieveProcedureResults(
+                            returnInd, (CallableStatement) stmt,
+                            sig.outParamIndices(), sig.outParamReaders()
+                    ));
+
+                    return rowCount(1);
+                }
+
+                return rowCount(retrieveFunctionResults(returnInd, stmt, reader));
+            } catch (ClassCastException | IllegalArgumentException e) { // Incl. NumberFormatException from BigDecimal
+                // A conversion has failed, a param has an otherwise invalid
+                // value (bad type, bad range, etc.), or an exception was
+                // thrown in the SQL function/procedure. Report first param with
+                // invalid value or report that the user's input is invalid
+                return paramOrSQLFail(paramInd[0], sig.paramNames());
+            } catch (IllegalStateException e) {
+                // Bad type provided for a return column/variable
+                return returnFail(sig.procedure(), sig.call(), e, returnInd[0]);
+            } catch (SQLException e) {
+                if (returnInd[0] != -1) // Failure during result parsing
+                    return returnFail(sig.procedure(), sig.call(), e, returnInd[0]);
+
+                // Failure during param parsing, or exception raised when
+                // processing the statement
+                return paramOrSQLFail(paramInd[0], sig.paramNames());
+            } finally {
+                // Release param values (e.g., password hashes and carts)
+                // held by the cached statement
+                clearParams(stmt);
+            }
+        } catch (SQLException e) {
+            // Unknown access failure from borrow (including timing out while
+            // all pooled connections are in use) or
+            // prepareStatement/prepareCall. Not necessarily permanent, so
+            // application not forcibly closed
+            ProgramDirectoryManager.logError(
+                    e, "Could not establish a connection to the database", true
+            );
+
+            return failWithMessage(CONNECTION_FAIL);
+        } catch (ConsumerException e) {
+            throw e.getCause(); // Not a database failure, so give to caller
+        }
+    }
+
+    // Note: An existing database is used as is, without running the script,
+    // so one created by an older script (e.g., before PRODUCT_STATS) must be
+    // dropped to be rebuilt, or have the script's PRODUCT_STATS backfill run
+    // against it
+    private void createDBIfNotExists() {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                     "SELECT CASE WHEN EXISTS (SELECT 1 FROM SYS.DATABASES WHERE Name = ?) " +
+                             "THEN 1 ELSE 0 END"
+             )) {
+
+            // Skip creation if DB exists
+            stmt.setString(1, DB_NAME);
+            var result = stmt.executeQuery();
+            result.next();
+            if (result.getBoolean(1))
+                return;
+
+            // Run script with sqlcmd utility (available on Windows, Mac, and Linux)
+            var processBuilder = new ProcessBuilder(
+                    "sqlcmd", "-U", "sa", "-P", "\"\"", "-i", SCRIPT_NAME
+            );
+            // Redirect output to this process' console.
+            // Note that this code would appear in the server-side application
+            // of a professional system based on this concept, so detailed
+            // information can be safely printed to its console
+            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            processBuilder.start().waitFor(); // Wait until the entire script is run and sqlcmd returns
+        } catch (SQLException e) {
+            ProgramDirectoryManager.logError(
+                    e, "Could not confirm DB " + DB_NAME + " exists", false
+            );
+        } catch (IOException | SecurityException | InterruptedException e) {
+            ProgramDirectoryManager.logError(
+                    e, "Could not create DB " + DB_NAME, false
+            );
+        }
+    }
+
+    // Connects to the server without selecting a database
+    private static SQLServerDataSource serverDataSource() {
+        final var dataSource = new SQLServerDataSource();
+        dataSource.setServerName("localhost");
+        dataSource.setPortNumber(1433);
+        dataSource.setUser("sa"); // In professional project, should come from secure config file
+        dataSource.setPassword(""); // " "
+        dataSource.setEncrypt("true");
+        dataSource.setTrustServerCertificate(true);
+
+        return dataSource;
+    }
+
+    private PreparedStatement prepareStatement(final PooledConnection con,
+                                               final boolean isProcedure,
+                                               final String call)
+            throws SQLException {
+        // Procedures are prepared with prepareCall in case out-mode params are
+        // requested. Returned tables are always readonly and are read in a
+        // single forward pass, which lets the driver stream rows as they
+        // arrive instead of opening a server-side cursor
+        final var stmt = con.prepare(isProcedure, call, ResultSet.TYPE_FORWARD_ONLY);
+        stmt.setFetchSize(fetchSize); // Cached statement, so set on every use
+
+        return stmt;
+    }
+
+    private static void clearParams(final PreparedStatement stmt) {
+        try {
+            stmt.clearParameters();
+        } catch (SQLException ignored) {
+            // Every param is set again before the statement's next use, so a
+            // failure here only delays releasing the old values
+        }
+    }
+
+    private static void setParams(final int[] paramInd,
+                                  final PreparedStatement stmt,
+                                  final ParamBinder[] paramBinders,
+                                  final Object[] params)
+            throws SQLException, IllegalArgumentException, ClassCastException {
+        // Each binder already knows its param's type, nullability, mode, and
+        // index (see ParamBinder), so no per-param checks are needed here.
+        // Params are converted to the types their binders require. Otherwise,
+        // ClassCastException, IllegalArgumentException (also accounting for
+        // NumberFormatException and null values for nonnullable params), or
+        // SQLException thrown
+        for (int i = 0; i < paramBinders.length; i++) {
+            paramInd[0] = i;
+            paramBinders[i].bind(stmt, params[i]);
+        }
+
+        // Params parsed successfully, so subsequent errors are not for param
+        // parsing
+        paramInd[0] = -1;
+    }
+
+    private static Object[] retrieveProcedureResults(final int[] returnInd,
+                                                     final CallableStatement stmt,
+                                                     final int[] outParamIndices,
+                                                     final OutParamReader[] outParamReaders)
+            throws SQLException {
+        stmt.execute();
+
+        var output = new Object[outParamReaders.length];
+        for (int i = 0; i < outParamReaders.length; i++) {
+            returnInd[0] = outParamIndices[i] - 1; // outParamIndices uses 1-based indices
+
+            // For SQL NULL, the readers return Java null instead of default
+            // values
+            output[i] = outParamReaders[i].read(stmt);
+        }
+
+        // Results read successfully, so subsequent errors are not for result
+        // parsing.
+        // Resetting returnInd is not strictly necessary because no code
+        // follows the call to this function in runFunction; this is added
+        // defensively in case the code is modified in the future
+        returnInd[0] = -1;
+
+        return output;
+    }
+
+    private static int retrieveFunctionResults(final int[] returnColInd,
+                                               final PreparedStatement stmt,
+                                               final ResultReader reader)
+            throws SQLException, IllegalStateException {
+        try (ResultSet results = stmt.executeQuery()) { // Statement is cached, so close results here
+            return reader.read(returnColInd, results);
+        }
+    }
+
+    // Reads each remaining row of results with the given readers and passes
+    // it to rowConsumer. Each row is a new array, so rowConsumer may keep it.
+    // Returns the number of rows read
+    private static int readRows(final int[] returnColInd,
+                                final ResultSet results,
+                                final ColumnReader[] columnReaders,
+                                final Consumer<Object[]> rowConsumer)
+            throws SQLException, IllegalStateException {
+        final int columnCount = results.getMetaData().getColumnCount();
+        if (columnCount > columnReaders.length) // Signature does not match function
+            throw new IllegalStateException();
+
+        int rowCount = 0;
+        for (; results.next(); rowCount++) {
+            final var row = new Object[columnCount];
+
+            for (int j = 0; j < columnCount; j++) {
+                returnColInd[0] = j;
+
+                // For SQL NULL, the readers return Java null instead of
+                // default values
+                row[j] = columnReaders[j].read(results);
+            }
+
+            rowConsumer.accept(row);
+        }
+
+        // Results read successfully, so subsequent errors are not for result
+        // parsing.
+        // Resetting returnInd is not strictly necessary because no code
+        // follows the call to this function in execute; this is added
+        // defensively in case the code is modified in the future
+        returnColInd[0] = -1;
+
+        return rowCount;
+    }
+
+    // Reads a function's or query's ResultSet into some output, tracking the
+    // column being read in returnColInd, and returns the number of rows read
+    @FunctionalInterface
+    private interface ResultReader {
+        int read(int[] returnColInd, ResultSet results)
+                throws SQLException, IllegalStateException;
+    }
+
+    // Wraps exceptions thrown by a row consumer so that they are not handled
+    // as conversion or database failures by the catch blocks in execute
+    private record ConsumerGuard(Consumer<Object[]> rowConsumer) implements Consumer<Object[]> {
+
+        @Override
+        public void accept(final Object[] row) {
+            try {
+                rowConsumer.accept(row);
+            } catch (RuntimeException e) {
+                throw new ConsumerException(e);
+            }
+        }
+    }
+
+    private static class ConsumerException extends RuntimeException {
+
+        private ConsumerException(final RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the initialization steps of the application as a graph of named
+// stages: each stage starts on a startup thread as soon as every stage it
+// depends on has finished, so stages that do not depend on each other (e.g.,
+// loading images and connecting to the database) run at the same time.
+// Callers wait only for the stages they need (e.g., those needed to show the
+// UI) while the rest continue in the background.
+//
+// When each stage started (including any time waiting for the stages it
+// depends on) and how long it took are recorded, and report lists them for
+// profiling startup.
+//
+// Note: If a stage fails, the stages depending on it are not run, and waiting
+// for any of them throws the first stage's exception.
+final class Startup {
+
+    // One step of initialization
+    @FunctionalInterface
+    interface Stage {
+        void run() throws Exception;
+    }
+
+    private record Timing(String name, long startNanos, long endNanos, boolean failed) {}
+
+    private final long originNanos = System.nanoTime();
+    private final ExecutorService executor;
+
+    private final Map<String, CompletableFuture<Void>> stages = new LinkedHashMap<>();
+    private final List<Timing> timings = new ArrayList<>(); // Guarded by this
+
+    Startup() {
+        final var threadNumber = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "Startup " + threadNumber.incrementAndGet());
+            thread.setDaemon(true); // Must not keep the application open
+            return thread;
+        });
+    }
+
+    // Adds stage, to be run once every stage named in dependencies (which
+    // must already be added) has finished
+    synchronized void add(final String name, final Stage stage,
+                          final String... dependencies) {
+        if (stages.containsKey(name))
+            throw new IllegalArgumentException("Stage " + name + " already added");
+
+        final var future = CompletableFuture.allOf(futures(dependencies)).thenRunAsync(() -> {
+            final long startNanos = System.nanoTime();
+            boolean failed = true;
+            try {
+                stage.run();
+                failed = false;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                record(new Timing(name, startNanos, System.nanoTime(), failed));
+            }
+        }, executor);
+        stages.put(name, future);
+    }
+
+    // Waits until every named stage has finished, rethrowing the exception of
+    // a failed stage (or of a stage it depends on)
+    void await(final String... names) throws Exception {
+        try {
+            CompletableFuture.allOf(futures(names)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    // Completes once every stage has finished, or exceptionally as await
+    // would throw
+    synchronized CompletableFuture<Void> all() {
+        return CompletableFuture.allOf(stages.values().toArray(CompletableFuture[]::new));
+    }
+
+    // One line for each stage that has run, in the order they started, with
+    // its start time (from the creation of this Startup) and duration
+    synchronized String report() {
+        final var report = new StringBuilder();
+        timings.stream().sorted((a, b) -> Long.compare(a.startNanos, b.startNanos)).forEach(timing ->
+                report.append(String.format(
+                        "%-20s started at %6d ms, took %6d ms%s%n",
+                        timing.name,
+                        TimeUnit.NANOSECONDS.toMillis(timing.startNanos - originNanos),
+                        TimeUnit.NANOSECONDS.toMillis(timing.endNanos - timing.startNanos),
+                        timing.failed ? " (failed)" : ""
+                ))
+        );
+        return report.toString();
+    }
+
+    private synchronized void record(final Timing timing) {
+        timings.add(timing);
+    }
+
+    private synchronized CompletableFuture<?>[] futures(final String[] names) {
+        return Arrays.stream(names).map(name -> {
+            final var future = stages.get(name);
+            if (future == null)
+                throw new IllegalArgumentException("No stage " + name);
+            return future;
+        }).toArray(CompletableFuture[]::new);
+    }
+}
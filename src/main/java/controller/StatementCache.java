@@ -0,0 +1,79 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class keeps the statements prepared on one pooled connection so that
+// repeated calls with the same Signature reuse the driver's prepared handle
+// (and the server's cached plan) instead of preparing the call again. Entries
+// are keyed on the call string and the requested result set type, since a
+// statement prepared for one result set type cannot be used for another.
+//
+// A PooledConnection is only used by the thread that borrowed it, so this
+// class is not synchronized. The hit and miss counters are shared by all
+// caches in a pool, so they are kept in LongAdders owned by the pool.
+//
+// Note: Statements returned by get must not be closed by client code, since
+// they remain in the cache after use. A statement evicted from the cache (as
+// the least recently used statement once the cache is full) is closed then.
+final class StatementCache {
+
+    private final Connection connection;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final Map<Key, PreparedStatement> statements;
+
+    StatementCache(final Connection connection, final int maxSize,
+                   final LongAdder hits, final LongAdder misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+
+        // Access order so that the eldest entry is the least recently used
+        statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= maxSize)
+                    return false;
+
+                close(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement get(final boolean isProcedure, final String call,
+                          final int resultSetType)
+            throws SQLException {
+        final var key = new Key(call, resultSetType);
+
+        var stmt = statements.get(key);
+        if (stmt != null && !stmt.isClosed()) {
+            hits.increment();
+            return stmt;
+        }
+
+        misses.increment();
+        stmt = isProcedure ? // Required in case out-mode params are requested
+               connection.prepareCall(call, resultSetType, ResultSet.CONCUR_READ_ONLY) :
+               connection.prepareStatement(call, resultSetType, ResultSet.CONCUR_READ_ONLY);
+        statements.put(key, stmt);
+
+        return stmt;
+    }
+
+    private static void close(final PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+            // The statement is no longer used either way
+        }
+    }
+
+    private record Key(String call, int resultSetType) {}
+}
@@ -3,6 +3,7 @@ package ui;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 import static controller.DBManager.getError;
 import static controller.DBManager.hasFailed;
@@ -63,7 +64,8 @@ public class AnalyticalQueries extends JPanel {
         submitButton.addActionListener(e -> {
             int selected = dropdown.getSelectedIndex();
 
-            Object[][] resultTable = switch (selected) {
+            // Each method returns the query to run with the entered values
+            Supplier<Object[][]> query = switch (selected) {
                 case 0 -> query0Input(); // 4.2
                 case 1 -> query1Input(); // 4.3
                 case 2 -> query2Input(); // 4.4
@@ -75,7 +77,12 @@ public class AnalyticalQueries extends JPanel {
                 default -> null; // No selection
             };
 
-            if (resultTable != null) {
+            if (query == null)
+                return;
+
+            // Run in the background. A new query supersedes any query still
+            // running
+            BackgroundTasks.run(this, contentPanel, query, resultTable -> {
                 ReportTable reportTable = queryTables[selected];
                 if (hasFailed(resultTable)) {
                     UIUtil.showError(getError(resultTable));
@@ -90,7 +97,7 @@ public class AnalyticalQueries extends JPanel {
                 contentPanel.add(reportTable, BorderLayout.CENTER);
                 revalidate();
                 repaint();
-            }
+            });
         });
     }
 
@@ -122,7 +129,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query0Input() {
+    private Supplier<Object[][]> query0Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[0],
                 "Please Enter Months, Reviews, and Count Values", JOptionPane.OK_CANCEL_OPTION);
 
@@ -139,7 +146,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.HighlyRatedFirstTimeAndMinReviewsChemicals(months, reviews, count);
+            return () -> FunctionsAndProcedures.HighlyRatedFirstTimeAndMinReviewsChemicals(months, reviews, count);
         }
 
         return null; // Do not update the display with a new table
@@ -168,7 +175,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query1Input() {
+    private Supplier<Object[][]> query1Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[1],
                 "Please Enter Chem Type and Number of Results To Get", JOptionPane.OK_CANCEL_OPTION);
 
@@ -184,7 +191,7 @@ public class AnalyticalQueries extends JPanel {
                 return null;
             }
 
-            return FunctionsAndProcedures.LargestPurityAmounts(chemType, n);
+            return () -> FunctionsAndProcedures.LargestPurityAmounts(chemType, n);
         }
 
         return null;
@@ -211,7 +218,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query2Input() {
+    private Supplier<Object[][]> query2Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[2],
                 "Please Enter Number of Results To Get", JOptionPane.OK_CANCEL_OPTION);
 
@@ -226,7 +233,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.HighestRatioProductsToReview(n);
+            return () -> FunctionsAndProcedures.HighestRatioProductsToReview(n);
         }
 
         return null; // Do not update the display with a new table
@@ -255,7 +262,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query3Input() {
+    private Supplier<Object[][]> query3Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[3],
                 "Please Enter Months and Number of Results To Get", JOptionPane.OK_CANCEL_OPTION);
 
@@ -271,7 +278,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.HighestRecentSpenders(months, n);
+            return () -> FunctionsAndProcedures.HighestRecentSpenders(months, n);
         }
 
         return null; // Do not update the display with a new table
@@ -300,7 +307,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query4Input() {
+    private Supplier<Object[][]> query4Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[4],
                 "Please Enter Months and Number of Results To Get", JOptionPane.OK_CANCEL_OPTION);
 
@@ -316,7 +323,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.HighestProfitProducts(months, n);
+            return () -> FunctionsAndProcedures.HighestProfitProducts(months, n);
         }
 
         return null; // Do not update the display with a new table
@@ -345,7 +352,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query5Input() {
+    private Supplier<Object[][]> query5Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[5],
                 "Please Enter N and Number of Results To Get", JOptionPane.OK_CANCEL_OPTION);
 
@@ -361,7 +368,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.HighestRatedDistributorWithMinReviews(n, m);
+            return () -> FunctionsAndProcedures.HighestRatedDistributorWithMinReviews(n, m);
         }
 
         return null; // Do not update the display with a new table
@@ -395,7 +402,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query6Input() {
+    private Supplier<Object[][]> query6Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[6],
                 "Please Enter Purity, ChemType and Number of Results To Get", JOptionPane.OK_CANCEL_OPTION);
 
@@ -416,7 +423,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.DistributorHighestAvgRating(purity, chemType, n);
+            return () -> FunctionsAndProcedures.DistributorHighestAvgRating(purity, chemType, n);
         }
 
         return null; // Do not update the display with a new table
@@ -440,7 +447,7 @@ public class AnalyticalQueries extends JPanel {
         );
     }
 
-    private Object[][] query7Input() {
+    private Supplier<Object[][]> query7Input() {
         int result = JOptionPane.showConfirmDialog(null, queryPanels[7],
                 "Please Enter Months", JOptionPane.OK_CANCEL_OPTION);
 
@@ -455,7 +462,7 @@ public class AnalyticalQueries extends JPanel {
                 return null; // Do not update the display with a new table
             }
 
-            return FunctionsAndProcedures.PercentagePurchaseWDiscounts(months);
+            return () -> FunctionsAndProcedures.PercentagePurchaseWDiscounts(months);
         }
 
         return null; // Do not update the display with a new table
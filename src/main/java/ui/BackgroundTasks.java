@@ -0,0 +1,138 @@
+package ui;
+
+import java.awt.Component;
+import java.awt.Cursor;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import controller.FunctionsAndProcedures;
+import controller.ProgramDirectoryManager;
+
+// This class runs the database calls made by the panels' action listeners on
+// the background threads used by FunctionsAndProcedures.async(), so the EDT is
+// only used for reading inputs and displaying results. Results are passed to
+// the given handler on the EDT with SwingUtilities.invokeLater.
+//
+// While a panel has unfinished tasks, it shows the wait cursor. Tasks started
+// with run (or await) are given a key (e.g., the button that starts them), and starting
+// another task with the same key supersedes the previous one: if it has not
+// started yet, it is never run; otherwise, its result is discarded when it
+// finishes. Tasks started with runOnce are never superseded and instead
+// disable their controls until they finish, so they should be used for calls
+// that change the database (e.g., completing a transaction), which must not be
+// repeated by clicking again.
+//
+// Note: All methods must be called on the EDT, and all of this class's state
+// is only accessed on the EDT, so no synchronization is needed.
+final class BackgroundTasks {
+
+    private static final String TASK_FAIL = "The request could not be completed.";
+    private static final String TASKS_BUSY =
+            "The system is handling many requests right now. Please try again " +
+                    "in a moment.";
+
+    // Most recent task for each key
+    private static final Map<Object, CompletableFuture<?>> current = new HashMap<>();
+    // Number of unfinished tasks for each panel showing the wait cursor
+    private static final Map<Component, Integer> busy = new IdentityHashMap<>();
+
+    private BackgroundTasks() {
+    }
+
+    static <T> void run(final Component panel, final Object key,
+                        final Supplier<T> task, final Consumer<T> onResult) {
+        await(panel, key, start(task), onResult);
+    }
+
+    // The same as run, but for a task already started by the controller
+    // (e.g., a page from a PagePrefetcher, which may already be loaded).
+    // Superseding the task only cancels future
+    static <T> void await(final Component panel, final Object key,
+                          final CompletableFuture<T> future,
+                          final Consumer<T> onResult) {
+        final var previous = current.remove(key);
+        if (previous != null)
+            previous.cancel(false); // Skipped if not started; see start
+
+        track(panel, future);
+        current.put(key, future);
+
+        future.whenComplete((result, exception) -> SwingUtilities.invokeLater(() -> {
+            if (current.get(key) != future) // Superseded, so discard
+                return;
+            current.remove(key);
+
+            complete(result, exception, onResult);
+        }));
+    }
+
+    static <T> void runOnce(final Component panel, final Supplier<T> task,
+                            final Consumer<T> onResult,
+                            final JComponent... controls) {
+        for (var control : controls)
+            control.setEnabled(false);
+
+        track(panel, start(task)).whenComplete((result, exception) -> SwingUtilities.invokeLater(() -> {
+            for (var control : controls)
+                control.setEnabled(true);
+
+            complete(result, exception, onResult);
+        }));
+    }
+
+    private static <T> CompletableFuture<T> start(final Supplier<T> task) {
+        // A cancelled future completes immediately, and its task is then
+        // skipped
+        return FunctionsAndProcedures.async().submit(task);
+    }
+
+    // Shows the wait cursor on panel until future completes
+    private static <T> CompletableFuture<T> track(final Component panel,
+                                                  final CompletableFuture<T> future) {
+        if (busy.merge(panel, 1, Integer::sum) == 1)
+            panel.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        future.whenComplete((result, exception) -> SwingUtilities.invokeLater(() -> {
+            if (busy.merge(panel, -1, Integer::sum) == 0) {
+                busy.remove(panel);
+                panel.setCursor(null); // Inherit the parent's cursor again
+            }
+        }));
+
+        return future;
+    }
+
+    private static <T> void complete(final T result, final Throwable exception,
+                                     final Consumer<T> onResult) {
+        if (exception == null) {
+            onResult.accept(result);
+            return;
+        }
+
+        final var cause = exception instanceof CompletionException ?
+                exception.getCause() : exception;
+        if (cause instanceof CancellationException) // Superseded
+            return;
+        if (cause instanceof RejectedExecutionException) { // Too many calls waiting
+            UIUtil.showError(TASKS_BUSY);
+            return;
+        }
+
+        // FunctionsAndProcedures reports expected failures in its return
+        // values, so any exception here is unexpected
+        if (cause instanceof Exception e)
+            ProgramDirectoryManager.logError(e, "Background task failed", true);
+        else
+            ProgramDirectoryManager.logError(cause.toString(), true);
+        UIUtil.showError(TASK_FAIL);
+    }
+}
@@ -3,6 +3,7 @@ package ui;
 import controller.Controller;
 import controller.CustomerSession;
 import controller.FunctionsAndProcedures;
+import controller.PagePrefetcher;
 import ui.table.ReportTable;
 import ui.table.ReviewsReport;
 
@@ -18,6 +19,7 @@ import javax.swing.JTextField;
 import java.awt.BorderLayout;
 import java.awt.GridLayout;
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 import static controller.DBManager.getError;
 import static controller.DBManager.hasFailed;
@@ -42,6 +44,13 @@ public class LoggedInCustomerPanel extends JPanel {
                     "Distributor", "Average Rating", "Purchaser Count"
             }
     );
+    // Pages of each paged view, so that the next page is loaded while the
+    // current one is displayed
+    private final PagePrefetcher<Object[][]> searchPages = PagePrefetcher.forRows();
+    private final PagePrefetcher<Object[][]> reviewPages = PagePrefetcher.forRows();
+    private final PagePrefetcher<Object[][]> purchasePages = PagePrefetcher.forRows();
+    private final PagePrefetcher<Object[][]> subpurchasePages = PagePrefetcher.forRows();
+
     private final ReviewsReport reviewsTable = new ReviewsReport(600, 200);
     private final ReportTable cartTable = new ReportTable(
             600, 200,
@@ -264,21 +273,36 @@ public class LoggedInCustomerPanel extends JPanel {
                 Boolean thirdSortAsc = thirdSortAscCheckbox.isSelected();
                 Boolean fourthSortAsc = fourthSortAscCheckbox.isSelected();
 
-                // Call the function with the provided parameters
-                Object[][] data = FunctionsAndProcedures.searchProducts(resultsPosition, resultsCount, chemicalName, minPurity, maxPurity, stateOfMatter,
-                        distributor, firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
-                        firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc);
-
-                // Display the result
-                if (data == null) {
-                    JOptionPane.showMessageDialog(null, "Failed to retrieve search results.");
-                }
+                // Call the function with the provided parameters. A new search
+                // supersedes any search still in progress
+                final char firstSort = firstSortBy;
+                final Character secondSort = secondSortBy, thirdSort = thirdSortBy, fourthSort = fourthSortBy;
+                final var query = Arrays.asList(
+                        chemicalName, minPurity, maxPurity, stateOfMatter, distributor,
+                        firstSort, secondSort, thirdSort, fourthSort,
+                        firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
+                );
+                BackgroundTasks.await(this, searchButton, searchPages.page(
+                        query, resultsPosition, resultsCount,
+                        (start, count) -> FunctionsAndProcedures.searchProducts(
+                                start, count, chemicalName, minPurity, maxPurity, stateOfMatter,
+                                distributor, firstSort, secondSort, thirdSort, fourthSort,
+                                firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc
+                        )
+                ), data -> {
+                    // Display the result
+                    if (hasFailed(data))
+                        UIUtil.showError(getError(data));
+                    else
+                        searchResults.replace(data);
+                });
             }
             catch (IllegalArgumentException err) {
                 JOptionPane.showMessageDialog(null, "Invalid input.");
             }
         });
         inputPanel.add(searchButton);
+        addPageButtons(inputPanel, resultsPositionField, resultsCountField, searchButton);
 
 
 
@@ -301,25 +325,23 @@ public class LoggedInCustomerPanel extends JPanel {
         JTextField chemID = new JTextField(5);
         inputPanel.add(chemID);
 
-        inputPanel.add(new JLabel("Start Position in Results:"));
-        JTextField startPos = new JTextField(5);
-        inputPanel.add(startPos);
-
-        inputPanel.add(new JLabel("Review Count:"));
-        JTextField reviewCount = new JTextField(5);
-        inputPanel.add(reviewCount);
-
         viewReviewsButton.addActionListener(e -> {
             try {
-                var output = FunctionsAndProcedures.viewReviews(
-                        Integer.parseInt(startPos.getText()),
-                        Integer.parseInt(reviewCount.getText()),
-                        Integer.parseInt(chemID.getText())
-                );
-                if (hasFailed(output))
-                    UIUtil.showError(getError(output));
-                else
-                    reviewsTable.setReviews(output);
+                final int chemicalID = Integer.parseInt(chemID.getText());
+
+                // Pages are loaded as the reviews are scrolled
+                reviewsTable.showReviews((pageStart, pageCount, onLoaded) -> BackgroundTasks.await(
+                        this, reviewsTable, reviewPages.page(
+                                chemicalID, pageStart, pageCount,
+                                (start, count) -> FunctionsAndProcedures.viewReviews(
+                                        start, count, chemicalID
+                                )
+                        ), output -> {
+                            if (hasFailed(output))
+                                UIUtil.showError(getError(output));
+                            onLoaded.accept(output);
+                        }
+                ));
             } catch (NumberFormatException ex) {
                 UIUtil.showError("Enter only valid integers.");
             }
@@ -342,11 +364,22 @@ public class LoggedInCustomerPanel extends JPanel {
 
         addReviewButton.addActionListener(e -> {
             try {
-                UIUtil.showMessage(session.reviewProduct(
-                        Integer.parseInt(chemIDtoReview.getText()),
-                        Integer.parseInt(stars.getText()),
-                        text.getText()
-                ));
+                final var currentSession = session;
+                final int chemicalID = Integer.parseInt(chemIDtoReview.getText());
+                final int rating = Integer.parseInt(stars.getText());
+                final String reviewText = text.getText();
+
+                BackgroundTasks.runOnce(this, () -> currentSession.reviewProduct(
+                        chemicalID, rating, reviewText
+                ), message -> {
+                    if (FunctionsAndProcedures.SUCCESS.equals(message)) {
+                        // Ratings changed, which may also reorder search results
+                        reviewPages.invalidate();
+                        searchPages.invalidate();
+                    }
+
+                    UIUtil.showMessage(message);
+                }, addReviewButton);
             } catch (NumberFormatException ex) {
                 UIUtil.showError("Enter only valid integers.");
             }
@@ -422,18 +455,27 @@ public class LoggedInCustomerPanel extends JPanel {
         completeTransaction.addActionListener(e -> {
             try {
                 var discountID = discountIDField.getText().isBlank() ? null : Integer.parseInt(discountIDField.getText());
-
-                Object[] output =  session.completeTransaction(Controller.TAX_PERCENT, discountID);
-
-                if (output[0] != FunctionsAndProcedures.SUCCESS) {
-                    System.out.println(output[0]);
-                    UIUtil.showError("Transaction failed.");
-                    return;
-                }
-
-                cartTable.replace(session.viewCart());
-
-                UIUtil.showMessage("Transaction completed successfully. Subtotal: " + output[1] + " Tax: " + output[2]);
+                final var currentSession = session;
+
+                // The cart is read and cleared by the background task, so it
+                // must not be modified until the transaction finishes
+                BackgroundTasks.runOnce(this, () -> currentSession.completeTransaction(
+                        Controller.TAX_PERCENT, discountID
+                ), output -> {
+                    if (output[0] != FunctionsAndProcedures.SUCCESS) {
+                        System.out.println(output[0]);
+                        UIUtil.showError("Transaction failed.");
+                        return;
+                    }
+
+                    cartTable.replace(currentSession.viewCart());
+                    // Remaining quantities, purchaser counts, and purchases
+                    // changed
+                    searchPages.invalidate();
+                    purchasePages.invalidate();
+
+                    UIUtil.showMessage("Transaction completed successfully. Subtotal: " + output[1] + " Tax: " + output[2]);
+                }, completeTransaction, addToCartbutton, removeButton);
 
             } catch (NumberFormatException ex) {
                 UIUtil.showError("Enter only valid integers.");
@@ -470,22 +512,28 @@ public class LoggedInCustomerPanel extends JPanel {
 
         viewPurchasesButton.addActionListener(e -> {
             try {
-
-                var output = session.viewPurchases(
-                        Integer.parseInt(startPosField.getText()),
-                        Integer.parseInt(rowCntField.getText()),
-                        sortNewestFirstCheckbox.isSelected()
-                );
-
-                if (hasFailed(output))
-                    UIUtil.showError(getError(output));
-                else
-                    viewPurchasesTable.addRows(output);
+                final var currentSession = session;
+                final int startPos = Integer.parseInt(startPosField.getText());
+                final int rowCnt = Integer.parseInt(rowCntField.getText());
+                final boolean sortNewestFirst = sortNewestFirstCheckbox.isSelected();
+
+                // The session identifies the customer
+                final var query = Arrays.asList(currentSession, sortNewestFirst);
+                BackgroundTasks.await(this, viewPurchasesButton, purchasePages.page(
+                        query, startPos, rowCnt,
+                        (start, count) -> currentSession.viewPurchases(start, count, sortNewestFirst)
+                ), output -> {
+                    if (hasFailed(output))
+                        UIUtil.showError(getError(output));
+                    else
+                        viewPurchasesTable.addRows(output);
+                });
             } catch (NumberFormatException ex) {
                 UIUtil.showError("Enter only valid integers.");
             }
         });
         inputPanel.add(viewPurchasesButton);
+        addPageButtons(inputPanel, startPosField, rowCntField, viewPurchasesButton);
 
         panel.add(inputPanel, BorderLayout.NORTH);
 
@@ -515,24 +563,54 @@ public class LoggedInCustomerPanel extends JPanel {
 
         viewPurchasesButton.addActionListener(e -> {
             try {
-                var output = FunctionsAndProcedures.viewSubpurchases(
-                        Integer.parseInt(startPosField.getText()),
-                        Integer.parseInt(rowCntField.getText()),
-                        Integer.parseInt(transactionIDField.getText())
-                );
-                if (hasFailed(output))
-                    UIUtil.showError(getError(output));
-                else
-                    viewSubpurchasesTable.addRows(output);
+                final int startPos = Integer.parseInt(startPosField.getText());
+                final int rowCnt = Integer.parseInt(rowCntField.getText());
+                final int transactionID = Integer.parseInt(transactionIDField.getText());
+
+                BackgroundTasks.await(this, viewPurchasesButton, subpurchasePages.page(
+                        transactionID, startPos, rowCnt,
+                        (start, count) -> FunctionsAndProcedures.viewSubpurchases(start, count, transactionID)
+                ), output -> {
+                    if (hasFailed(output))
+                        UIUtil.showError(getError(output));
+                    else
+                        viewSubpurchasesTable.addRows(output);
+                });
             } catch (NumberFormatException ex) {
                 UIUtil.showError("Enter only valid integers.");
             }
         });
         inputPanel.add(viewPurchasesButton);
+        addPageButtons(inputPanel, startPosField, rowCntField, viewPurchasesButton);
 
         panel.add(inputPanel, BorderLayout.NORTH);
 
         return panel;
     }
 
+    // Adds buttons that move the start position in startPosField by one page
+    // (the row count in rowCntField) and then show that page with viewButton
+    private static void addPageButtons(final JPanel inputPanel,
+                                       final JTextField startPosField,
+                                       final JTextField rowCntField,
+                                       final JButton viewButton) {
+        JButton previousButton = new JButton("Previous Page");
+        JButton nextButton = new JButton("Next Page");
+
+        for (var button : new JButton[]{previousButton, nextButton}) {
+            final int direction = button == nextButton ? 1 : -1;
+            button.addActionListener(e -> {
+                try {
+                    final int startPos = Integer.parseInt(startPosField.getText());
+                    final int rowCnt = Integer.parseInt(rowCntField.getText());
+
+                    startPosField.setText(String.valueOf(Math.max(0, startPos + direction * rowCnt)));
+                    viewButton.doClick();
+                } catch (NumberFormatException ex) {
+                    UIUtil.showError("Enter only valid integers.");
+                }
+            });
+            inputPanel.add(button);
+        }
+    }
 }
@@ -102,17 +102,20 @@ public class LoginRegisterPanel extends JPanel {
             String email = emailField.getText();
             String password = new String(passwordField.getPassword());
 
-            Object[] loginResult = FunctionsAndProcedures.login(email, password);
-            String loginStatus = (String) loginResult[0];
-
-            if (Objects.equals(loginStatus, SUCCESS)) {
-                login((int) loginResult[1]); // Login with retrieved CustomerID
-
-                emailField.setText("");
-                passwordField.setText("");
-            }
-            else
-                JOptionPane.showMessageDialog(loginPanel, loginStatus, "Error", JOptionPane.ERROR_MESSAGE);
+            // Hashing the password takes a noticeable amount of time, so
+            // the button is disabled until the login finishes
+            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.login(email, password), loginResult -> {
+                String loginStatus = (String) loginResult[0];
+
+                if (Objects.equals(loginStatus, SUCCESS)) {
+                    login((int) loginResult[1]); // Login with retrieved CustomerID
+
+                    emailField.setText("");
+                    passwordField.setText("");
+                }
+                else
+                    JOptionPane.showMessageDialog(loginPanel, loginStatus, "Error", JOptionPane.ERROR_MESSAGE);
+            }, loginButton, backButton);
         });
     
         return loginPanel;
@@ -175,16 +178,19 @@ public class LoginRegisterPanel extends JPanel {
                 return;
             }
 
-            String result = FunctionsAndProcedures.registerCustomer(email, password, firstName, lastName, addressLine1, addressLine2, zipCode);
-            System.out.println(result);
-            if (Objects.equals(result, SUCCESS)) { // Objects.equals is null-safe, unlike ==
-                remove(registerPanel);
-                add(loginPanel, BorderLayout.CENTER);
-                revalidate();
-                repaint();
-            } else {
-                JOptionPane.showMessageDialog(registerPanel, result, "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.registerCustomer(
+                    email, password, firstName, lastName, addressLine1, addressLine2, zipCode
+            ), result -> {
+                System.out.println(result);
+                if (Objects.equals(result, SUCCESS)) { // Objects.equals is null-safe, unlike ==
+                    remove(registerPanel);
+                    add(loginPanel, BorderLayout.CENTER);
+                    revalidate();
+                    repaint();
+                } else {
+                    JOptionPane.showMessageDialog(registerPanel, result, "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, registerButton, backButton);
         });
     
         registerPanel.add(emailLabel);
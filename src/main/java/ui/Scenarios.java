@@ -3,12 +3,16 @@ package ui;
 import javax.swing.*;
 import java.awt.*;
 import java.math.BigDecimal;
+import java.util.function.Supplier;
 
 import controller.FunctionsAndProcedures;
 import controller.ShipmentCart;
 import controller.TransactionCart;
 import ui.table.ReportTable;
 
+import static controller.DBManager.getError;
+import static controller.DBManager.hasFailed;
+
 public class Scenarios extends JPanel {
     private final JComboBox<String> dropdown;
     private final JButton submitButton;
@@ -67,6 +71,7 @@ public class Scenarios extends JPanel {
         submitButton.addActionListener(e -> {
             String selectedOption = (String) dropdown.getSelectedItem();
             ReportTable reportTable = null;
+            Supplier<Object[][]> reportCall = null; // Fills reportTable
 
             if (selectedOption == null)
                 return;
@@ -158,16 +163,6 @@ public class Scenarios extends JPanel {
                             Boolean thirdSortAsc = thirdSortAscCheckbox.isSelected();
                             Boolean fourthSortAsc = fourthSortAscCheckbox.isSelected();
             
-                            // Call the function with the provided parameters
-                            Object[][] data = FunctionsAndProcedures.searchProducts(resultsPosition, resultsCount, chemicalName, minPurity, maxPurity, stateOfMatter,
-                                    distributor, firstSortBy, secondSortBy, thirdSortBy, fourthSortBy,
-                                    firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc);
-            
-                            // Display the result
-                            if (data == null) {
-                                JOptionPane.showMessageDialog(null, "Failed to retrieve search results.");
-                            }
-
                             reportTable = new ReportTable(
                                 10,
                                 10,
@@ -189,7 +184,12 @@ public class Scenarios extends JPanel {
                                 }
                             );
 
-                            reportTable.addRows(data);
+                            // Call the function with the provided parameters
+                            final Character firstSort = firstSortBy, secondSort = secondSortBy,
+                                    thirdSort = thirdSortBy, fourthSort = fourthSortBy;
+                            reportCall = () -> FunctionsAndProcedures.searchProducts(resultsPosition, resultsCount, chemicalName, minPurity, maxPurity, stateOfMatter,
+                                    distributor, firstSort, secondSort, thirdSort, fourthSort,
+                                    firstSortAsc, secondSortAsc, thirdSortAsc, fourthSortAsc);
 
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
@@ -221,20 +221,6 @@ public class Scenarios extends JPanel {
                             int rowCnt = Integer.parseInt(rowCntField.getText());
                             int chemID = Integer.parseInt(chemIDField.getText());
 
-                            Object[][] data = FunctionsAndProcedures.viewReviews(startPos, rowCnt, chemID);
-
-                            for (Object[] row : data) {
-                                for (Object cell : row) {
-                                    System.out.print(cell + " ");
-                                }
-                                System.out.println();
-                            }
-
-                            if (data == null) {
-                                JOptionPane.showMessageDialog(null, "Function returned null");
-                                break;
-                            }
-
                             reportTable = new ReportTable(
                                 10,
                                 10,
@@ -243,8 +229,7 @@ public class Scenarios extends JPanel {
                                 false,
                                 new String[]{"First Name", "Last Name", "Stars", "Review Text", "Review data"}
                             );
-
-                            reportTable.addRows(data);
+                            reportCall = () -> FunctionsAndProcedures.viewReviews(startPos, rowCnt, chemID);
 
                         } catch (NumberFormatException exp) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid integers.");
@@ -267,11 +252,11 @@ public class Scenarios extends JPanel {
                         try {
                             int transactionID = Integer.parseInt(transactionIDField.getText());
 
-                            String data = FunctionsAndProcedures.markTransactionDelivered(transactionID);
-
-                            if (data != FunctionsAndProcedures.SUCCESS) {
-                                UIUtil.showError(data);
-                            }
+                            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.markTransactionDelivered(transactionID), data -> {
+                                if (data != FunctionsAndProcedures.SUCCESS) {
+                                    UIUtil.showError(data);
+                                }
+                            }, submitButton);
 
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter a valid integer.");
@@ -306,13 +291,6 @@ public class Scenarios extends JPanel {
                             int customerID = Integer.parseInt(customerIDField.getText());
                             boolean sortNewestFirst = sortNewestFirstCheckbox.isSelected();
 
-                            Object[][] data = FunctionsAndProcedures.viewPurchases(startPos, rowCnt, customerID, sortNewestFirst);
-
-                            if (data == null) {
-                                JOptionPane.showMessageDialog(null, "Failed to retrieve purchases.");
-                                break;
-                            }
-
                             reportTable = new ReportTable(
                                 10,
                                 10,
@@ -328,8 +306,7 @@ public class Scenarios extends JPanel {
                                     "Receive Date"
                                 }
                             );
-
-                            reportTable.addRows(data);
+                            reportCall = () -> FunctionsAndProcedures.viewPurchases(startPos, rowCnt, customerID, sortNewestFirst);
 
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
@@ -360,13 +337,6 @@ public class Scenarios extends JPanel {
                             int rowCnt = Integer.parseInt(rowCntField.getText());
                             int transactionID = Integer.parseInt(transactionIDField.getText());
 
-                            Object[][] data = FunctionsAndProcedures.viewSubpurchases(startPos, rowCnt, transactionID);
-
-                            if (data == null) {
-                                JOptionPane.showMessageDialog(null, "Failed to retrieve subpurchases.");
-                                break;
-                            }
-
                             reportTable = new ReportTable(
                                 10,
                                 10,
@@ -383,9 +353,7 @@ public class Scenarios extends JPanel {
                                     "Distributor Name"
                                 }
                             );
-
-                            reportTable.addRows(data);
-
+                            reportCall = () -> FunctionsAndProcedures.viewSubpurchases(startPos, rowCnt, transactionID);
 
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
@@ -407,13 +375,13 @@ public class Scenarios extends JPanel {
                     if (result == JOptionPane.OK_OPTION) {
                         String distributorName = distributorNameField.getText();
             
-                        String data = FunctionsAndProcedures.addDistributor(distributorName);
-
-                        if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
-                            JOptionPane.showMessageDialog(null, "Distributor added successfully.");
-                        } else {
-                            JOptionPane.showMessageDialog(null, "Failed to add distributor.");
-                        }
+                        BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.addDistributor(distributorName), data -> {
+                            if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
+                                JOptionPane.showMessageDialog(null, "Distributor added successfully.");
+                            } else {
+                                JOptionPane.showMessageDialog(null, "Failed to add distributor.");
+                            }
+                        }, submitButton);
                     }
             
                 }
@@ -451,13 +419,13 @@ public class Scenarios extends JPanel {
                             ShipmentCart shipmentCart = new ShipmentCart();
                             shipmentCart.addRow(chemicalTypeID, purity, quantity, purchasePrice); // Only one item at a time provided by the UI, but the ShipmentCart class and procedure support arbitrary cart sizes
 
-                            String data = FunctionsAndProcedures.recordShipmentPurchase(distributorID, shipmentCart);
-
-                            if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
-                                JOptionPane.showMessageDialog(null, "Shipment purchase recorded successfully.");
-                            } else {
-                                JOptionPane.showMessageDialog(null, "Failed to record shipment purchase.");
-                            }
+                            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.recordShipmentPurchase(distributorID, shipmentCart), data -> {
+                                if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
+                                    JOptionPane.showMessageDialog(null, "Shipment purchase recorded successfully.");
+                                } else {
+                                    JOptionPane.showMessageDialog(null, "Failed to record shipment purchase.");
+                                }
+                            }, submitButton);
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
                         }
@@ -478,13 +446,13 @@ public class Scenarios extends JPanel {
                         try {
                             int shipmentID = Integer.parseInt(shipmentIDField.getText());
             
-                            String data = FunctionsAndProcedures.markShipmentReceived(shipmentID);
-
-                            if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
-                                JOptionPane.showMessageDialog(null, "Shipment marked as received successfully.");
-                            } else {
-                                JOptionPane.showMessageDialog(null, "Failed to mark shipment as received.");
-                            }
+                            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.markShipmentReceived(shipmentID), data -> {
+                                if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
+                                    JOptionPane.showMessageDialog(null, "Shipment marked as received successfully.");
+                                } else {
+                                    JOptionPane.showMessageDialog(null, "Failed to mark shipment as received.");
+                                }
+                            }, submitButton);
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter a valid integer.");
                         }
@@ -533,12 +501,11 @@ public class Scenarios extends JPanel {
 
                             boolean online = Boolean.parseBoolean(onlineField.getText());
 
-                            Object[] data = FunctionsAndProcedures.completeTransaction(customerID, taxPercent, discountID, cart, online);
-
-                            if (data == null) {
-                                JOptionPane.showMessageDialog(null, "Function returned null");
-                                break;
-                            }
+                            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.completeTransaction(customerID, taxPercent, discountID, cart, online), data -> {
+                                if (data == null) {
+                                    JOptionPane.showMessageDialog(null, "Function returned null");
+                                }
+                            }, submitButton);
 
                         } catch (NumberFormatException exp) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
@@ -573,11 +540,11 @@ public class Scenarios extends JPanel {
                             int stars = Integer.parseInt(starsField.getText());
                             String text = textField.getText();
             
-                            String data = FunctionsAndProcedures.reviewProduct(customerID, chemicalID, stars, text);
-            
-                            if (data != FunctionsAndProcedures.SUCCESS) {
-                                JOptionPane.showMessageDialog(null, "Function returned null");
-                            }
+                            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.reviewProduct(customerID, chemicalID, stars, text), data -> {
+                                if (data != FunctionsAndProcedures.SUCCESS) {
+                                    JOptionPane.showMessageDialog(null, "Function returned null");
+                                }
+                            }, submitButton);
 
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
@@ -606,13 +573,13 @@ public class Scenarios extends JPanel {
                         String measurementUnit = measurementUnitField.getText();
                         String stateOfMatter = stateOfMatterField.getText();
 
-                        String data = FunctionsAndProcedures.addChemicalType(chemicalName, measurementUnit, stateOfMatter);
-
-                        if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
-                            JOptionPane.showMessageDialog(null, "Chemical type added successfully.");
-                        } else {
-                            JOptionPane.showMessageDialog(null, "Failed to add chemical type.");
-                        }
+                        BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.addChemicalType(chemicalName, measurementUnit, stateOfMatter), data -> {
+                            if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
+                                JOptionPane.showMessageDialog(null, "Chemical type added successfully.");
+                            } else {
+                                JOptionPane.showMessageDialog(null, "Failed to add chemical type.");
+                            }
+                        }, submitButton);
                     }
 
                 }
@@ -638,13 +605,13 @@ public class Scenarios extends JPanel {
                             int chemicalTypeID = Integer.parseInt(chemicalTypeIDField.getText());
                             String purity = purityField.getText();
                             String costPerUnit = costPerUnitField.getText();
-                            String data = FunctionsAndProcedures.addChemicalQuality(chemicalTypeID, purity, costPerUnit);
-
-                            if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
-                                JOptionPane.showMessageDialog(null, "Chemical quality added successfully.");
-                            } else {
-                                JOptionPane.showMessageDialog(null, "Failed to add chemical quality.");
-                            }
+                            BackgroundTasks.runOnce(this, () -> FunctionsAndProcedures.addChemicalQuality(chemicalTypeID, purity, costPerUnit), data -> {
+                                if (data != null && data.equals(FunctionsAndProcedures.SUCCESS)) {
+                                    JOptionPane.showMessageDialog(null, "Chemical quality added successfully.");
+                                } else {
+                                    JOptionPane.showMessageDialog(null, "Failed to add chemical quality.");
+                                }
+                            }, submitButton);
                         } catch (NumberFormatException err) {
                             JOptionPane.showMessageDialog(null, "Invalid input! Please enter valid values.");
                         }
@@ -653,13 +620,6 @@ public class Scenarios extends JPanel {
 
                 case "Get Distributors" -> {
 
-                    Object[][] data = FunctionsAndProcedures.getDistributors();
-
-                    if (data == null) {
-                        JOptionPane.showMessageDialog(null, "Function returned null");
-                        break;
-                    }
-
                     reportTable = new ReportTable(
                         10,
                         10,
@@ -672,19 +632,12 @@ public class Scenarios extends JPanel {
                         }
                     );
 
-                    reportTable.addRows(data);
+                    reportCall = FunctionsAndProcedures::getDistributors;
 
                 }
 
                 case "Get Pending Shipments" -> {
 
-                    Object[][] data = FunctionsAndProcedures.getPendingShipments();
-
-                    if (data == null) {
-                        JOptionPane.showMessageDialog(null, "Function returned null");
-                        break;
-                    }
-
                     reportTable = new ReportTable(
                         10,
                         10,
@@ -696,18 +649,11 @@ public class Scenarios extends JPanel {
                         }
                     );
 
-                    reportTable.addRows(data);
+                    reportCall = FunctionsAndProcedures::getPendingShipments;
 
                 }
 
                 case "Get Customers" -> {
-                    Object[][] data = FunctionsAndProcedures.getCustomers();
-
-                    if (data == null) {
-                        JOptionPane.showMessageDialog(null, "Function returned null");
-                        break;
-                    }
-
                     reportTable = new ReportTable(
                         10,
                         10,
@@ -719,17 +665,10 @@ public class Scenarios extends JPanel {
                         }
                     );
 
-                    reportTable.addRows(data);
+                    reportCall = FunctionsAndProcedures::getCustomers;
                 }
 
                 case "Get Measurement Unit Applicabilities" -> {
-                    Object[][] data = FunctionsAndProcedures.getMeasurementUnitApplicabilities();
-
-                    if (data == null) {
-                        JOptionPane.showMessageDialog(null, "Function returned null");
-                        break;
-                    }
-
                     reportTable = new ReportTable(
                         10,
                         10,
@@ -741,18 +680,11 @@ public class Scenarios extends JPanel {
                         }
                     );
 
-                    reportTable.addRows(data);
+                    reportCall = FunctionsAndProcedures::getMeasurementUnitApplicabilities;
 
                 }
 
                 case "Get Chemical Types" -> {
-                    Object[][] data = FunctionsAndProcedures.getChemicalTypes();
-
-                    if (data == null) {
-                        JOptionPane.showMessageDialog(null, "Function returned null");
-                        break;
-                    }
-
                     reportTable = new ReportTable(
                         10,
                         10,
@@ -764,18 +696,11 @@ public class Scenarios extends JPanel {
                         }
                     );
 
-                    reportTable.addRows(data);
+                    reportCall = FunctionsAndProcedures::getChemicalTypes;
 
                 }
 
                 case "Get Chemical Qualities" -> {
-                    Object[][] data = FunctionsAndProcedures.getChemicalQualities();
-
-                    if (data == null) {
-                        JOptionPane.showMessageDialog(null, "Function returned null");
-                        break;
-                    }
-
                     reportTable = new ReportTable(
                         10,
                         10,
@@ -787,19 +712,35 @@ public class Scenarios extends JPanel {
                         }
                     );
 
-                    reportTable.addRows(data);
+                    reportCall = FunctionsAndProcedures::getChemicalQualities;
                 }
 
                 default -> {
                 }
             }
 
-            if (reportTable != null) {
-                contentPanel.removeAll();
-                contentPanel.add(reportTable, BorderLayout.CENTER);
-                revalidate();
-                repaint();
+            if (reportTable != null)
+                showReport(reportTable, reportCall);
+        });
+    }
+
+    // Runs reportCall in the background and shows reportTable once it is
+    // filled with the result. A new report supersedes any report still being
+    // retrieved
+    private void showReport(final ReportTable reportTable,
+                            final Supplier<Object[][]> reportCall) {
+        BackgroundTasks.run(this, contentPanel, reportCall, data -> {
+            if (hasFailed(data)) {
+                UIUtil.showError(getError(data));
+                return;
             }
+
+            reportTable.addRows(data);
+
+            contentPanel.removeAll();
+            contentPanel.add(reportTable, BorderLayout.CENTER);
+            revalidate();
+            repaint();
         });
     }
 
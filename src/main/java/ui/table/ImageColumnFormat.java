@@ -30,9 +30,7 @@ public class ImageColumnFormat extends DefaultTableCellRenderer {
                                                    final boolean isSelected,
                                                    final boolean hasFocus,
                                                    final int row, final int column) {
-        super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-        TableUtil.autoFormatRowHeight(table, row, this);
-
-        return this;
+        // The row height is set by the table's RowHeights
+        return super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
     }
 }
@@ -1,21 +1,42 @@
 package ui.table;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.stream.IntStream;
+import java.util.Deque;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import util.Resources;
 import util.Util;
 import static controller.Controller.MAX_RATING;
+import static controller.DBManager.hasFailed;
 
+// Shows reviews one per row, with the row's height fitting its description.
+//
+// Reviews shown with showReviews are loaded a page at a time as the table is
+// scrolled: once it nears the last loaded review, the next page is loaded and
+// added. Only the pages near those shown are kept (MAX_LOADED_PAGES): loading
+// a page drops the page farthest from it, and scrolling back to a dropped
+// page loads it again, so any number of reviews can be scrolled through with
+// a bounded number of rows.
 public class ReviewsReport extends ReportTable {
 
+    // Loads one page of the reviews shown by showReviews
+    @FunctionalInterface
+    public interface ReviewLoader {
+        // Must pass onLoaded, on the EDT, the output of
+        // FunctionsAndProcedures.viewReviews for the given range, even if the
+        // call failed, unless showReviews is called again first
+        void load(int startPos, int rowCnt, Consumer<Object[][]> onLoaded);
+    }
+
     private static final int REVIEWER_NAME_WIDTH = 70;
 
-    // Pre-generate arrays for star rows, column names, and column renderers
-    private static final Object[][] stars = IntStream.range(0, MAX_RATING + 1).mapToObj(
-            i -> Collections.nCopies(i, Resources.star()).toArray() // 0 stars, then 1 star, then 2, ...
-    ).toArray(Object[][]::new);
+    private static final int PAGE_SIZE = 25;
+    private static final int MAX_LOADED_PAGES = 8;
+    private static final int NEAR_EDGE_ROWS = 5; // Rows from the last (or first) row at which a page is loaded
+
+    // Pre-generate arrays for column names and column renderers
     private static final String[] columnNames = Stream.concat(
             Collections.nCopies(MAX_RATING, "").stream(), // Star columns
             Stream.of("Reviewer", "Description") // Reviewer column and description column
@@ -25,10 +46,17 @@ public class ReviewsReport extends ReportTable {
             Stream.of(ColumnRenderer.WRAP, ColumnRenderer.WRAP) // Reviewer column and description column
     ).toArray(ColumnRenderer[]::new);
 
+    private ReviewLoader loader = null;
+    private int generation = 0; // Incremented for each list shown, so that loads for earlier lists are ignored
+    private boolean loading = false;
+    private int firstPos = 0; // Position in the results of the first loaded review
+    private final Deque<Integer> pageSizes = new ArrayDeque<>(); // Of the loaded pages, in order
+    private boolean atEnd = false; // Whether the last loaded page is the last page
+
     public ReviewsReport(final int preferredWidth, final int preferredHeight) {
         super(
                 preferredWidth, preferredHeight,
-                false, false, false,
+                true, false, true, // Horizontal lines delimit reviews
                 columnNames, columnRenderers
         );
 
@@ -36,31 +64,109 @@ public class ReviewsReport extends ReportTable {
             setStrictColumnWidth(i, Resources.STAR_SIZE);
         setStrictColumnWidth(MAX_RATING, REVIEWER_NAME_WIDTH); // Reviewer column
         // Description column resizes to fill remaining space
+
+        setNearStartListener(NEAR_EDGE_ROWS, this::loadPrevious);
+        setNearEndListener(NEAR_EDGE_ROWS, this::loadNext);
     }
 
-    public void setReviews(final Object[][] reviews) {
+    // Shows the reviews loaded by loader, starting with the first review
+    public void showReviews(final ReviewLoader loader) {
+        reset(loader);
         clear();
-        for (var review : reviews)
-            addReview((int) review[2], "" + review[0] + " " + review[1], "" + review[3]);
+        loadNext();
+    }
+
+    private void reset(final ReviewLoader loader) {
+        this.loader = loader;
+        generation++;
+        loading = false;
+        firstPos = 0;
+        pageSizes.clear();
+        atEnd = false;
+    }
+
+    private void loadNext() {
+        if (loader == null || loading || atEnd)
+            return;
+
+        final int startPos = firstPos + pageSizes.stream().mapToInt(Integer::intValue).sum();
+        load(startPos, PAGE_SIZE, reviews -> {
+            atEnd = reviews.length < PAGE_SIZE;
+            if (reviews.length == 0)
+                return;
+
+            pageSizes.addLast(reviews.length);
+            addRows(rows(reviews));
+            if (pageSizes.size() > MAX_LOADED_PAGES) {
+                final int dropped = pageSizes.removeFirst();
+                removeFirstRows(dropped);
+                firstPos += dropped;
+            }
+        });
     }
 
-    public void addReview(final int rating,
-                          final String reviewer, final String description) {
-        // Delimiter between reviews
-        var delimiterLine = new Object[MAX_RATING + 2];
-        delimiterLine[MAX_RATING + 1] = "__________________________________________";
-        addRow(delimiterLine);
+    private void loadPrevious() {
+        if (loader == null || loading || firstPos == 0)
+            return;
+
+        // Only full pages are dropped, so this is the whole page before the
+        // first loaded one
+        final int startPos = Math.max(firstPos - PAGE_SIZE, 0);
+        load(startPos, firstPos - startPos, reviews -> {
+            firstPos = startPos;
+            if (reviews.length == 0)
+                return;
+
+            pageSizes.addFirst(reviews.length);
+            addRowsFirst(rows(reviews));
+            if (pageSizes.size() > MAX_LOADED_PAGES) {
+                removeLastRows(pageSizes.removeLast());
+                atEnd = false;
+            }
+        });
+    }
+
+    // Loads a page with loader, passing it to onLoaded unless it failed or
+    // another list was shown first.
+    // Note: A failed page is not loaded again until the list is shown again,
+    // since the near-start and near-end listeners are only called again once
+    // rows are added
+    private void load(final int startPos, final int rowCnt,
+                      final Consumer<Object[][]> onLoaded) {
+        loading = true;
+        final int loadGeneration = generation;
+        loader.load(startPos, rowCnt, reviews -> {
+            if (loadGeneration != generation)
+                return;
+
+            loading = false;
+            if (!hasFailed(reviews))
+                onLoaded.accept(reviews);
+        });
+    }
+
+    // One row for each review
+    private static Object[][] rows(final Object[][] reviews) {
+        final var rows = new Object[reviews.length][];
+        for (int i = 0; i < reviews.length; i++) {
+            final var review = reviews[i];
+            rows[i] = reviewRow((int) review[2], "" + review[0] + " " + review[1], "" + review[3]);
+        }
+        return rows;
+    }
+
+    private static Object[] reviewRow(final int rating,
+                                      final String reviewer, final String description) {
+        final var row = new Object[MAX_RATING + 2];
 
         // Rating (clamped to range of valid star counts)
-        addRow(stars[Util.clamp(rating, 0, MAX_RATING)]);
+        final int starCount = Util.clamp(rating, 0, MAX_RATING);
+        for (int i = 0; i < starCount; i++)
+            row[i] = Resources.star();
 
         // Reviewer name and review description
-        var reviewContent = new Object[MAX_RATING + 2];
-        reviewContent[MAX_RATING] = reviewer;
-        reviewContent[MAX_RATING + 1] = description;
-        addRow(reviewContent);
-
-        // Spacing line
-        addRow();
+        row[MAX_RATING] = reviewer;
+        row[MAX_RATING + 1] = description;
+        return row;
     }
 }
@@ -0,0 +1,207 @@
+package ui.table;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import java.util.Arrays;
+
+// Sizes each row of a JTable to fit the tallest cell of its measured columns
+// (those with a WRAP or IMAGE renderer), in place of the renderers resizing
+// rows as they paint. The preferred height of each cell is cached by row,
+// column width, and value identity, so a cell is only measured again after
+// its value is replaced or its column is resized, and painting (e.g., while
+// scrolling) never measures text or changes row heights.
+//
+// Changes are collected and applied together after the current event: any
+// rows added, changed, or resized in the meantime are measured in one pass,
+// and every changed row height is set in that pass, so the table is laid out
+// and repainted once rather than once per row.
+//
+// Note: Measuring uses the column's renderer, so like the table it must only
+// be used on the Event Dispatch Thread. Rows are never measured while their
+// column has no width yet (i.e., before the table is first laid out), since
+// wrapped text would then be as tall as it has words.
+final class RowHeights implements TableColumnModelListener {
+
+    // Cached preferred heights of the cells of one measured column
+    private static final class Column {
+        private final int index;
+        private int width = -1; // Width the heights were measured at
+        private Object[] values = new Object[0]; // Measured values, by row
+        private int[] heights = new int[0];
+
+        private Column(final int index) {
+            this.index = index;
+        }
+
+        // Moves the cached heights after by rows were inserted at row from
+        // (if by is positive), or -by rows were deleted from row from
+        private void shift(final int from, final int by) {
+            if (from >= values.length)
+                return;
+
+            final int length = values.length;
+            if (by > 0) {
+                values = Arrays.copyOf(values, length + by);
+                heights = Arrays.copyOf(heights, length + by);
+            }
+
+            final int moved = length - Math.max(from, from - by);
+            if (moved > 0) {
+                System.arraycopy(values, from - Math.min(by, 0), values, from + Math.max(by, 0), moved);
+                System.arraycopy(heights, from - Math.min(by, 0), heights, from + Math.max(by, 0), moved);
+            }
+
+            // Rows inserted, or left at the end
+            final int clearFrom = by > 0 ? from : Math.max(from, length + by);
+            final int clearTo = by > 0 ? from + by : length;
+            Arrays.fill(values, clearFrom, clearTo, null);
+            Arrays.fill(heights, clearFrom, clearTo, -1);
+        }
+    }
+
+    private final JTable table;
+    private final Column[] columns;
+
+    // Rows waiting to be measured, or firstDirtyRow > lastDirtyRow if none
+    private int firstDirtyRow = Integer.MAX_VALUE;
+    private int lastDirtyRow = -1;
+    private boolean scheduled = false;
+
+    RowHeights(final JTable table, final int[] measuredColumns) {
+        this.table = table;
+        columns = Arrays.stream(measuredColumns).mapToObj(Column::new).toArray(Column[]::new);
+
+        if (columns.length > 0) {
+            table.getModel().addTableModelListener(e -> {
+                switch (e.getType()) {
+                    case TableModelEvent.INSERT -> {
+                        shift(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+                        markDirty(e.getFirstRow(), e.getLastRow());
+                    }
+                    case TableModelEvent.DELETE -> shift(e.getFirstRow(), e.getFirstRow() - e.getLastRow() - 1);
+                    default -> markDirty(
+                            Math.max(e.getFirstRow(), 0), e.getLastRow() // lastRow is MAX_VALUE for every row
+                    );
+                }
+            });
+            table.getColumnModel().addColumnModelListener(this);
+        }
+    }
+
+    // Called for each change to a column's width, which also changes the
+    // heights of its wrapped cells
+    @Override
+    public void columnMarginChanged(final ChangeEvent e) {
+        markDirty(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void columnAdded(final TableColumnModelEvent e) {
+    }
+
+    @Override
+    public void columnRemoved(final TableColumnModelEvent e) {
+    }
+
+    @Override
+    public void columnMoved(final TableColumnModelEvent e) {
+    }
+
+    @Override
+    public void columnSelectionChanged(final ListSelectionEvent e) {
+    }
+
+    // Measures the rows waiting to be measured now instead of after the
+    // current event, e.g., so that the heights of rows just added can be read
+    void flush() {
+        if (firstDirtyRow <= lastDirtyRow)
+            update();
+    }
+
+    private void shift(final int from, final int by) {
+        for (var column : columns)
+            column.shift(from, by);
+
+        // Rows waiting to be measured may have moved
+        if (firstDirtyRow <= lastDirtyRow)
+            markDirty(0, Integer.MAX_VALUE);
+    }
+
+    private void markDirty(final int firstRow, final int lastRow) {
+        firstDirtyRow = Math.min(firstDirtyRow, firstRow);
+        lastDirtyRow = Math.max(lastDirtyRow, lastRow);
+
+        // Deferred so that every change made by the current event is measured
+        // together, and so that the table has handled the change first (e.g.,
+        // resetting every row height when every row is replaced)
+        if (!scheduled) {
+            scheduled = true;
+            SwingUtilities.invokeLater(this::update);
+        }
+    }
+
+    private void update() {
+        scheduled = false;
+        if (firstDirtyRow > lastDirtyRow) // Already measured by flush
+            return;
+
+        for (var column : columns)
+            if (table.getColumnModel().getColumn(column.index).getWidth() <= 0)
+                return; // Measured once the table is laid out, which resizes its columns
+
+        final int rowCount = table.getRowCount();
+        final int first = firstDirtyRow;
+        final int last = Math.min(lastDirtyRow, rowCount - 1);
+        firstDirtyRow = Integer.MAX_VALUE;
+        lastDirtyRow = -1;
+
+        for (var column : columns) {
+            final int width = table.getColumnModel().getColumn(column.index).getWidth();
+            if (width != column.width) { // Every cached height is for another width
+                column.width = width;
+                Arrays.fill(column.values, null);
+                Arrays.fill(column.heights, -1);
+            }
+
+            if (column.values.length < rowCount) {
+                final int length = column.values.length;
+                column.values = Arrays.copyOf(column.values, Math.max(rowCount, length * 2));
+                column.heights = Arrays.copyOf(column.heights, column.values.length);
+                Arrays.fill(column.heights, length, column.heights.length, -1);
+            }
+        }
+
+        final int minHeight = table.getRowHeight(); // Default row height
+        for (int row = first; row <= last; row++) {
+            int height = minHeight;
+            for (var column : columns)
+                height = Math.max(height, cellHeight(column, row));
+
+            if (height != table.getRowHeight(row))
+                table.setRowHeight(row, height);
+        }
+    }
+
+    // The preferred height of the cell at row in column, measured only if the
+    // cell's value is not the one its cached height was measured for
+    private int cellHeight(final Column column, final int row) {
+        final var value = table.getValueAt(row, column.index);
+        if (column.heights[row] >= 0 && column.values[row] == value)
+            return column.heights[row];
+
+        final var renderer = table.getCellRenderer(row, column.index).getTableCellRendererComponent(
+                table, value, false, false, row, column.index
+        );
+        renderer.setSize(column.width, table.getRowHeight()); // Text wraps at the column width
+        final int height = renderer.getPreferredSize().height;
+
+        column.values[row] = value;
+        column.heights[row] = height;
+        return height;
+    }
+}
@@ -0,0 +1,260 @@
+package ui.table;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The TableModel of a Table. Rows are kept in the arrays they were given in
+// (e.g., the Object[][] returned for a call) instead of being copied into a
+// Vector per row as by DefaultTableModel, and each batch of rows is added with
+// a single event, so showing thousands of rows costs one event and no copies.
+//
+// Each batch is kept as a segment, found by binary search on the index of its
+// first row. Rows added one at a time (e.g., by ReviewsReport) share one
+// segment, so they do not add a segment each.
+//
+// Note: As with DefaultTableModel, this model must only be used on the Event
+// Dispatch Thread. A row shorter than the column count reads as null in the
+// remaining columns, matching DefaultTableModel's padding. The given arrays
+// are never modified: an edited row is copied first.
+final class RowsTableModel extends AbstractTableModel {
+
+    // A batch of rows
+    private interface Segment {
+        int size();
+
+        Object valueAt(int row, int col);
+    }
+
+    private record ArraySegment(Object[][] rows) implements Segment {
+        @Override
+        public int size() {
+            return rows.length;
+        }
+
+        @Override
+        public Object valueAt(final int row, final int col) {
+            final var values = rows[row];
+            return col < values.length ? values[col] : null;
+        }
+    }
+
+    // Rows added one at a time
+    private record ListSegment(List<Object[]> rows) implements Segment {
+        @Override
+        public int size() {
+            return rows.size();
+        }
+
+        @Override
+        public Object valueAt(final int row, final int col) {
+            final var values = rows.get(row);
+            return col < values.length ? values[col] : null;
+        }
+    }
+
+    private final String[] columnNames;
+    private final boolean editable;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private int[] starts = new int[8]; // Index of the first row of each segment
+    private int rowCount = 0;
+    private final Map<Integer, Object[]> editedRows = new HashMap<>(); // Copies, by row
+
+    RowsTableModel(final String[] columnNames, final boolean editable) {
+        this.columnNames = columnNames;
+        this.editable = editable;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(final int col) {
+        return columnNames[col];
+    }
+
+    @Override
+    public boolean isCellEditable(final int row, final int col) {
+        return editable;
+    }
+
+    @Override
+    public Object getValueAt(final int row, final int col) {
+        final var edited = editedRows.get(row);
+        if (edited != null)
+            return edited[col];
+
+        final int segment = segmentOf(row);
+        return segments.get(segment).valueAt(row - starts[segment], col);
+    }
+
+    @Override
+    public void setValueAt(final Object value, final int row, final int col) {
+        var edited = editedRows.get(row);
+        if (edited == null) {
+            edited = new Object[columnNames.length];
+            for (int j = 0; j < edited.length; j++)
+                edited[j] = getValueAt(row, j);
+            editedRows.put(row, edited);
+        }
+
+        edited[col] = value;
+        fireTableCellUpdated(row, col);
+    }
+
+    void addRow(final Object[] row) {
+        if (!segments.isEmpty() && segments.get(segments.size() - 1) instanceof ListSegment list) {
+            list.rows.add(row);
+            rowCount++;
+        } else {
+            addSegment(listSegment(row), 1);
+        }
+
+        fireTableRowsInserted(rowCount - 1, rowCount - 1);
+    }
+
+    void addRows(final Object[][] rows) {
+        if (rows.length == 0)
+            return;
+
+        addSegment(new ArraySegment(rows), rows.length);
+        fireTableRowsInserted(rowCount - rows.length, rowCount - 1);
+    }
+
+    // Adds rows before every other row, with a single event
+    void addRowsFirst(final Object[][] rows) {
+        if (rows.length == 0)
+            return;
+
+        segments.add(0, new ArraySegment(rows));
+        updateStarts();
+        shiftEditedRows(0, rows.length);
+        fireTableRowsInserted(0, rows.length - 1);
+    }
+
+    // Removes the first count rows, with a single event. These must be the
+    // rows of whole batches (e.g., of the first calls to addRows)
+    void removeFirstRows(final int count) {
+        if (count == 0)
+            return;
+
+        // Checked before removing anything, so that invalid counts leave the
+        // rows unchanged
+        int removedSegments = 0;
+        int removed = 0;
+        while (removed < count && removedSegments < segments.size())
+            removed += segments.get(removedSegments++).size();
+        if (removed != count)
+            throw new IllegalArgumentException("Rows " + count + " do not end a batch");
+        segments.subList(0, removedSegments).clear();
+
+        updateStarts();
+        shiftEditedRows(count, -count);
+        fireTableRowsDeleted(0, count - 1);
+    }
+
+    // Removes the last count rows, with a single event. These must be the
+    // rows of whole batches
+    void removeLastRows(final int count) {
+        if (count == 0)
+            return;
+
+        // Checked before removing anything, as in removeFirstRows
+        int removedSegments = 0;
+        int removed = 0;
+        while (removed < count && removedSegments < segments.size())
+            removed += segments.get(segments.size() - 1 - removedSegments++).size();
+        if (removed != count)
+            throw new IllegalArgumentException("Rows " + count + " do not start a batch");
+        segments.subList(segments.size() - removedSegments, segments.size()).clear();
+
+        final int oldRowCount = rowCount;
+        updateStarts();
+        editedRows.keySet().removeIf(row -> row >= rowCount);
+        fireTableRowsDeleted(rowCount, oldRowCount - 1);
+    }
+
+    // Replaces every row with header (if not null) followed by rows, with a
+    // single event
+    void replace(final Object[] header, final Object[][] rows) {
+        removeAll();
+        if (header != null)
+            addSegment(listSegment(header), 1);
+        if (rows.length > 0)
+            addSegment(new ArraySegment(rows), rows.length);
+        fireTableDataChanged();
+    }
+
+    private void addSegment(final Segment segment, final int size) {
+        if (segments.size() == starts.length)
+            starts = Arrays.copyOf(starts, starts.length * 2);
+
+        starts[segments.size()] = rowCount;
+        segments.add(segment);
+        rowCount += size;
+    }
+
+    // Recomputes every segment's first row and the row count
+    private void updateStarts() {
+        if (starts.length < segments.size())
+            starts = Arrays.copyOf(starts, Math.max(segments.size(), starts.length * 2));
+
+        rowCount = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            starts[i] = rowCount;
+            rowCount += segments.get(i).size();
+        }
+    }
+
+    // Moves the edited rows from row from on by the given number of rows. If
+    // by is negative, the edited rows in the -by rows before from are removed
+    private void shiftEditedRows(final int from, final int by) {
+        if (editedRows.isEmpty())
+            return;
+
+        final var shifted = new HashMap<Integer, Object[]>();
+        editedRows.forEach((row, values) -> {
+            if (row >= from)
+                shifted.put(row + by, values);
+            else if (row < from + Math.min(by, 0))
+                shifted.put(row, values);
+        });
+        editedRows.clear();
+        editedRows.putAll(shifted);
+    }
+
+    private static ListSegment listSegment(final Object[] row) {
+        final var rows = new ArrayList<Object[]>();
+        rows.add(row);
+        return new ListSegment(rows);
+    }
+
+    private void removeAll() {
+        segments.clear();
+        editedRows.clear();
+        rowCount = 0;
+    }
+
+    // The index of the segment holding row
+    private int segmentOf(final int row) {
+        if (row < 0 || row >= rowCount)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+
+        // Empty segments are never added, so each segment starts at a
+        // different row. Otherwise, row is in the last segment starting
+        // before it
+        final int found = Arrays.binarySearch(starts, 0, segments.size(), row);
+        return found >= 0 ? found : -found - 2;
+    }
+}
@@ -3,21 +3,33 @@ package ui.table;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.SwingUtilities;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.Point;
+import java.util.stream.IntStream;
+
 
 public class Table extends JPanel {
 
     private final JTable table;
+    private final JScrollPane scrollPane;
     // A separate variable is kept to avoid frequent call and cast from
-    // TableModel to DefaultTableModel for
-    // ((DefaultTableModel) table.getModel()).addRow(row)
-    private final DefaultTableModel tableModel;
+    // TableModel to RowsTableModel
+    private final RowsTableModel tableModel;
+    private final RowHeights rowHeights;
 
     private final String[] columnNames;
     private final boolean separateHeader;
 
+    // For loading rows in ranges (see setNearEndListener)
+    private Runnable onNearStart = null;
+    private Runnable onNearEnd = null;
+    private int nearStartRows = 0;
+    private int nearEndRows = 0;
+    private boolean nearStartArmed = false;
+    private boolean nearEndArmed = false;
+
     Table(final int preferredWidth, final int preferredHeight,
           final boolean editable,
           final boolean showHorizontalLines, final boolean showVerticalLines,
@@ -29,7 +41,7 @@ public class Table extends JPanel {
 
         // Define a table style with the specified column count, column names,
         // and cell editability
-        tableModel = new CustomEditabilityTableModel(columnNames, editable);
+        tableModel = new RowsTableModel(columnNames, editable);
 
         // Create a new table of the specified size
         table = createJTable(preferredWidth, preferredHeight);
@@ -37,31 +49,94 @@ public class Table extends JPanel {
         // Set the table format as requested
         setFormat(showHorizontalLines, showVerticalLines, columnRenderers);
 
+        // Size rows to fit their wrapped text and images
+        rowHeights = new RowHeights(table, IntStream.range(0, columnRenderers.length).filter(
+                i -> columnRenderers[i] == ColumnRenderer.WRAP || columnRenderers[i] == ColumnRenderer.IMAGE
+        ).toArray());
+
         // Allow vertical scrolling for the table, and make the table fill this
         // JPanel
         setLayout(new BorderLayout());
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        scrollPane = new JScrollPane(table);
+        add(scrollPane, BorderLayout.CENTER);
+
+        scrollPane.getViewport().addChangeListener(e -> checkNearEdges());
     }
 
     void addRow(final Object... row) {
         tableModel.addRow(row);
+        rowsChanged();
     }
 
+    // Each of the following adds or replaces every given row with a single
+    // event, keeping the given rows rather than copying them
+
     public void addRows(final Object[][] rows) {
-        for (var row : rows)
-            tableModel.addRow(row);
+        tableModel.addRows(rows);
+        rowsChanged();
     }
 
     public synchronized void clear() { // Synchronized to prevent header from being removed
-        tableModel.setRowCount(0);
-
-        if (!separateHeader)
-            tableModel.addRow(columnNames);
+        tableModel.replace(header(), new Object[0][]);
+        rowsChanged();
     }
 
     public synchronized void replace(final Object[][] rows) {
-        clear();
-        addRows(rows);
+        tableModel.replace(header(), rows);
+        rowsChanged();
+    }
+
+    // Calls onNearEnd once the table is scrolled to within nearEndRows rows of
+    // its last row (or if every row already fits), so that a caller showing a
+    // long list can load it in ranges: onNearEnd should start loading the next
+    // range (e.g., through BackgroundTasks) and add it with addRows. After
+    // being called, onNearEnd is not called again until rows are added or
+    // replaced. Passing a null onNearEnd stops these calls, e.g., once the
+    // last range has been added
+    public void setNearEndListener(final int nearEndRows, final Runnable onNearEnd) {
+        this.nearEndRows = nearEndRows;
+        this.onNearEnd = onNearEnd;
+        rowsChanged();
+    }
+
+    // The same as setNearEndListener, but for the first row, so that a caller
+    // that has dropped the first ranges with removeFirstRows can load them
+    // again with addRowsFirst
+    void setNearStartListener(final int nearStartRows, final Runnable onNearStart) {
+        this.nearStartRows = nearStartRows;
+        this.onNearStart = onNearStart;
+        rowsChanged();
+    }
+
+    // The following add or remove a range at either end without moving the
+    // rows shown, for a caller that only keeps the ranges near those shown.
+    // The removed rows must be whole ranges given to addRows or addRowsFirst.
+    // Note: These are only for tables with a separate header, since the
+    // header row would otherwise be the first row
+
+    void addRowsFirst(final Object[][] rows) {
+        requireSeparateHeader();
+        tableModel.addRowsFirst(rows);
+
+        // Scroll down by the height of the added rows, once they are measured
+        rowHeights.flush();
+        scrollBy(firstRowsHeight(rows.length));
+        rowsChanged();
+    }
+
+    void removeFirstRows(final int count) {
+        requireSeparateHeader();
+        final int removedHeight = firstRowsHeight(count);
+        tableModel.removeFirstRows(count);
+
+        scrollBy(-removedHeight);
+        rowsChanged();
+    }
+
+    void removeLastRows(final int count) {
+        requireSeparateHeader();
+        tableModel.removeLastRows(count);
+        rowsChanged();
     }
 
     public void setStrictColumnWidth(final int col, final int width) {
@@ -69,6 +144,63 @@ public class Table extends JPanel {
         table.getColumnModel().getColumn(col).setMaxWidth(width);
     }
 
+    private Object[] header() {
+        return separateHeader ? null : columnNames;
+    }
+
+    private void requireSeparateHeader() {
+        if (!separateHeader)
+            throw new IllegalStateException("The header row must stay first");
+    }
+
+    private int firstRowsHeight(final int count) {
+        int height = 0;
+        for (int i = 0; i < count; i++)
+            height += table.getRowHeight(i);
+        return height;
+    }
+
+    private void scrollBy(final int dy) {
+        // Lay out the table first, so that its new height allows the position
+        scrollPane.validate();
+
+        final var viewport = scrollPane.getViewport();
+        final var position = viewport.getViewPosition();
+        position.y = Math.max(position.y + dy, 0);
+        viewport.setViewPosition(position);
+    }
+
+    private void rowsChanged() {
+        nearStartArmed = true;
+        nearEndArmed = true;
+        if (onNearStart != null || onNearEnd != null) // Checked once the new rows are laid out
+            SwingUtilities.invokeLater(this::checkNearEdges);
+    }
+
+    private void checkNearEdges() {
+        // The rows at the top and bottom of the visible area, or -1 if the
+        // rows end above them
+        final var visible = table.getVisibleRect();
+
+        if (onNearStart != null && nearStartArmed) {
+            final int firstVisibleRow = table.rowAtPoint(visible.getLocation());
+            if (firstVisibleRow <= nearStartRows) {
+                nearStartArmed = false;
+                onNearStart.run();
+            }
+        }
+
+        if (onNearEnd != null && nearEndArmed) {
+            final int lastVisibleRow = table.rowAtPoint(new Point(
+                    visible.x, visible.y + visible.height - 1
+            ));
+            if (lastVisibleRow < 0 || lastVisibleRow >= tableModel.getRowCount() - 1 - nearEndRows) {
+                nearEndArmed = false;
+                onNearEnd.run();
+            }
+        }
+    }
+
     private JTable createJTable(final int preferredWidth, final int preferredHeight) {
         // Set JTable size (usually overridden by used BorderLayout)
         var table = new JTable(tableModel);
@@ -94,7 +226,7 @@ public class Table extends JPanel {
         table.setShowVerticalLines(showVerticalLines);
 
         // Use specified rendering style for each column.
-        // Note: if a cell renderer is not set for a column, DefaultTableModel
+        // Note: if a cell renderer is not set for a column, RowsTableModel
         // (through AbstractTableModel) still provides a DefaultTableCellRenderer
         // for that column, matching ColumnFormatFactory's DEFAULT value
         var columnModel = table.getColumnModel();
@@ -109,21 +241,4 @@ public class Table extends JPanel {
             tableModel.addRow(columnNames);
         }
     }
-
-    private static class CustomEditabilityTableModel extends DefaultTableModel {
-
-        private final boolean isEditable;
-
-        private CustomEditabilityTableModel(final String[] columnNames,
-                                            final boolean editable) {
-            super(columnNames, 0);
-
-            isEditable = editable;
-        }
-
-        @Override
-        public boolean isCellEditable(int row, int column) {
-            return isEditable;
-        }
-    }
 }
@@ -27,13 +27,10 @@ class TextColumnFormat extends JTextArea implements TableCellRenderer {
             setBackground(table.getBackground());
         }
 
-        // Update text area
+        // Update text area. Its size (and so the row height) is set by the
+        // table's RowHeights instead of on every paint
         setText(value == null ? "" : value.toString());
 
-        // Update text area size and row height
-        setSize(table.getColumnModel().getColumn(column).getWidth(), table.getRowHeight(row));
-        TableUtil.autoFormatRowHeight(table, row, this);
-
         return this;
     }
 }
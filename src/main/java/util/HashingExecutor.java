@@ -0,0 +1,128 @@
+package util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// This class runs password hashes on a fixed number of dedicated threads so
+// that a burst of logins or registrations cannot occupy every core (and thus
+// starve searches, checkouts, and the UI) while each hash completes.
+//
+// Hashes that cannot start immediately wait in a bounded queue. Once the queue
+// is full, further hashes are rejected immediately instead of waiting, so that
+// the time a caller can spend waiting for a hash stays bounded (roughly the
+// queue capacity divided by the thread count, plus one, times the time for
+// one hash) and the caller can report that the system is busy.
+//
+// Note: The worker threads run slightly below normal priority. This is only a
+// hint to the OS scheduler; the thread count is what actually limits the
+// share of the CPU used for hashing.
+final class HashingExecutor {
+
+    // Half the cores, so at least half remain available for other work, and
+    // a queue that allows a few waiting hashes per thread
+    static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    static final int DEFAULT_QUEUE_CAPACITY = DEFAULT_THREADS * 4;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+
+    // Statistics
+    private long submitted = 0;
+    private long rejected = 0;
+    private long completed = 0;
+    private long totalQueueNanos = 0;
+    private long maxQueueNanos = 0;
+    private long totalHashNanos = 0;
+    private long maxHashNanos = 0;
+
+    HashingExecutor(final int threads, final int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+
+        this.queueCapacity = queueCapacity;
+
+        final var threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                threads, threads,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    var thread = new Thread(r, "Password hasher " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true); // Must not keep the application open
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy() // Reject when full
+        );
+    }
+
+    // Runs hash on a worker thread and waits for it to complete. Returns false
+    // without running hash if the queue is full or if the calling thread is
+    // interrupted while waiting (in which case the hash may still complete,
+    // but its result should not be used). Exceptions thrown by hash are
+    // rethrown in the calling thread
+    boolean run(final Runnable hash) throws RuntimeException {
+        final long submitNanos = System.nanoTime();
+
+        final Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                final long startNanos = System.nanoTime();
+                try {
+                    hash.run();
+                } finally {
+                    recordCompletion(startNanos - submitNanos, System.nanoTime() - startNanos);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            recordSubmission(false);
+            return false;
+        }
+        recordSubmission(true);
+
+        try {
+            future.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Preserve for caller
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            if (e.getCause() instanceof Error err)
+                throw err;
+
+            throw new IllegalStateException(e.getCause()); // Runnable cannot throw others
+        }
+    }
+
+    synchronized HashingStatistics statistics() {
+        return new HashingStatistics(
+                executor.getMaximumPoolSize(), queueCapacity,
+                executor.getQueue().size(), executor.getActiveCount(),
+                submitted, rejected, completed,
+                totalQueueNanos, maxQueueNanos,
+                totalHashNanos, maxHashNanos
+        );
+    }
+
+    private synchronized void recordSubmission(final boolean accepted) {
+        if (accepted)
+            submitted++;
+        else
+            rejected++;
+    }
+
+    private synchronized void recordCompletion(final long queueNanos, final long hashNanos) {
+        completed++;
+        totalQueueNanos += queueNanos;
+        maxQueueNanos = Math.max(maxQueueNanos, queueNanos);
+        totalHashNanos += hashNanos;
+        maxHashNanos = Math.max(maxHashNanos, hashNanos);
+    }
+}
@@ -0,0 +1,33 @@
+package util;
+
+// A snapshot of the state and lifetime counters of the executor used by
+// Password for hashing. Counts of queued and active hashes are taken at the
+// moment the snapshot is created; all other values are totals since the
+// executor was created. Queue times are measured from submission until a
+// worker starts the hash, and hash times from then until the hash completes,
+// so their sum is the latency a login or registration sees from hashing.
+public record HashingStatistics(int threads, // Hashes that can run at once
+                                int queueCapacity, // Hashes that can wait at once
+                                int queued, // Hashes currently waiting
+                                int active, // Hashes currently running (approximate)
+                                long submitted, // Hashes accepted
+                                long rejected, // Hashes refused because the queue was full
+                                long completed, // Hashes finished (including failures)
+                                long totalQueueNanos, // Time spent waiting by all completed hashes
+                                long maxQueueNanos, // Longest time spent waiting by one hash
+                                long totalHashNanos, // Time spent hashing by all completed hashes
+                                long maxHashNanos) { // Longest time spent hashing by one hash
+
+    public double averageQueueMillis() {
+        return completed == 0 ? 0 : totalQueueNanos / 1_000_000.0 / completed;
+    }
+
+    public double averageHashMillis() {
+        return completed == 0 ? 0 : totalHashNanos / 1_000_000.0 / completed;
+    }
+
+    public double rejectionRate() {
+        final long attempts = submitted + rejected;
+        return attempts == 0 ? 0 : (double) rejected / attempts;
+    }
+}
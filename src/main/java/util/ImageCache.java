@@ -0,0 +1,146 @@
+package util;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decodes image resources and scales them once, on background threads, into
+// BufferedImages of exactly the sizes they are drawn at, so drawing them (e.g.,
+// as the icons of table cells) never scales. Unlike the images returned by
+// Image.getScaledInstance, which are produced on demand when first drawn,
+// each image is complete once its future completes.
+//
+// Images are kept by file name and size, least recently used first. Once the
+// kept images exceed the byte budget (at 4 bytes per pixel), the least
+// recently used are dropped; callers that must keep an image regardless
+// (e.g., Resources' fixed textures) keep their own reference to it.
+//
+// Note: A failed load is not kept, so requesting the image again retries it.
+final class ImageCache {
+
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private record Key(String filename, int width, int height) {
+        long bytes() {
+            return 4L * width * height;
+        }
+    }
+
+    private final long maxBytes;
+    private final ExecutorService executor;
+
+    private final Map<Key, CompletableFuture<BufferedImage>> images =
+            new LinkedHashMap<>(16, 0.75f, true); // Least recently used first
+    private long bytes = 0;
+
+    ImageCache(final long maxBytes, final int threads) {
+        if (maxBytes < 0 || threads < 1)
+            throw new IllegalArgumentException("maxBytes must be nonnegative and threads positive");
+
+        this.maxBytes = maxBytes;
+
+        final var threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            var thread = new Thread(r, "Image loader " + threadNumber.incrementAndGet());
+            thread.setDaemon(true); // Must not keep the application open
+            return thread;
+        });
+    }
+
+    // The resource filename scaled to width by height, loaded in the
+    // background if it is not kept. Completes exceptionally (with an
+    // UncheckedIOException or NullPointerException) if the resource is
+    // missing or cannot be decoded
+    synchronized CompletableFuture<BufferedImage> get(final String filename,
+                                                     final int width, final int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("width and height must be positive");
+
+        final var key = new Key(filename, width, height);
+        final var kept = images.get(key);
+        if (kept != null)
+            return kept;
+
+        final var future = CompletableFuture.supplyAsync(() -> load(key), executor);
+        images.put(key, future);
+        bytes += key.bytes();
+        evict();
+
+        // Failed loads are not kept, so that they are retried
+        future.whenComplete((image, exception) -> {
+            if (exception != null)
+                synchronized (this) {
+                    if (images.remove(key, future))
+                        bytes -= key.bytes();
+                }
+        });
+
+        return future;
+    }
+
+    // Drops the least recently used images until the rest fit the budget,
+    // always keeping the most recent one
+    private void evict() {
+        final Iterator<Map.Entry<Key, CompletableFuture<BufferedImage>>> iterator =
+                images.entrySet().iterator();
+        while (bytes > maxBytes && images.size() > 1) {
+            final var eldest = iterator.next();
+            bytes -= eldest.getKey().bytes();
+            iterator.remove();
+        }
+    }
+
+    private static BufferedImage load(final Key key) {
+        final BufferedImage source;
+        try (var in = Objects.requireNonNull(
+                ImageCache.class.getClassLoader().getResourceAsStream(key.filename),
+                key.filename
+        )) {
+            source = Objects.requireNonNull(ImageIO.read(in), key.filename); // Null if no reader can decode it
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return scale(source, key.width, key.height);
+    }
+
+    // Scales source to width by height. Large reductions are made in steps of
+    // at most half, since a single bilinear step would skip most source
+    // pixels and alias, giving the quality of Image.SCALE_SMOOTH without its
+    // cost on every draw
+    private static BufferedImage scale(final BufferedImage source,
+                                       final int width, final int height) {
+        var image = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2); // At once if enlarging
+
+            final var step = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(image, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            image = step;
+        } while (currentWidth != width || currentHeight != height);
+
+        return image;
+    }
+}
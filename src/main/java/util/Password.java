@@ -7,9 +7,17 @@ import javax.crypto.spec.PBEKeySpec;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 
 public class Password {
 
+    // Outcome of hashing a password
+    public enum Result {
+        HASHED, // Hash stored in hashAndSalt[0]
+        INVALID, // Hash input invalid, so no hash stored
+        BUSY // Too many hashes waiting, so hash not attempted; try again later
+    }
+
     private static final int MIN_LENGTH = 10;
     private static final int MAX_LENGTH = 30;
     private static final String SPECIAL_CHARACTERS = "~`!@#$%^&*()_=+-"; // Always in []
@@ -23,14 +31,62 @@ public class Password {
 
     private static final SecureRandom RANDOM = new SecureRandom();
     private static SecretKeyFactory KEY_FACTORY;
+    private static HashingExecutor HASHER;
+    // Whether Pbkdf2HmacSha512 matched KEY_FACTORY at initialization
+    private static boolean FAST_PATH = false;
 
     private static final int ITERATIONS = 210_000; // As per OWASP recommendation 2023
     private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
-    private static final int HASH_SIZE = 64;
+    private static final int HASH_SIZE = Pbkdf2HmacSha512.HASH_SIZE;
     private static final int BIT_KEY_LENGTH = HASH_SIZE * 8;
 
     public static void initialize() throws NoSuchAlgorithmException {
+        initialize(HashingExecutor.DEFAULT_THREADS, HashingExecutor.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public static void initialize(final int hashThreads, final int hashQueueCapacity)
+            throws NoSuchAlgorithmException, IllegalArgumentException {
         KEY_FACTORY = SecretKeyFactory.getInstance(ALGORITHM);
+        HASHER = new HashingExecutor(hashThreads, hashQueueCapacity);
+        FAST_PATH = fastPathMatches();
+    }
+
+    // Compares Pbkdf2HmacSha512 against KEY_FACTORY for short and long
+    // passwords, several iteration counts, and truncated and multi-block key
+    // lengths. The iteration count only changes how many times the same loop
+    // runs, so a low count is enough to check every step. A mismatch is
+    // logged, and hashes are then computed with KEY_FACTORY only
+    private static boolean fastPathMatches() {
+        final var salt = new byte[HASH_SIZE];
+        RANDOM.nextBytes(salt);
+        final var longPassword = new char[200]; // Longer than a SHA-512 block
+        Arrays.fill(longPassword, 'a');
+
+        try {
+            for (var password : new char[][]{"Abcdefgh1!".toCharArray(), longPassword})
+                for (int iterations : new int[]{1, 2, 1000})
+                    for (int bytes : new int[]{HASH_SIZE, 20, HASH_SIZE * 2 + 8})
+                        if (!Arrays.equals(
+                                Pbkdf2HmacSha512.derive(password, salt, iterations, bytes),
+                                KEY_FACTORY.generateSecret(
+                                        new PBEKeySpec(password, salt, iterations, bytes * 8)
+                                ).getEncoded()
+                        )) {
+                            ProgramDirectoryManager.logError(
+                                    "PBKDF2 fast path does not match " + ALGORITHM, true
+                            );
+                            return false;
+                        }
+        } catch (InvalidKeySpecException | RuntimeException e) {
+            ProgramDirectoryManager.logError(e, "PBKDF2 fast path check failed", true);
+            return false;
+        }
+
+        return true;
+    }
+
+    public static HashingStatistics hashingStatistics() {
+        return HASHER.statistics();
     }
 
     public static boolean isValid(final String password) {
@@ -38,7 +94,7 @@ public class Password {
     }
 
     // hashAndSalt[0] will return the hash, and hashAndSalt[1] will return the salt
-    public static boolean saltAndHash(final String password, final byte[][] hashAndSalt) {
+    public static Result saltAndHash(final String password, final byte[][] hashAndSalt) {
         hashAndSalt[1] = new byte[HASH_SIZE];
         RANDOM.nextBytes(hashAndSalt[1]);
 
@@ -48,20 +104,37 @@ public class Password {
     // Pass the salt in hashAndSalt[1].
     // The hash will be returned in hashAndSalt[0].
     //
+    // The hash is computed by HASHER, and the calling thread waits for it to
+    // complete. BUSY is returned if HASHER cannot accept more hashes
+    public static Result hash(final String password, final byte[][] hashAndSalt) {
+        final var hashed = new boolean[1];
+        if (!HASHER.run(() -> hashed[0] = computeHash(password, hashAndSalt)))
+            return Result.BUSY;
+
+        return hashed[0] ? Result.HASHED : Result.INVALID;
+    }
+
     // Because params already validated at initialization, exception should not
     // be encountered unless memory corrupted, library code fails to support
     // algorithm it claims (via Security and Providers) to support, or client
     // code fails to call isValid before attempting to hash
-    public static boolean hash(final String password, final byte[][] hashAndSalt) {
+    private static boolean computeHash(final String password, final byte[][] hashAndSalt) {
         try {
-            hashAndSalt[0] = KEY_FACTORY.generateSecret(
-                    new PBEKeySpec(
+            hashAndSalt[0] = FAST_PATH ?
+                    Pbkdf2HmacSha512.derive(
                             password.toCharArray(),
                             hashAndSalt[1],
                             ITERATIONS,
-                            BIT_KEY_LENGTH
-                    )
-            ).getEncoded();
+                            HASH_SIZE
+                    ) :
+                    KEY_FACTORY.generateSecret(
+                            new PBEKeySpec(
+                                    password.toCharArray(),
+                                    hashAndSalt[1],
+                                    ITERATIONS,
+                                    BIT_KEY_LENGTH
+                            )
+                    ).getEncoded();
 
             return true; // Successfully hashed, now check equality with old hash if validating
         } catch (NullPointerException | IllegalArgumentException e) {
@@ -0,0 +1,239 @@
+package util;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// This class implements PBKDF2 (RFC 8018) with HMAC-SHA512 as its
+// pseudorandom function, producing the same output as the SunJCE
+// "PBKDF2WithHmacSHA512" SecretKeyFactory for the same password, salt,
+// iteration count, and key length.
+//
+// Nearly all of the cost of PBKDF2 is in the iterations, each of which
+// computes HMAC(password, U) for the previous 64-byte result U. An HMAC is two
+// SHA-512 hashes, the inner one starting with the 128-byte block
+// (key XOR ipad) and the outer one with (key XOR opad). Since the key is the
+// same for every iteration, the SHA-512 states after those two blocks are
+// computed once per password here, and every iteration then only needs one
+// compression for the inner hash and one for the outer hash (with padding
+// fixed, since U is always 64 bytes). javax.crypto.Mac does not expose these
+// states and instead rehashes both pad blocks on every call, which doubles
+// the number of compressions.
+//
+// All buffers are preallocated per thread, so an iteration allocates nothing.
+//
+// Note: Password verifies this class against the SecretKeyFactory when it is
+// initialized and falls back to the SecretKeyFactory if the outputs differ.
+final class Pbkdf2HmacSha512 {
+
+    static final int HASH_SIZE = 64; // Bytes in a SHA-512 hash
+    private static final int BLOCK_SIZE = 128; // Bytes in a SHA-512 block
+    // Bits hashed by the inner or outer hash of an iteration: one pad block
+    // followed by one 64-byte hash
+    private static final long ITERATION_BITS = (BLOCK_SIZE + HASH_SIZE) * 8L;
+
+    private static final long[] IV = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+    private static final long[] K = {
+            0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+            0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+            0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+            0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+            0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+            0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+            0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+            0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+            0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+            0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+            0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+            0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+            0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+            0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+            0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+            0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+            0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+            0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+            0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+            0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+    };
+
+    private static final ThreadLocal<Pbkdf2HmacSha512> INSTANCES =
+            ThreadLocal.withInitial(Pbkdf2HmacSha512::new);
+
+    // Per-thread buffers
+    private final long[] w = new long[80]; // Message schedule
+    private final long[] ipadState = new long[8];
+    private final long[] opadState = new long[8];
+    private final long[] inner = new long[8];
+    private final long[] u = new long[8];
+    private final long[] t = new long[8];
+    private final byte[] padBlock = new byte[BLOCK_SIZE];
+
+    private Pbkdf2HmacSha512() {
+    }
+
+    // Password characters are encoded with UTF-8, as by the SecretKeyFactory.
+    // Throws IllegalArgumentException for nonpositive iterations or keyLength
+    static byte[] derive(final char[] password, final byte[] salt,
+                         final int iterations, final int keyLength)
+            throws IllegalArgumentException {
+        if (iterations < 1 || keyLength < 1)
+            throw new IllegalArgumentException("iterations and keyLength must be positive");
+
+        final var passwordBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        final var key = new byte[passwordBytes.remaining()];
+        passwordBytes.get(key);
+
+        try {
+            return INSTANCES.get().derive(key, salt, iterations, keyLength);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private byte[] derive(final byte[] key, final byte[] salt,
+                          final int iterations, final int keyLength) {
+        initPadStates(key);
+
+        final var output = new byte[keyLength];
+        final var saltAndIndex = Arrays.copyOf(salt, salt.length + 4);
+
+        for (int block = 1, offset = 0; offset < keyLength; block++, offset += HASH_SIZE) {
+            // U1 = HMAC(key, salt || INT(block))
+            putInt(saltAndIndex, salt.length, block);
+            digest(ipadState, BLOCK_SIZE, saltAndIndex, inner);
+            compressHash(opadState, inner, u);
+            System.arraycopy(u, 0, t, 0, 8);
+
+            // Ui = HMAC(key, U(i-1)), T = U1 ^ ... ^ Uc
+            for (int i = 1; i < iterations; i++) {
+                compressHash(ipadState, u, inner);
+                compressHash(opadState, inner, u);
+
+                t[0] ^= u[0]; t[1] ^= u[1]; t[2] ^= u[2]; t[3] ^= u[3];
+                t[4] ^= u[4]; t[5] ^= u[5]; t[6] ^= u[6]; t[7] ^= u[7];
+            }
+
+            for (int j = 0; j < 8 && offset + j * 8 < keyLength; j++)
+                putLong(output, offset + j * 8, keyLength, t[j]);
+        }
+
+        // Do not leave state derived from the password in the thread's buffers
+        Arrays.fill(ipadState, 0);
+        Arrays.fill(opadState, 0);
+        Arrays.fill(inner, 0);
+        Arrays.fill(u, 0);
+        Arrays.fill(t, 0);
+        Arrays.fill(w, 0);
+        Arrays.fill(padBlock, (byte) 0);
+
+        return output;
+    }
+
+    private void initPadStates(byte[] key) {
+        // Keys longer than a block are replaced with their hash
+        if (key.length > BLOCK_SIZE) {
+            final var hashed = new long[8];
+            digest(IV, 0, key, hashed);
+            key = new byte[HASH_SIZE];
+            for (int j = 0; j < 8; j++)
+                putLong(key, j * 8, HASH_SIZE, hashed[j]);
+        }
+
+        for (int i = 0; i < BLOCK_SIZE; i++)
+            padBlock[i] = (byte) ((i < key.length ? key[i] : 0) ^ 0x36);
+        compressBytes(IV, padBlock, 0, ipadState);
+
+        for (int i = 0; i < BLOCK_SIZE; i++)
+            padBlock[i] = (byte) ((i < key.length ? key[i] : 0) ^ 0x5c);
+        compressBytes(IV, padBlock, 0, opadState);
+    }
+
+    // Hashes message as if it followed prefixLength bytes already hashed into
+    // state. Only used once per password and block, so the padded message is
+    // allocated here
+    private void digest(final long[] state, final int prefixLength,
+                        final byte[] message, final long[] out) {
+        final int paddedLength = ((message.length + 17 + BLOCK_SIZE - 1) / BLOCK_SIZE) * BLOCK_SIZE;
+        final var padded = Arrays.copyOf(message, paddedLength);
+        padded[message.length] = (byte) 0x80;
+        putLong(padded, paddedLength - 8, paddedLength, (prefixLength + (long) message.length) * 8);
+
+        System.arraycopy(state, 0, out, 0, 8);
+        for (int offset = 0; offset < paddedLength; offset += BLOCK_SIZE)
+            compressBytes(out, padded, offset, out);
+    }
+
+    private void compressBytes(final long[] state, final byte[] block, final int offset,
+                               final long[] out) {
+        for (int j = 0; j < 16; j++) {
+            final int b = offset + j * 8;
+            w[j] = (block[b] & 0xffL) << 56 | (block[b + 1] & 0xffL) << 48 |
+                   (block[b + 2] & 0xffL) << 40 | (block[b + 3] & 0xffL) << 32 |
+                   (block[b + 4] & 0xffL) << 24 | (block[b + 5] & 0xffL) << 16 |
+                   (block[b + 6] & 0xffL) << 8 | (block[b + 7] & 0xffL);
+        }
+
+        compress(state, out);
+    }
+
+    // Compresses the single padded block holding a 64-byte hash that follows
+    // one pad block, which is the message of every HMAC in the iterations
+    private void compressHash(final long[] state, final long[] hash, final long[] out) {
+        System.arraycopy(hash, 0, w, 0, 8);
+        w[8] = 0x8000000000000000L;
+        w[9] = 0; w[10] = 0; w[11] = 0; w[12] = 0; w[13] = 0; w[14] = 0;
+        w[15] = ITERATION_BITS;
+
+        compress(state, out);
+    }
+
+    // Compresses the block in w[0..15] into state, storing the result in out
+    // (which may be state)
+    private void compress(final long[] state, final long[] out) {
+        for (int j = 16; j < 80; j++) {
+            final long w2 = w[j - 2], w15 = w[j - 15];
+            w[j] = (Long.rotateRight(w2, 19) ^ Long.rotateRight(w2, 61) ^ (w2 >>> 6)) + w[j - 7] +
+                   (Long.rotateRight(w15, 1) ^ Long.rotateRight(w15, 8) ^ (w15 >>> 7)) + w[j - 16];
+        }
+
+        long a = state[0], b = state[1], c = state[2], d = state[3],
+             e = state[4], f = state[5], g = state[6], h = state[7];
+
+        for (int j = 0; j < 80; j++) {
+            final long t1 = h +
+                    (Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41)) +
+                    ((e & f) ^ (~e & g)) + K[j] + w[j];
+            final long t2 =
+                    (Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39)) +
+                    ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+
+        out[0] = state[0] + a; out[1] = state[1] + b; out[2] = state[2] + c; out[3] = state[3] + d;
+        out[4] = state[4] + e; out[5] = state[5] + f; out[6] = state[6] + g; out[7] = state[7] + h;
+    }
+
+    private static void putInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    // Big-endian, stopping at limit for truncated keys
+    private static void putLong(final byte[] bytes, final int offset, final int limit,
+                                final long value) {
+        for (int k = 0; k < 8 && offset + k < limit; k++)
+            bytes[offset + k] = (byte) (value >>> (56 - 8 * k));
+    }
+}
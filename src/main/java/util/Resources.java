@@ -1,11 +1,9 @@
 package util;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import controller.ProgramDirectoryManager;
 
@@ -25,6 +23,12 @@ public class Resources {
     // accessed with public getter methods.
     private static ImageIcon STAR;
 
+    // Decoded and scaled images, including any loaded after initialization
+    // (e.g., product images)
+    private static final ImageCache cache = new ImageCache(
+            ImageCache.DEFAULT_MAX_BYTES, ImageCache.DEFAULT_THREADS
+    );
+
 
     private static final String IMAGE_LOAD_ERROR =
             "An image could not be loaded - ";
@@ -35,29 +39,31 @@ public class Resources {
         graphics.setColor(Color.BLACK);
         graphics.fillRect(0, 0,  EMPTY_SIZE, EMPTY_SIZE);
 
-        // Load textures
-        STAR = read("star.png", STAR_SIZE, STAR_SIZE);
+        // Load textures in parallel: start every load before waiting for any.
+        // Each is kept here, so the cache never needs to load it again
+        var star = image("star.png", STAR_SIZE, STAR_SIZE);
+        STAR = star.join();
     }
 
     public static ImageIcon star() {
         return STAR;
     }
 
-    private static ImageIcon read(final String filename,
-                                  final int width, final int height) {
-        try {
-            return new ImageIcon(getImage(filename, width, height), "Image");
-        } catch (IOException | NullPointerException e) {
-            ProgramDirectoryManager.logError(e, IMAGE_LOAD_ERROR + filename, true);
-            return EMPTY;
-        }
-    }
+    // The resource filename scaled to width by height, loaded in the
+    // background unless it was loaded recently. Completes with a black square
+    // (after logging the error) if the image cannot be loaded
+    public static CompletableFuture<ImageIcon> image(final String filename,
+                                                     final int width, final int height) {
+        return cache.get(filename, width, height).handle((image, exception) -> {
+            if (exception == null)
+                return new ImageIcon(image, "Image");
 
-    private static Image getImage(final String filename,
-                                  final int width, final int height)
-                                    throws NullPointerException, IOException {
-        return ImageIO.read(Objects.requireNonNull(
-                Resources.class.getClassLoader().getResourceAsStream(filename)
-        )).getScaledInstance(width, height, Image.SCALE_SMOOTH);
+            final var cause = exception.getCause() != null ? exception.getCause() : exception; // Unwrap CompletionException
+            if (cause instanceof Exception e)
+                ProgramDirectoryManager.logError(e, IMAGE_LOAD_ERROR + filename, true);
+            else
+                ProgramDirectoryManager.logError(IMAGE_LOAD_ERROR + filename + ": " + cause, true);
+            return EMPTY;
+        });
     }
 }